@@ -0,0 +1,232 @@
+/**
+ * The set of cells of an ArrayField that have to act in a generation (the "active" cells), so that
+ * ArrayEngine can skip regions of the field where nothing is happening.
+ *
+ * A cell has to act if it or one of its neighbours changed (was born, died, or was infected or
+ * cleansed) in the previous generation, or if it has behaviour of its own every generation
+ * ("intrinsic" cells, e.g., ageing or random revival). Any other cell would decide on exactly the
+ * same (unchanged) state as the last time it acted, as none of the state it reads has changed.
+ *
+ * The sets are bit-planes with the same layout as those of ArrayField: every row starts on a new
+ * long, so bands of rows can update their own rows at the same time. They are kept in the
+ * FieldStorage of the field, so the sets of a field in a memory-mapped file take no room on the heap.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class ActiveSet
+{
+    private final int depth, width;
+    private final int wordsPerRow;
+    private final long lastWordMask; // The bits of the last long of a row that are inside the field
+    private final FieldStorage storage; // Holds the ACTIVE, TOUCHED, CHANGED and INTRINSIC bit-planes
+
+    /**
+     * Create an empty set for a field of the given dimensions, kept in the storage of the field.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param storage The storage of the field, whose ActiveSet bit-planes are cleared.
+     */
+    public ActiveSet(int depth, int width, FieldStorage storage)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.lastWordMask = (width % 64 == 0) ? -1L : (1L << width) - 1;
+        this.storage = storage;
+        for (int word = 0; word < depth * wordsPerRow; word++)
+        {
+            storage.setWord(FieldStorage.ACTIVE, word, 0);
+            storage.setWord(FieldStorage.TOUCHED, word, 0);
+            storage.setWord(FieldStorage.CHANGED, word, 0);
+            storage.setWord(FieldStorage.INTRINSIC, word, 0);
+        }
+    }
+
+    /**
+     * Makes every cell of the field active.
+     */
+    public void activateAll()
+    {
+        for (int row = 0; row < depth; row++)
+        {
+            for (int word = 0; word < wordsPerRow; word++)
+            {
+                storage.setWord(FieldStorage.ACTIVE, row * wordsPerRow + word, (word == wordsPerRow - 1) ? lastWordMask : -1L);
+            }
+        }
+    }
+
+    /**
+     * Makes a cell and its neighbours active, e.g., because the cell was changed between generations.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    public void activateAround(int row, int col)
+    {
+        for (int nextRow = Math.max(row - 1, 0); nextRow <= Math.min(row + 1, depth - 1); nextRow++)
+        {
+            for (int nextCol = Math.max(col - 1, 0); nextCol <= Math.min(col + 1, width - 1); nextCol++)
+            {
+                int word = nextRow * wordsPerRow + (nextCol >>> 6);
+                storage.setWord(FieldStorage.ACTIVE, word, storage.getWord(FieldStorage.ACTIVE, word) | (1L << nextCol));
+            }
+        }
+    }
+
+    /**
+     * Prepares the given rows for a new generation: only the active cells are touched, and nothing has changed yet.
+     * @param fromRow The first row.
+     * @param toRow The row after the last row.
+     */
+    public void beginGeneration(int fromRow, int toRow)
+    {
+        for (int word = fromRow * wordsPerRow; word < toRow * wordsPerRow; word++)
+        {
+            storage.setWord(FieldStorage.TOUCHED, word, storage.getWord(FieldStorage.ACTIVE, word));
+            storage.setWord(FieldStorage.CHANGED, word, 0);
+        }
+    }
+
+    /**
+     * Returns the active cells in 64 columns of a row, as the bits of a long.
+     * @param row The row.
+     * @param word The index of the long in the row (column / 64).
+     * @return The bits of the active cells, with bit i for column word * 64 + i.
+     */
+    public long getActiveWord(int row, int word)
+    {
+        return storage.getWord(FieldStorage.ACTIVE, row * wordsPerRow + word);
+    }
+
+    /**
+     * Returns a boolean indicating whether any cell of a row is active in this generation.
+     * @param row The row.
+     * @return true if at least one cell of the row is active.
+     */
+    public boolean isRowActive(int row)
+    {
+        for (int word = row * wordsPerRow; word < (row + 1) * wordsPerRow; word++)
+        {
+            if (storage.getWord(FieldStorage.ACTIVE, word) != 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks a cell as touched in this generation (e.g., because it is targeted by an intent).
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return true if the cell had not been touched yet.
+     */
+    public boolean touch(int row, int col)
+    {
+        int word = row * wordsPerRow + (col >>> 6);
+        long bit = 1L << col;
+        long touched = storage.getWord(FieldStorage.TOUCHED, word);
+        if ((touched & bit) != 0)
+        {
+            return false;
+        }
+        storage.setWord(FieldStorage.TOUCHED, word, touched | bit);
+        return true;
+    }
+
+    /**
+     * Returns the touched cells in 64 columns of a row, for ArrayField.commitRows.
+     * @param row The row.
+     * @param word The index of the long in the row (column / 64).
+     * @return The bits of the touched cells, with bit i for column word * 64 + i.
+     */
+    public long getTouchedWord(int row, int word)
+    {
+        return storage.getWord(FieldStorage.TOUCHED, row * wordsPerRow + word);
+    }
+
+    /**
+     * Marks cells in 64 columns of a row as changed in this generation, for ArrayField.commitRows.
+     * @param row The row.
+     * @param word The index of the long in the row (column / 64).
+     * @param bits The bits of the changed cells, with bit i for column word * 64 + i.
+     */
+    public void addChanged(int row, int word, long bits)
+    {
+        int index = row * wordsPerRow + word;
+        storage.setWord(FieldStorage.CHANGED, index, storage.getWord(FieldStorage.CHANGED, index) | bits);
+    }
+
+    /**
+     * Sets which of some cells in 64 columns of a row act every generation, whatever their neighbours do.
+     * @param row The row.
+     * @param word The index of the long in the row (column / 64).
+     * @param mask The bits of the cells to set.
+     * @param bits The bits of the cells (within the mask) that act every generation.
+     */
+    public void setIntrinsic(int row, int word, long mask, long bits)
+    {
+        int index = row * wordsPerRow + word;
+        storage.setWord(FieldStorage.INTRINSIC, index, (storage.getWord(FieldStorage.INTRINSIC, index) & ~mask) | (bits & mask));
+    }
+
+    /**
+     * Decides which cells in the given rows are active in the next generation: the intrinsic cells,
+     * and every cell next to (or at) a changed cell. Reads the changed cells of the rows next to the
+     * given rows, so every row must have been committed first.
+     * @param fromRow The first row.
+     * @param toRow The row after the last row.
+     */
+    public void updateRows(int fromRow, int toRow)
+    {
+        for (int row = fromRow; row < toRow; row++)
+        {
+            for (int word = 0; word < wordsPerRow; word++)
+            {
+                long neighbourhood = 0;
+                for (int nextRow = Math.max(row - 1, 0); nextRow <= Math.min(row + 1, depth - 1); nextRow++)
+                {
+                    neighbourhood |= spread(nextRow, word);
+                }
+                long mask = (word == wordsPerRow - 1) ? lastWordMask : -1L;
+                int index = row * wordsPerRow + word;
+                storage.setWord(FieldStorage.ACTIVE, index, (neighbourhood | storage.getWord(FieldStorage.INTRINSIC, index)) & mask);
+            }
+        }
+    }
+
+    /**
+     * Returns the changed cells in 64 columns of a row, spread one column to the left and right
+     * (including from the neighbouring longs).
+     */
+    private long spread(int row, int word)
+    {
+        int start = row * wordsPerRow;
+        long bits = storage.getWord(FieldStorage.CHANGED, start + word);
+        long spread = bits | (bits << 1) | (bits >>> 1);
+        if (word > 0)
+        {
+            spread |= storage.getWord(FieldStorage.CHANGED, start + word - 1) >>> 63;
+        }
+        if (word < wordsPerRow - 1)
+        {
+            spread |= storage.getWord(FieldStorage.CHANGED, start + word + 1) << 63;
+        }
+        return spread;
+    }
+
+    /**
+     * Returns the number of active cells.
+     * @return The number of cells acting in the current generation.
+     */
+    public int getNumActive()
+    {
+        int count = 0;
+        for (int word = 0; word < depth * wordsPerRow; word++)
+        {
+            count += Long.bitCount(storage.getWord(FieldStorage.ACTIVE, word));
+        }
+        return count;
+    }
+}
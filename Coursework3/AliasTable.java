@@ -0,0 +1,129 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples outcomes 0 to n - 1 with the given (relative) weights in constant time, using Vose's
+ * alias method: each outcome gets a column holding the probability of choosing it, and an "alias"
+ * outcome chosen for the rest of the column. A sample picks a column uniformly at random, then
+ * either the column's outcome or its alias.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class AliasTable
+{
+    private final double[] probabilities;
+    private final int[] aliases;
+
+    /**
+     * Builds the table for the given weights.
+     * @param weights The weight of each outcome. Must not be negative, and at least one must be positive.
+     */
+    public AliasTable(double[] weights)
+    {
+        int n = weights.length;
+        double total = 0;
+        int heaviest = 0; // An outcome with a positive weight, for the columns of outcomes that must never be chosen
+        for (int i = 0; i < n; i++)
+        {
+            if (weights[i] < 0 || Double.isNaN(weights[i]))
+            {
+                throw new IllegalArgumentException("Weights must not be negative: " + weights[i]);
+            }
+            total += weights[i];
+            if (weights[i] > weights[heaviest])
+            {
+                heaviest = i;
+            }
+        }
+        if (!(total > 0))
+        {
+            throw new IllegalArgumentException("At least one weight must be positive.");
+        }
+
+        probabilities = new double[n];
+        aliases = new int[n];
+
+        // Scale the weights so that they average 1, and split them into columns under and over 1.
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int numSmall = 0;
+        int numLarge = 0;
+        for (int i = 0; i < n; i++)
+        {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1)
+            {
+                small[numSmall++] = i;
+            }
+            else
+            {
+                large[numLarge++] = i;
+            }
+        }
+
+        // Fill each small column with (part of) a large one.
+        while (numSmall > 0 && numLarge > 0)
+        {
+            int less = small[--numSmall];
+            int more = large[--numLarge];
+            probabilities[less] = scaled[less];
+            aliases[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1)
+            {
+                small[numSmall++] = more;
+            }
+            else
+            {
+                large[numLarge++] = more;
+            }
+        }
+
+        // Whatever is left is full (up to rounding errors), except the columns of outcomes with no
+        // weight, which always choose their alias instead.
+        while (numLarge > 0)
+        {
+            int i = large[--numLarge];
+            probabilities[i] = 1;
+            aliases[i] = i;
+        }
+        while (numSmall > 0)
+        {
+            int i = small[--numSmall];
+            if (weights[i] > 0)
+            {
+                probabilities[i] = 1;
+                aliases[i] = i;
+            }
+            else
+            {
+                probabilities[i] = 0;
+                aliases[i] = heaviest;
+            }
+        }
+    }
+
+    /**
+     * Samples an outcome using the given random number generator.
+     * @param rand The random number generator.
+     * @return The outcome, from 0 to n - 1.
+     */
+    public int sample(RandomGenerator rand)
+    {
+        return sample(rand.nextLong());
+    }
+
+    /**
+     * Samples an outcome from a random long, e.g., a counter-based one from SplitMixRandom.hash:
+     * the high 32 bits choose the column, and the low 32 bits choose between its outcome and its alias.
+     * @param random The random long.
+     * @return The outcome, from 0 to n - 1.
+     */
+    public int sample(long random)
+    {
+        int column = SplitMixRandom.toInt(random, probabilities.length);
+        double coin = (random & 0xFFFFFFFFL) * 0x1.0p-32;
+        return (coin < probabilities[column]) ? column : aliases[column];
+    }
+}
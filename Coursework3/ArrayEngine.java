@@ -0,0 +1,893 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the simulation on an ArrayField, with the rules of every cell type ported from the
+ * performAliveBehaviour / performDeadBehaviour methods of the Cell subclasses to operate on
+ * positions (indices) instead of objects.
+ *
+ * Each generation happens in three phases:
+ * 1. Every cell acts, deciding its own next state from the current state of the field. Effects on
+ *    neighbours are not applied straight away, but recorded as intents in an IntentBuffer.
+ * 2. The intents are applied to each target in the order that they were recorded, except that the
+ *    infections are applied before every other intent. DiseaseCell cells act before any other cell in an OBJECT
+ *    simulation (see CellType), so a cell that a CleansingCell cleanses in the same generation as a
+ *    DiseaseCell infects it ends up cleansed, whichever of the two comes first in the field.
+ * 3. The next state of the field becomes its current state.
+ * As cells only read the current state while acting, the order in which they act does not matter.
+ *
+ * The field is split into bands of rows, each with its own intents. With more than one thread, the
+ * bands act (and are committed) in parallel on a ForkJoinPool. A band applies the intents targeting
+ * its inner rows itself, as it goes (see Band); the intents targeting the rows at the edges of the
+ * bands are applied band by band, in order, once every band has acted. Every random decision is a counter-based random number computed
+ * from the seed, the generation and the index of the cell (see SplitMixRandom), so the result of a
+ * run only depends on the seed, and not on the number of threads or the order in which bands act.
+ *
+ * Cells do not visit their neighbours to count them: before the cells of a row act, their band
+ * computes the counts of the row in a bulk pass (see NeighbourhoodCounts), which the rules then read.
+ * Acting only changes the next state of the field, so the counts are the same as if every row had
+ * been counted before any cell acted.
+ *
+ * Apart from the field, the memory used by the engine grows with the width of the field, but not its
+ * depth: the ActiveSet is kept in the FieldStorage of the field, and the counts and intents of each
+ * band only cover a few rows. So a field in a memory-mapped file can be much larger than the heap.
+ *
+ * Only the cells in the ActiveSet act: those next to a cell that changed in the previous generation,
+ * and those with behaviour of their own every generation. The others would not change anyway, so
+ * the cost of a generation grows with the activity in the field rather than its area.
+ *
+ * The field may also be a region of a larger field that is run in pieces (see setRegion and
+ * TileWorker). Random numbers are then drawn for the index of each cell in the larger field, so
+ * every cell makes the same decisions as it would if the larger field were run as a whole.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class ArrayEngine
+{
+    private static final int BANDS_PER_THREAD = 4; // Extra bands keep every thread busy when bands take different times
+
+    // Salts that keep the random numbers drawn for different decisions about the same cell independent.
+    private static final int TYPE_SALT = 0;
+    private static final int ALIVE_SALT = 1;
+    private static final int ACT_SALT = 2;
+
+    private ArrayField field;
+    private RuleSet rules; // The rules of the field
+    private ActiveSet activeSet;
+    private boolean activeSetEnabled; // When false, every cell acts in every generation
+    private CellRegistry registry; // Only the spawn weights are used, as cells are not objects here
+    private long seed;
+    private long worldSeed; // The seed of the current world, derived from the seed each time the field is populated
+    private int numWorlds;
+    private long generation;
+    private int originRow, originCol; // The position in the larger field of the top left of the field
+    private int totalDepth, totalWidth; // The dimensions of the larger field (those of the field if it is not a region)
+    private List<Band> bands;
+    private ForkJoinPool pool; // Null when running on a single thread
+
+    /**
+     * Create an engine to run the simulation on the given field on a single thread.
+     * @param field The field to run the simulation on.
+     * @param seed The seed that every random decision is derived from.
+     */
+    public ArrayEngine(ArrayField field, long seed)
+    {
+        this(field, seed, 1);
+    }
+
+    /**
+     * Create an engine to run the simulation on the given field.
+     * @param field The field to run the simulation on.
+     * @param seed The seed that every random decision is derived from.
+     * @param numThreads The number of threads to run each generation on.
+     */
+    public ArrayEngine(ArrayField field, long seed, int numThreads)
+    {
+        this(field, seed, numThreads, CellRegistry.createDefault());
+    }
+
+    /**
+     * Create an engine to run the simulation on the given field, spawning cell types with the given weights.
+     * @param field The field to run the simulation on.
+     * @param seed The seed that every random decision is derived from.
+     * @param numThreads The number of threads to run each generation on.
+     * @param registry The registry holding the spawn weight of each cell type.
+     */
+    public ArrayEngine(ArrayField field, long seed, int numThreads, CellRegistry registry)
+    {
+        if (numThreads < 1)
+        {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
+        this.field = field;
+        this.rules = field.getRules();
+        this.seed = seed;
+        this.registry = registry;
+        this.activeSet = new ActiveSet(field.getDepth(), field.getWidth(), field.getStorage());
+        this.activeSetEnabled = true;
+        this.totalDepth = field.getDepth();
+        this.totalWidth = field.getWidth();
+        this.pool = (numThreads > 1) ? new ForkJoinPool(numThreads) : null;
+
+        // Split the rows into (almost) equally sized bands.
+        int numBands = Math.min(field.getDepth(), (numThreads > 1) ? numThreads * BANDS_PER_THREAD : 1);
+        this.bands = new ArrayList<>();
+        for (int i = 0; i < numBands; i++)
+        {
+            int fromRow = (int) ((long) field.getDepth() * i / numBands);
+            int toRow = (int) ((long) field.getDepth() * (i + 1) / numBands);
+            bands.add(new Band(fromRow, toRow));
+        }
+    }
+
+    /**
+     * Randomly populate the field with live/dead cells, following the same distribution as CellCreator:
+     * Rule.DISEASE_MAXIMUM_NUM_CELLS cells are DiseaseCell cells, and the rest are chosen with the spawn weights.
+     * Every call populates a different world, starting again from generation 0.
+     */
+    public void populate()
+    {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        int size = totalDepth * totalWidth;
+        worldSeed = SplitMixRandom.hash(seed, numWorlds);
+        numWorlds ++;
+        generation = 0;
+        activeSet.activateAll();
+
+        // Choose the (distinct) positions of the DiseaseCell cells, in the larger field if the field is a region.
+        SplitMixRandom rand = new SplitMixRandom(worldSeed);
+        Set<Integer> chosen = new HashSet<>();
+        int numDisease = Math.min(rules.get(Rule.DISEASE_MAXIMUM_NUM_CELLS), size);
+        while (chosen.size() < numDisease)
+        {
+            chosen.add(rand.nextInt(size));
+        }
+        // The positions are visited in order (of their index in the larger field too), so a sorted array will do.
+        int[] diseasePositions = chosen.stream().mapToInt(Integer::intValue).sorted().toArray();
+        int nextDisease = 0;
+
+        for (int row = 0; row < depth; row++)
+        {
+            for (int col = 0; col < width; col++)
+            {
+                int index = row * width + col;
+                int totalIndex = getTotalIndex(index);
+                while (nextDisease < diseasePositions.length && diseasePositions[nextDisease] < totalIndex)
+                {
+                    nextDisease ++;
+                }
+                CellType type;
+                if (nextDisease < diseasePositions.length && diseasePositions[nextDisease] == totalIndex)
+                {
+                    type = CellType.DISEASE;
+                }
+                else
+                {
+                    type = registry.sampleType(random(index, TYPE_SALT));
+                }
+                boolean isAlive = SplitMixRandom.toDouble(random(index, ALIVE_SALT)) <= getAliveProbability(type);
+                field.place(row, col, type, isAlive, getInitialHealth(type));
+            }
+        }
+    }
+
+    /**
+     * Run the simulation for a single generation.
+     */
+    public void step()
+    {
+        generation ++;
+        if (!activeSetEnabled)
+        {
+            activeSet.activateAll();
+        }
+
+        runBands(band -> band.act());
+        for (Band band : bands)
+        {
+            applyIntents(band.borderIntents, true);
+        }
+        for (Band band : bands)
+        {
+            applyIntents(band.borderIntents, false);
+        }
+        runBands(band -> band.commit());
+        for (Band band : bands)
+        {
+            field.addPopulationChanges(band.populationChanges, band.hashChange);
+        }
+        runBands(band -> activeSet.updateRows(band.fromRow, band.toRow));
+    }
+
+    /**
+     * Writes the state of the engine to a checkpoint (see Checkpoint). The ActiveSet is not written:
+     * after reading the state back, every cell acts in the first generation, which gives the same
+     * results, and then only the active cells act again.
+     * @param out The checkpoint being written.
+     */
+    public void writeState(Checkpoint.Output out)
+    {
+        out.putLong(seed);
+        out.putLong(worldSeed);
+        out.putInt(numWorlds);
+        out.putLong(generation);
+    }
+
+    /**
+     * Reads the state of the engine from a checkpoint, as written by writeState.
+     * @param in The checkpoint being read.
+     */
+    public void readState(Checkpoint.Input in)
+    {
+        seed = in.getLong();
+        worldSeed = in.getLong();
+        numWorlds = in.getInt();
+        generation = in.getLong();
+        activeSet.activateAll();
+    }
+
+    /**
+     * Makes the field a region of a larger field, which is run in pieces (see TileWorker), so that it is
+     * populated with, and its cells make, the same random decisions as the same cells of the larger field.
+     * Must be set before the field is populated.
+     * @param originRow The row of the larger field that the top row of the field is.
+     * @param originCol The column of the larger field that the left column of the field is.
+     * @param totalDepth The depth of the larger field.
+     * @param totalWidth The width of the larger field.
+     */
+    public void setRegion(int originRow, int originCol, int totalDepth, int totalWidth)
+    {
+        if (originRow < 0 || originCol < 0 || originRow + field.getDepth() > totalDepth
+            || originCol + field.getWidth() > totalWidth)
+        {
+            throw new IllegalArgumentException("Region of " + field.getDepth() + "x" + field.getWidth() + " at (" + originRow
+                                               + ", " + originCol + ") is outside a field of " + totalDepth + "x" + totalWidth);
+        }
+        ArrayField.getSize(totalDepth, totalWidth);
+        this.originRow = originRow;
+        this.originCol = originCol;
+        this.totalDepth = totalDepth;
+        this.totalWidth = totalWidth;
+    }
+
+    /**
+     * Sets whether only the active cells act in each generation (the default), or every cell.
+     * The results are the same either way.
+     * @param enabled true to only make the active cells act.
+     */
+    public void setActiveSetEnabled(boolean enabled)
+    {
+        this.activeSetEnabled = enabled;
+    }
+
+    /**
+     * Makes a change to the field from outside of the simulation (see FieldEdit). Must be called between
+     * generations. Every cell next to (or at) an edited position acts in the next generation.
+     * @param edit The edit to make.
+     */
+    public void applyEdit(FieldEdit edit)
+    {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        for (int row = edit.getFromRow(depth); row < edit.getToRow(depth); row++)
+        {
+            for (int col = edit.getFromCol(width); col < edit.getToCol(width); col++)
+            {
+                int index = row * width + col;
+                CellType type = CellType.fromCode(field.getTypeCode(index));
+                switch (edit.getKind())
+                {
+                    case PLACE:
+                        field.place(row, col, edit.getType(), true, getInitialHealth(edit.getType()));
+                        break;
+                    case INFECT:
+                        if (field.isAlive(row, col) && type.isNonImmune() && field.getDisease(index) == 0)
+                        {
+                            field.infect(index, Disease.BASE_DMG);
+                        }
+                        break;
+                    default:
+                        field.place(row, col, type, false, 0);
+                        break;
+                }
+                activeSet.activateAround(row, col);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cells that will act in the next generation.
+     * @return The number of active cells.
+     */
+    public int getNumActive()
+    {
+        return activeSet.getNumActive();
+    }
+
+    /**
+     * Performs a task for every band, in parallel when running on more than one thread.
+     * @param task The task to perform for each band.
+     */
+    private void runBands(BandTask task)
+    {
+        if (pool == null)
+        {
+            for (Band band : bands)
+            {
+                task.run(band);
+            }
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Band band : bands)
+        {
+            tasks.add(() -> {
+                task.run(band);
+                return null;
+            });
+        }
+        for (Future<Void> result : pool.invokeAll(tasks))
+        {
+            try
+            {
+                result.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while running a generation", e);
+            }
+            catch (ExecutionException e)
+            {
+                throw new IllegalStateException("A band failed while running a generation", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Returns the random number for a decision about the cell at the given index in the current generation
+     * (or while populating, in generation 0). It is always the same for the same seed, generation and cell.
+     * @param index The index of the cell.
+     * @param salt The decision being made (e.g., ACT_SALT).
+     * @return A random long.
+     */
+    private long random(int index, int salt)
+    {
+        return SplitMixRandom.hash(worldSeed, generation, getTotalIndex(index), salt);
+    }
+
+    /**
+     * Returns the index in the larger field (see setRegion) of the cell at the given index of the field.
+     * @param index The index of the cell in the field.
+     * @return The index of the cell in the larger field (the same index if the field is not a region).
+     */
+    private int getTotalIndex(int index)
+    {
+        int width = field.getWidth();
+        if (width == totalWidth)
+        {
+            return originRow * width + index;
+        }
+        return (originRow + index / width) * totalWidth + originCol + index % width;
+    }
+
+    /**
+     * Make the cell at the given position act, deciding its state in the next generation.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param counts The neighbourhood counts of the row of the cell.
+     * @param intents The band to record the cell's effects on its neighbours in.
+     */
+    private void act(int row, int col, NeighbourhoodCounts counts, Band intents)
+    {
+        int index = row * field.getWidth() + col;
+        CellType type = CellType.fromCode(field.getTypeCode(index));
+        boolean isAlive = field.isAlive(row, col);
+
+        // The living neighbours (in total, and those that the rules look for), counted before the row acted.
+        int numNeighbours = counts.getLiving(col);
+        int numChameleons = counts.getLiving(CellType.CHAMELEON, col);
+        int numInfected = counts.getInfected(col);
+
+        switch (type)
+        {
+            case MYCOPLASMA:
+                // Lives on with 3 neighbours, or with 2 if it is already alive.
+                field.setNextAlive(row, col, numNeighbours == 3 || (isAlive && numNeighbours == 2));
+                break;
+            case DISEASE:
+                actDiseaseCell(row, col, index, isAlive, numInfected, intents);
+                break;
+            default:
+                actNonImmuneCell(row, col, index, type, isAlive, numNeighbours, numChameleons, numInfected, intents);
+                break;
+        }
+    }
+
+    /**
+     * Performs the behaviour of a DiseaseCell (see DiseaseCell).
+     */
+    private void actDiseaseCell(int row, int col, int index, boolean isAlive, int numInfected, Band intents)
+    {
+        if (!isAlive)
+        {
+            field.setNextAlive(row, col, false);
+            return;
+        }
+
+        // The disease deals bonus damage when at least 3 of the neighbours are already infected.
+        int damage = Disease.BASE_DMG + ((numInfected >= 3) ? 1 : 0);
+        recordNeighbourIntents(row, col, IntentBuffer.INFECT, damage, intents);
+
+        // Dies once it has exceeded its maximum age.
+        int age = field.getAge(index);
+        if (age > rules.get(Rule.DISEASE_MAXIMUM_AGE))
+        {
+            field.setNextAlive(row, col, false);
+        }
+        else
+        {
+            field.setAge(index, age + 1);
+            field.setNextAlive(row, col, true);
+        }
+    }
+
+    /**
+     * Performs the behaviour of a NonImmuneCell of the given type (see NonImmuneCell and its subclasses).
+     */
+    private void actNonImmuneCell(int row, int col, int index, CellType type, boolean isAlive, int numNeighbours,
+                                  int numChameleons, int numInfected, Band intents)
+    {
+        if (!isAlive)
+        {
+            field.setNextDisease(index, 0);
+
+            // ChaosCell cells have a 25% chance of reviving themselves, and ChameleonCell cells
+            // are revived by enough living ChameleonCell neighbours.
+            boolean revive = (type == CellType.CHAOS && SplitMixRandom.toInt(random(index, ACT_SALT), 100) < 25)
+                             || (type == CellType.CHAMELEON && numChameleons >= rules.get(Rule.CHAMELEON_REVIVAL_NEIGHBOURS));
+            if (revive)
+            {
+                field.setNextAlive(row, col, true);
+                field.setHealth(index, getInitialHealth(type));
+            }
+            return;
+        }
+
+        // Take damage from the disease, or become infected by an infected neighbour.
+        int disease = field.getDisease(index);
+        if (disease > 0)
+        {
+            field.setHealth(index, field.getHealth(index) - disease);
+        }
+        else if (numInfected > 0)
+        {
+            disease = Disease.BASE_DMG; // Spread diseases deal no bonus damage (see NonImmuneCell.getDisease)
+            field.setNextDisease(index, disease);
+        }
+
+        boolean nextAlive = numNeighbours < getDeathThreshold(type, index, disease > 0);
+        switch (type)
+        {
+            case EVOLVING:
+                int age = field.getAge(index);
+                if (age != rules.get(Rule.EVOLVING_ELDERLY_AGE))
+                {
+                    field.setAge(index, age + 1);
+                }
+                break;
+            case CHAOS:
+                int randNum = SplitMixRandom.toInt(random(index, ACT_SALT), 100);
+                if (randNum < 10)
+                {
+                    nextAlive = false; // Self-destruct
+                }
+                else if (randNum < 30)
+                {
+                    recordNeighbourIntents(row, col, IntentBuffer.REVIVE, 0, intents);
+                }
+                else if (randNum < 50)
+                {
+                    recordNeighbourIntents(row, col, IntentBuffer.EXTERMINATE, 0, intents);
+                }
+                break;
+            case CLEANSING:
+                field.setNextDisease(index, 0);
+                recordNeighbourIntents(row, col, IntentBuffer.CLEANSE, 0, intents);
+                break;
+            case CHAMELEON:
+                if (disease == 0)
+                {
+                    // Shift to a different shade.
+                    int numColors = ChameleonCell.COLORS.size();
+                    field.setAge(index, (field.getAge(index) + 1 + SplitMixRandom.toInt(random(index, ACT_SALT), numColors - 1)) % numColors);
+                }
+                break;
+            case PURGER:
+                int numThreats = recordNeighbourIntents(row, col, IntentBuffer.EXTERMINATE, 0, intents);
+                for (int i = 0; i < numThreats && field.getHealth(index) < rules.get(Rule.PURGER_MAX_HEALTH); i++)
+                {
+                    field.setHealth(index, field.getHealth(index) + 1);
+                }
+                break;
+            default:
+                break;
+        }
+
+        field.setNextAlive(row, col, nextAlive);
+        if (!nextAlive)
+        {
+            field.setNextDisease(index, 0);
+        }
+    }
+
+    /**
+     * Records an intent of the given kind for every neighbour of a cell that the intent applies to:
+     * dead NonImmuneCell neighbours for REVIVE, living NonImmuneCell neighbours for INFECT and CLEANSE
+     * (only uninfected ones for INFECT), and for EXTERMINATE, living NonImmuneCell neighbours for a
+     * ChaosCell or living DiseaseCell and ChaosCell neighbours ("threats") for a PurgerCell.
+     * @return The number of intents recorded.
+     */
+    private int recordNeighbourIntents(int row, int col, int kind, int value, Band intents)
+    {
+        int width = field.getWidth();
+        boolean isPurger = CellType.fromCode(field.getTypeCode(row * width + col)) == CellType.PURGER;
+        int numRecorded = 0;
+        for (int roffset = -1; roffset <= 1; roffset++)
+        {
+            int nextRow = row + roffset;
+            if (nextRow < 0 || nextRow >= field.getDepth())
+            {
+                continue;
+            }
+            for (int coffset = -1; coffset <= 1; coffset++)
+            {
+                int nextCol = col + coffset;
+                if (nextCol < 0 || nextCol >= width || (roffset == 0 && coffset == 0))
+                {
+                    continue;
+                }
+                int neighbour = nextRow * width + nextCol;
+                CellType type = CellType.fromCode(field.getTypeCode(neighbour));
+                boolean isAlive = field.isAlive(nextRow, nextCol);
+
+                boolean applies;
+                if (kind == IntentBuffer.REVIVE)
+                {
+                    applies = !isAlive && type.isNonImmune();
+                }
+                else if (kind == IntentBuffer.EXTERMINATE && isPurger)
+                {
+                    applies = isAlive && (type == CellType.DISEASE || type == CellType.CHAOS);
+                }
+                else if (kind == IntentBuffer.INFECT)
+                {
+                    applies = isAlive && type.isNonImmune() && field.getDisease(neighbour) == 0;
+                }
+                else
+                {
+                    applies = isAlive && type.isNonImmune();
+                }
+
+                if (applies)
+                {
+                    intents.record(kind, nextRow, neighbour, value);
+                    numRecorded ++;
+                }
+            }
+        }
+        return numRecorded;
+    }
+
+    /**
+     * Applies either the infections or every other kind of recorded intent to the next state of the
+     * field, in the order they were recorded. The infections have to be applied first, as CLEANSE
+     * undoes them (the other kinds of intent do not depend on each other's order).
+     * @param intents The intents to apply.
+     * @param infections true to apply only the INFECT intents, false to apply every other intent.
+     */
+    private void applyIntents(IntentBuffer intents, boolean infections)
+    {
+        int width = field.getWidth();
+        for (int i = 0; i < intents.size(); i++)
+        {
+            if ((intents.getKind(i) == IntentBuffer.INFECT) != infections)
+            {
+                continue;
+            }
+            int target = intents.getTarget(i);
+            int row = target / width;
+            int col = target % width;
+            if (activeSet.touch(row, col))
+            {
+                // The target did not act, so it keeps its current state unless the intent changes it.
+                field.setNextAlive(row, col, field.isAlive(row, col));
+            }
+            switch (intents.getKind(i))
+            {
+                case IntentBuffer.REVIVE:
+                    field.setNextAlive(row, col, true);
+                    break;
+                case IntentBuffer.EXTERMINATE:
+                    field.setHealth(target, 0);
+                    break;
+                case IntentBuffer.INFECT:
+                    if (field.getNextDisease(target) == 0)
+                    {
+                        field.setNextDisease(target, intents.getValue(i));
+                    }
+                    break;
+                case IntentBuffer.CLEANSE:
+                    field.setNextDisease(target, 0);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Returns a boolean indicating whether the cell at the given position changes in every generation,
+     * whatever its neighbours do: ChaosCell cells (which act at random), living DiseaseCell, ChameleonCell
+     * and (not yet elderly) EvolvingCell cells, infected cells, and living CleansingCell cells (whose
+     * cleansing undoes infections of their neighbours in the same generation).
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return true if the cell has to act in every generation.
+     */
+    private boolean isIntrinsic(int row, int col)
+    {
+        int index = row * field.getWidth() + col;
+        CellType type = CellType.fromCode(field.getTypeCode(index));
+        if (type == CellType.CHAOS)
+        {
+            return true;
+        }
+        if (!field.isAlive(row, col))
+        {
+            return false;
+        }
+        switch (type)
+        {
+            case DISEASE:
+            case CHAMELEON:
+            case CLEANSING:
+                return true;
+            case EVOLVING:
+                return field.getAge(index) != rules.get(Rule.EVOLVING_ELDERLY_AGE) || field.getDisease(index) > 0;
+            default:
+                return type.isNonImmune() && field.getDisease(index) > 0;
+        }
+    }
+
+    /**
+     * Returns the death threshold of a cell (see the getDeathThreshold method of each HealthCell subclass).
+     * @param type The type of the cell.
+     * @param index The index of the cell.
+     * @param isInfected Whether the cell is infected with a disease.
+     * @return The death threshold of the cell.
+     */
+    private int getDeathThreshold(CellType type, int index, boolean isInfected)
+    {
+        int deathThreshold;
+        switch (type)
+        {
+            case PURGER:
+                return rules.get(Rule.PURGER_DEATH_THRESHOLD); // Not affected by disease
+            case CHAOS:
+                deathThreshold = rules.get(Rule.CHAOS_DEATH_THRESHOLD);
+                break;
+            case CLEANSING:
+                deathThreshold = rules.get(Rule.CLEANSING_DEATH_THRESHOLD);
+                break;
+            case CHAMELEON:
+                deathThreshold = rules.get(Rule.CHAMELEON_DEATH_THRESHOLD);
+                break;
+            case EVOLVING:
+                deathThreshold = rules.getEvolvingDeathThreshold(rules.getMaturityLevel(field.getAge(index)));
+                break;
+            default:
+                return rules.get(Rule.DISEASE_DEATH_THRESHOLD);
+        }
+        return isInfected ? deathThreshold - 1 : deathThreshold;
+    }
+
+    /**
+     * Returns the probability that a cell of the given type is alive when created.
+     * @param type The type of the cell.
+     * @return The probability that the cell is alive when created.
+     */
+    private static double getAliveProbability(CellType type)
+    {
+        switch (type)
+        {
+            case DISEASE:
+                return DiseaseCell.ALIVE_PROB;
+            case PURGER:
+                return PurgerCell.ALIVE_PROB;
+            case CHAOS:
+                return ChaosCell.ALIVE_PROB;
+            case CLEANSING:
+                return CleansingCell.ALIVE_PROB;
+            case CHAMELEON:
+                return ChameleonCell.ALIVE_PROB;
+            case EVOLVING:
+                return EvolvingCell.ALIVE_PROB;
+            default:
+                return Mycoplasma.ALIVE_PROB;
+        }
+    }
+
+    /**
+     * Returns the initial health of a cell of the given type.
+     * @param type The type of the cell.
+     * @return The initial health of the cell (0 for types without health).
+     */
+    private static int getInitialHealth(CellType type)
+    {
+        switch (type)
+        {
+            case DISEASE:
+                return DiseaseCell.INITIAL_HEALTH;
+            case PURGER:
+                return PurgerCell.INITIAL_HEALTH;
+            case CHAOS:
+                return ChaosCell.INITIAL_HEALTH;
+            case CLEANSING:
+                return CleansingCell.INITIAL_HEALTH;
+            case CHAMELEON:
+                return ChameleonCell.INITIAL_HEALTH;
+            case EVOLVING:
+                return EvolvingCell.INITIAL_HEALTH;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * A task performed for a single band.
+     */
+    @FunctionalInterface
+    private interface BandTask
+    {
+        void run(Band band);
+    }
+
+    /**
+     * A band of consecutive rows of the field, which acts independently of the other bands.
+     * Rows of the bit-planes never share a long, so bands can write their next states at the same time.
+     *
+     * The intents of a band are applied as soon as their targets and every cell that can send intents
+     * to them have acted: the intents targeting a row once the row below it has acted. So only the
+     * intents of the last 3 rows are kept, and the memory they take grows with the width of the field
+     * but not its depth. The rows at the edges of the band also get intents from the bands next to it,
+     * so the intents targeting them (and the rows just outside the band) are kept until every band has
+     * acted, and applied by step in the order of the bands.
+     */
+    private class Band
+    {
+        private final int fromRow, toRow;
+        private final IntentBuffer[] rowIntents; // The intents targeting each of the last 3 rows that acted, by row % 3
+        private final IntentBuffer borderIntents; // The intents targeting rows that other bands send intents to too
+        private final int[] populationChanges; // Births, deaths and infections in the band (see ArrayField.commitRows)
+        private long hashChange; // The change in the hash of the field from the band
+        private final NeighbourhoodCounts counts; // The neighbourhood counts of the row acting
+
+        /**
+         * Create a band.
+         * @param fromRow The first row in the band.
+         * @param toRow The row after the last row in the band.
+         */
+        private Band(int fromRow, int toRow)
+        {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.rowIntents = new IntentBuffer[] {new IntentBuffer(), new IntentBuffer(), new IntentBuffer()};
+            this.borderIntents = new IntentBuffer();
+            this.populationChanges = ArrayField.createPopulationChanges();
+            this.counts = new NeighbourhoodCounts(field.getDepth(), field.getWidth(), CellType.CHAMELEON);
+        }
+
+        /**
+         * Makes every active cell in the band act, and applies the intents that only target its inner rows.
+         */
+        private void act()
+        {
+            borderIntents.clear();
+            activeSet.beginGeneration(fromRow, toRow);
+            counts.clear();
+            int wordsPerRow = (field.getWidth() + 63) >>> 6;
+            for (int row = fromRow; row < toRow; row++)
+            {
+                if (activeSet.isRowActive(row))
+                {
+                    counts.computeRow(field, row);
+                    for (int word = 0; word < wordsPerRow; word++)
+                    {
+                        long bits = activeSet.getActiveWord(row, word);
+                        while (bits != 0)
+                        {
+                            int col = (word << 6) + Long.numberOfTrailingZeros(bits);
+                            bits &= bits - 1;
+                            ArrayEngine.this.act(row, col, counts, this);
+                        }
+                    }
+                }
+                if (row > fromRow)
+                {
+                    applyRowIntents(row - 1);
+                }
+            }
+            applyRowIntents(toRow - 1);
+        }
+
+        /**
+         * Records an intent of a cell in the band.
+         * @param kind The kind of intent.
+         * @param targetRow The row of the target.
+         * @param target The index of the target.
+         * @param value The value of the intent.
+         */
+        private void record(int kind, int targetRow, int target, int value)
+        {
+            if ((fromRow > 0 && targetRow <= fromRow) || (toRow < field.getDepth() && targetRow >= toRow - 1))
+            {
+                borderIntents.add(kind, target, value);
+            }
+            else
+            {
+                rowIntents[targetRow % 3].add(kind, target, value);
+            }
+        }
+
+        /**
+         * Applies the intents targeting an inner row of the band (infections first), once the row and
+         * the rows next to it have acted.
+         * @param row The row.
+         */
+        private void applyRowIntents(int row)
+        {
+            IntentBuffer intents = rowIntents[row % 3];
+            applyIntents(intents, true);
+            applyIntents(intents, false);
+            intents.clear();
+        }
+
+        /**
+         * Commits the touched cells in the band, and updates which of them are intrinsic.
+         */
+        private void commit()
+        {
+            hashChange = field.commitRows(fromRow, toRow, activeSet, populationChanges);
+            int wordsPerRow = (field.getWidth() + 63) >>> 6;
+            for (int row = fromRow; row < toRow; row++)
+            {
+                for (int word = 0; word < wordsPerRow; word++)
+                {
+                    long touched = activeSet.getTouchedWord(row, word);
+                    long intrinsic = 0;
+                    long bits = touched;
+                    while (bits != 0)
+                    {
+                        int bit = Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        if (isIntrinsic(row, (word << 6) + bit))
+                        {
+                            intrinsic |= 1L << bit;
+                        }
+                    }
+                    activeSet.setIntrinsic(row, word, touched, intrinsic);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,702 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A rectangular grid of cells stored as primitive parallel arrays (structure-of-arrays) rather
+ * than one Cell object per position. Each position is identified by its index (row * width + col).
+ * The whole field costs a handful of bytes per position, which lets grids far larger than the
+ * object-per-cell Field fit into memory. The rules acting on this field are in ArrayEngine.
+ *
+ * Stored per position:
+ * - the cell type code (CellType ordinal),
+ * - whether the cell is alive now and in the next generation (bit-planes, 1 bit per position),
+ * - health (for HealthCell types),
+ * - age (generations lived for EvolvingCell and DiseaseCell cells, the current shade for ChameleonCell cells),
+ * - the damage of the disease infecting the cell now and in the next generation (0 if not infected).
+ * The number of living cells of each type is kept up to date as cells are placed and committed.
+ *
+ * The state is kept in a FieldStorage: arrays on the heap by default, or a memory-mapped file
+ * (MappedFieldStorage) for fields larger than the heap.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class ArrayField implements CellGrid
+{
+    public static final int CELL_BYTES = 6; // The bytes that writeCells writes for each position
+
+    private final int depth, width;
+    private final int wordsPerRow; // Every row of a bit-plane starts on a new long, so rows never share a long
+
+    private final FieldStorage storage;
+    private final RuleSet rules; // The rules that the cells in the field follow
+    private final int[] population; // The number of living cells of each type, indexed by CellType ordinal
+    private final long[] births, deaths; // The number of cells of each type born and died in generations so far
+    private int numInfected; // The number of living, infected cells
+    private long stateHash; // The XOR of the Zobrist keys of the living cells (see CellGrid.getStateHash)
+
+    /**
+     * Create an empty field of the given dimensions.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public ArrayField(int depth, int width)
+    {
+        this(depth, width, new HeapFieldStorage(getSize(depth, width), getNumWords(depth, width)));
+    }
+
+    /**
+     * Create a field of the given dimensions, kept in the given storage. The storage may already hold a
+     * field of these dimensions, whose state is kept.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param storage The storage, with room for getSize(depth, width) positions and getNumWords(depth, width)
+     *                longs per bit-plane.
+     */
+    public ArrayField(int depth, int width, FieldStorage storage)
+    {
+        this(depth, width, storage, new RuleSet());
+    }
+
+    /**
+     * Create a field of the given dimensions, kept in the given storage, whose cells follow the given rules.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param storage The storage, with room for getSize(depth, width) positions and getNumWords(depth, width)
+     *                longs per bit-plane.
+     * @param rules The rules that the cells in the field follow.
+     */
+    public ArrayField(int depth, int width, FieldStorage storage, RuleSet rules)
+    {
+        getSize(depth, width);
+        this.rules = rules;
+        this.depth = depth;
+        this.width = width;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.storage = storage;
+        this.population = new int[CellType.count()];
+        this.births = new long[CellType.count()];
+        this.deaths = new long[CellType.count()];
+
+        countPopulation(); // Of the cells already in the storage
+    }
+
+    /**
+     * Returns the number of positions in a field of the given dimensions, checking that they can be indexed by an int.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @return The number of positions.
+     */
+    public static int getSize(int depth, int width)
+    {
+        if ((long) depth * width > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Field of " + depth + "x" + width + " is too large to index.");
+        }
+        return depth * width;
+    }
+
+    /**
+     * Returns the number of longs in each bit-plane of a field of the given dimensions.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @return The number of longs in a bit-plane.
+     */
+    public static int getNumWords(int depth, int width)
+    {
+        return depth * ((width + 63) >>> 6);
+    }
+
+    /**
+     * Place a newly created cell at the given position.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @param type The type of the cell.
+     * @param isAlive Whether the cell starts off alive.
+     * @param initialHealth The initial health of the cell (ignored for types without health).
+     */
+    public void place(int row, int col, CellType type, boolean isAlive, int initialHealth)
+    {
+        int index = row * width + col;
+        if (getBit(FieldStorage.ALIVE, row, col))
+        {
+            population[storage.getByte(FieldStorage.TYPES, index)] --;
+            stateHash ^= CellGrid.zobristKey(index, CellType.fromCode(storage.getByte(FieldStorage.TYPES, index)));
+        }
+        if (storage.getByte(FieldStorage.DISEASE, index) > 0)
+        {
+            numInfected --;
+        }
+        if (isAlive)
+        {
+            population[type.ordinal()] ++;
+            stateHash ^= CellGrid.zobristKey(index, type);
+        }
+        storage.setByte(FieldStorage.TYPES, index, (byte) type.ordinal());
+        storage.setByte(FieldStorage.HEALTH, index, (byte) initialHealth);
+        storage.setAge(index, (short) 0);
+        storage.setByte(FieldStorage.DISEASE, index, (byte) 0);
+        storage.setByte(FieldStorage.NEXT_DISEASE, index, (byte) 0);
+        setBit(FieldStorage.ALIVE, row, col, isAlive);
+        setBit(FieldStorage.NEXT_ALIVE, row, col, false);
+    }
+
+    /**
+     * Makes the "next" state of every position the current state.
+     * A cell with health is only alive if it still has health left, and dead cells cannot be infected.
+     */
+    public void commit()
+    {
+        int[] populationChanges = createPopulationChanges();
+        long hashChange = commitRows(0, depth, populationChanges);
+        addPopulationChanges(populationChanges, hashChange);
+    }
+
+    /**
+     * Creates an array for commitRows to count the births, deaths and infections in, to be reused by one thread.
+     * @return The new array of population changes, all 0.
+     */
+    public static int[] createPopulationChanges()
+    {
+        return new int[2 * CellType.count() + 1];
+    }
+
+    /**
+     * Makes the "next" state of the positions in the given rows the current state.
+     * Rows are independent of each other, so different rows can be committed at the same time, as long
+     * as each gets its own array of population changes (which are then added with addPopulationChanges).
+     * @param fromRow The first row to commit.
+     * @param toRow The row after the last row to commit.
+     * @param populationChanges The array (from createPopulationChanges) to count the births, deaths and
+     *                          infections in.
+     * @return The change in the hash of the field, to be given to addPopulationChanges.
+     */
+    public long commitRows(int fromRow, int toRow, int[] populationChanges)
+    {
+        return commitRows(fromRow, toRow, null, populationChanges);
+    }
+
+    /**
+     * Makes the "next" state of the touched positions in the given rows the current state (see ActiveSet).
+     * The other positions keep their current state, and must not have a "next" state set.
+     * @param fromRow The first row to commit.
+     * @param toRow The row after the last row to commit.
+     * @param activeSet The set whose touched positions are committed, and that every position that was
+     *                  born, died, or was infected or cleansed is added to the changed positions of
+     *                  (if null, every position is committed).
+     * @param populationChanges The array (from createPopulationChanges) to count the births, deaths and
+     *                          infections in.
+     * @return The change in the hash of the field (the XOR of the keys of the cells born or died), to
+     *         be given to addPopulationChanges.
+     */
+    public long commitRows(int fromRow, int toRow, ActiveSet activeSet, int[] populationChanges)
+    {
+        long hashChange = 0;
+        for (int row = fromRow; row < toRow; row++)
+        {
+            for (int word = 0; word < wordsPerRow; word++)
+            {
+                long bits = (activeSet == null) ? -1L : activeSet.getTouchedWord(row, word);
+                long changedBits = 0;
+                while (bits != 0)
+                {
+                    int bit = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int col = (word << 6) + bit;
+                    if (col >= width)
+                    {
+                        break;
+                    }
+
+                    int index = row * width + col;
+                    int type = storage.getByte(FieldStorage.TYPES, index);
+                    boolean isAlive = getBit(FieldStorage.NEXT_ALIVE, row, col);
+                    if (isAlive && storage.getByte(FieldStorage.HEALTH, index) <= 0 && CellType.fromCode(type).hasHealth())
+                    {
+                        isAlive = false;
+                    }
+                    boolean hasChanged = isAlive != getBit(FieldStorage.ALIVE, row, col);
+                    if (hasChanged)
+                    {
+                        populationChanges[isAlive ? type : population.length + type] ++;
+                        hashChange ^= CellGrid.zobristKey(index, CellType.fromCode(type));
+                        setBit(FieldStorage.ALIVE, row, col, isAlive);
+                    }
+                    setBit(FieldStorage.NEXT_ALIVE, row, col, false);
+
+                    // Dead cells cannot be infected.
+                    byte cellDisease = isAlive ? storage.getByte(FieldStorage.NEXT_DISEASE, index) : 0;
+                    byte oldDisease = storage.getByte(FieldStorage.DISEASE, index);
+                    if ((cellDisease > 0) != (oldDisease > 0))
+                    {
+                        populationChanges[2 * population.length] += (cellDisease > 0) ? 1 : -1;
+                    }
+                    hasChanged |= cellDisease != oldDisease;
+                    storage.setByte(FieldStorage.DISEASE, index, cellDisease);
+                    storage.setByte(FieldStorage.NEXT_DISEASE, index, cellDisease);
+
+                    if (hasChanged)
+                    {
+                        changedBits |= 1L << bit;
+                    }
+                }
+                if (changedBits != 0 && activeSet != null)
+                {
+                    activeSet.addChanged(row, word, changedBits);
+                }
+            }
+        }
+        return hashChange;
+    }
+
+    /**
+     * Adds the population changes of rows committed with commitRows to the population, and resets them to 0.
+     * @param populationChanges The births, deaths and infections counted by commitRows.
+     * @param hashChange The change in the hash of the field returned by commitRows.
+     */
+    public void addPopulationChanges(int[] populationChanges, long hashChange)
+    {
+        stateHash ^= hashChange;
+        int numTypes = population.length;
+        for (int i = 0; i < numTypes; i++)
+        {
+            population[i] += populationChanges[i] - populationChanges[numTypes + i];
+            births[i] += populationChanges[i];
+            deaths[i] += populationChanges[numTypes + i];
+        }
+        numInfected += populationChanges[2 * numTypes];
+        Arrays.fill(populationChanges, 0);
+    }
+
+    /**
+     * Returns the rules that the cells in the field follow.
+     * @return The rules of the field.
+     */
+    public RuleSet getRules()
+    {
+        return rules;
+    }
+
+    /**
+     * Returns the storage that the field is kept in, e.g., to keep the ActiveSet of an engine next to it.
+     * @return The storage of the field.
+     */
+    public FieldStorage getStorage()
+    {
+        return storage;
+    }
+
+    /**
+     * Returns the number of living cells of the given type, which is kept up to date as cells change state.
+     * @param type The type of cell.
+     * @return The number of living cells of the type.
+     */
+    public int getPopulation(CellType type)
+    {
+        return population[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of cells of the given type that were born in the generations run so far.
+     * Cells placed at the start of a simulation do not count.
+     * @param type The type of cell.
+     * @return The number of births.
+     */
+    public long getBirths(CellType type)
+    {
+        return births[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of cells of the given type that died in the generations run so far.
+     * @param type The type of cell.
+     * @return The number of deaths.
+     */
+    public long getDeaths(CellType type)
+    {
+        return deaths[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of living cells infected with a disease, which is kept up to date as cells change state.
+     * @return The number of living, infected cells.
+     */
+    public int getNumInfected()
+    {
+        return numInfected;
+    }
+
+    /**
+     * Returns the hash of the living cells of the field, which is kept up to date as cells change state.
+     * @return The hash of the field.
+     */
+    public long getStateHash()
+    {
+        return stateHash;
+    }
+
+    /**
+     * Writes the current state of every position to a checkpoint (see Checkpoint). The "next" state is
+     * not written, as it is only set while a generation is being run.
+     * @param out The checkpoint being written.
+     */
+    public void writeState(Checkpoint.Output out)
+    {
+        byte[] row = new byte[width];
+        for (int plane : new int[] {FieldStorage.TYPES, FieldStorage.HEALTH, FieldStorage.DISEASE})
+        {
+            for (int r = 0; r < depth; r++)
+            {
+                for (int col = 0; col < width; col++)
+                {
+                    row[col] = storage.getByte(plane, r * width + col);
+                }
+                out.putBytes(row, width);
+            }
+        }
+        for (int index = 0; index < depth * width; index++)
+        {
+            out.putShort(storage.getAge(index));
+        }
+        for (int word = 0; word < depth * wordsPerRow; word++)
+        {
+            out.putLong(storage.getWord(FieldStorage.ALIVE, word));
+        }
+    }
+
+    /**
+     * Reads the state of every position from a checkpoint, as written by writeState, and recounts the population.
+     * @param in The checkpoint being read.
+     */
+    public void readState(Checkpoint.Input in)
+    {
+        int size = depth * width;
+        for (int plane : new int[] {FieldStorage.TYPES, FieldStorage.HEALTH, FieldStorage.DISEASE})
+        {
+            for (int index = 0; index < size; index++)
+            {
+                storage.setByte(plane, index, in.get());
+            }
+        }
+        for (int index = 0; index < size; index++)
+        {
+            storage.setAge(index, in.getShort());
+            storage.setByte(FieldStorage.NEXT_DISEASE, index, storage.getByte(FieldStorage.DISEASE, index));
+        }
+        Arrays.fill(population, 0);
+        numInfected = 0;
+        stateHash = 0;
+        for (int word = 0; word < depth * wordsPerRow; word++)
+        {
+            storage.setWord(FieldStorage.ALIVE, word, in.getLong());
+            storage.setWord(FieldStorage.NEXT_ALIVE, word, 0);
+        }
+        countPopulation();
+    }
+
+    /**
+     * Writes the current state of a block of positions, row by row, e.g., to send the edge of one tile
+     * of a field that is run in pieces to the tile next to it (see TileWorker). Each position takes
+     * CELL_BYTES bytes: its type code, whether it is alive, its health, its disease and its age.
+     * @param fromRow The first row of the block.
+     * @param toRow The row after the last row of the block.
+     * @param fromCol The first column of the block.
+     * @param toCol The column after the last column of the block.
+     * @param out The buffer to write to.
+     */
+    public void writeCells(int fromRow, int toRow, int fromCol, int toCol, ByteBuffer out)
+    {
+        for (int row = fromRow; row < toRow; row++)
+        {
+            for (int col = fromCol; col < toCol; col++)
+            {
+                int index = row * width + col;
+                out.put(storage.getByte(FieldStorage.TYPES, index));
+                out.put((byte) (isAlive(row, col) ? 1 : 0));
+                out.put(storage.getByte(FieldStorage.HEALTH, index));
+                out.put(storage.getByte(FieldStorage.DISEASE, index));
+                out.putShort(storage.getAge(index));
+            }
+        }
+    }
+
+    /**
+     * Replaces the current state of a block of positions with the state read from a buffer, as written
+     * by writeCells, keeping the population up to date. The positions have no "next" state set.
+     * @param fromRow The first row of the block.
+     * @param toRow The row after the last row of the block.
+     * @param fromCol The first column of the block.
+     * @param toCol The column after the last column of the block.
+     * @param in The buffer to read from.
+     */
+    public void readCells(int fromRow, int toRow, int fromCol, int toCol, ByteBuffer in)
+    {
+        for (int row = fromRow; row < toRow; row++)
+        {
+            for (int col = fromCol; col < toCol; col++)
+            {
+                int index = row * width + col;
+                CellType type = CellType.fromCode(in.get());
+                boolean isAlive = in.get() != 0;
+                place(row, col, type, isAlive, in.get());
+                byte disease = in.get();
+                if (disease > 0)
+                {
+                    numInfected ++;
+                }
+                storage.setByte(FieldStorage.DISEASE, index, disease);
+                storage.setByte(FieldStorage.NEXT_DISEASE, index, disease);
+                storage.setAge(index, in.getShort());
+            }
+        }
+    }
+
+    /**
+     * Counts the living cells of each type, and the infected ones, and hashes them from scratch.
+     */
+    private void countPopulation()
+    {
+        for (int row = 0; row < depth; row++)
+        {
+            for (int col = 0; col < width; col++)
+            {
+                if (isAlive(row, col))
+                {
+                    int type = storage.getByte(FieldStorage.TYPES, row * width + col);
+                    population[type] ++;
+                    stateHash ^= CellGrid.zobristKey(row * width + col, CellType.fromCode(type));
+                }
+                if (storage.getByte(FieldStorage.DISEASE, row * width + col) > 0)
+                {
+                    numInfected ++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the value of a bit in a bit-plane.
+     */
+    private boolean getBit(int plane, int row, int col)
+    {
+        return (storage.getWord(plane, row * wordsPerRow + (col >>> 6)) & (1L << col)) != 0;
+    }
+
+    /**
+     * Sets the value of a bit in a bit-plane.
+     */
+    private void setBit(int plane, int row, int col, boolean value)
+    {
+        int word = row * wordsPerRow + (col >>> 6);
+        long bits = storage.getWord(plane, word);
+        storage.setWord(plane, word, value ? (bits | (1L << col)) : (bits & ~(1L << col)));
+    }
+
+    /**
+     * Return the depth of the field.
+     * @return The depth of the field.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Return the width of the field.
+     * @return The width of the field.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Returns the type code (CellType ordinal) of the cell at the given index.
+     * @param index The index of the position.
+     * @return The type code of the cell.
+     */
+    public int getTypeCode(int index)
+    {
+        return storage.getByte(FieldStorage.TYPES, index);
+    }
+
+    /**
+     * Returns a boolean indicating whether the cell at the given position is currently alive.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return true if the cell is alive.
+     */
+    public boolean isAlive(int row, int col)
+    {
+        return getBit(FieldStorage.ALIVE, row, col);
+    }
+
+    /**
+     * Returns a boolean indicating whether the cell at the given position is alive and infected with a disease.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return true if the cell is alive and infected.
+     */
+    public boolean isInfected(int row, int col)
+    {
+        return isAlive(row, col) && getDisease(row * width + col) > 0;
+    }
+
+    /**
+     * Returns a boolean indicating whether the cell at the given position will be alive in the next generation.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return true if the cell has been set to be alive in the next generation.
+     */
+    public boolean isNextAlive(int row, int col)
+    {
+        return getBit(FieldStorage.NEXT_ALIVE, row, col);
+    }
+
+    /**
+     * Indicate whether the cell at the given position will be alive or dead in the next generation.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @param value true if the cell should be alive in the next generation.
+     */
+    public void setNextAlive(int row, int col, boolean value)
+    {
+        setBit(FieldStorage.NEXT_ALIVE, row, col, value);
+    }
+
+    /**
+     * Returns the health of the cell at the given index.
+     * @param index The index of the position.
+     * @return The health of the cell.
+     */
+    public int getHealth(int index)
+    {
+        return storage.getByte(FieldStorage.HEALTH, index);
+    }
+
+    /**
+     * Sets the health of the cell at the given index, capped at a minimum of 0.
+     * @param index The index of the position.
+     * @param value The new health of the cell.
+     */
+    public void setHealth(int index, int value)
+    {
+        storage.setByte(FieldStorage.HEALTH, index, (byte) Math.max(value, 0));
+    }
+
+    /**
+     * Returns the age of the cell at the given index.
+     * For ChameleonCell cells this is the index of their current shade instead.
+     * @param index The index of the position.
+     * @return The age of the cell.
+     */
+    public int getAge(int index)
+    {
+        return storage.getAge(index);
+    }
+
+    /**
+     * Sets the age of the cell at the given index.
+     * @param index The index of the position.
+     * @param value The new age of the cell.
+     */
+    public void setAge(int index, int value)
+    {
+        storage.setAge(index, (short) value);
+    }
+
+    /**
+     * Returns the damage of the disease currently infecting the cell at the given index.
+     * @param index The index of the position.
+     * @return The damage of the disease, or 0 if the cell is not infected.
+     */
+    public int getDisease(int index)
+    {
+        return storage.getByte(FieldStorage.DISEASE, index);
+    }
+
+    /**
+     * Returns the damage of the disease that will infect the cell at the given index in the next generation.
+     * @param index The index of the position.
+     * @return The damage of the disease, or 0 if the cell will not be infected.
+     */
+    public int getNextDisease(int index)
+    {
+        return storage.getByte(FieldStorage.NEXT_DISEASE, index);
+    }
+
+    /**
+     * Sets the disease that will infect the cell at the given index in the next generation.
+     * @param index The index of the position.
+     * @param damage The damage of the disease, or 0 to cleanse the cell.
+     */
+    public void setNextDisease(int index, int damage)
+    {
+        storage.setByte(FieldStorage.NEXT_DISEASE, index, (byte) damage);
+    }
+
+    /**
+     * Infects the cell at the given index with a disease straight away, now and in the next generation.
+     * @param index The index of the position.
+     * @param damage The damage of the disease.
+     */
+    public void infect(int index, int damage)
+    {
+        if (storage.getByte(FieldStorage.DISEASE, index) == 0)
+        {
+            numInfected ++;
+        }
+        storage.setByte(FieldStorage.DISEASE, index, (byte) damage);
+        storage.setByte(FieldStorage.NEXT_DISEASE, index, (byte) damage);
+    }
+
+    /**
+     * Returns the type of the cell at the given position.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return The type of the cell.
+     */
+    public CellType getCellType(int row, int col)
+    {
+        return CellType.fromCode(getTypeCode(row * width + col));
+    }
+
+    /**
+     * Returns the color of the cell at the given position, derived from its current state.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return The color of the cell.
+     */
+    public CellColor getColor(int row, int col)
+    {
+        if (!isAlive(row, col))
+        {
+            return CellColor.WHITE;
+        }
+
+        int index = row * width + col;
+        CellType type = CellType.fromCode(getTypeCode(index));
+        if (type.isNonImmune() && getDisease(index) > 0)
+        {
+            return NonImmuneCell.INFECTED_COLOR;
+        }
+
+        switch (type)
+        {
+            case DISEASE:
+                return DiseaseCell.COLOR;
+            case PURGER:
+                return PurgerCell.COLOR;
+            case CHAOS:
+                return ChaosCell.COLOR;
+            case CLEANSING:
+                return CleansingCell.COLOR;
+            case CHAMELEON:
+                return ChameleonCell.COLORS.get(getAge(index));
+            case EVOLVING:
+                return EvolvingCell.COLORS[rules.getMaturityLevel(getAge(index))];
+            default:
+                return Mycoplasma.COLOR;
+        }
+    }
+}
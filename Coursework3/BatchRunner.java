@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Runs the simulation without a graphical view (e.g., on a headless server), reporting the
+ * population of every generation and how quickly the generations were simulated.
+ * Only the model is used, so no JavaFX classes are loaded.
+ *
+ * Usage: java BatchRunner [--stats=file] [--until-steady] [--scenario=file] [--clusters=k] [--mapped-file=file] depth width generations [seed] [engine] [threads] [checkpoint [interval]]
+ * where engine is one of OBJECT, ARRAY, PARALLEL or MAPPED (ARRAY by default). Given a checkpoint
+ * file, a checkpoint is written to it every interval (1000 by default) generations, and if the file
+ * already exists, the run resumes from it (with the size, seed and engine of the checkpoint) until
+ * it reaches the given number of generations. Given a stats file, the statistics of every generation
+ * are also written to it (see StatsWriter), in binary if its name ends in ".bin", otherwise as CSV.
+ * With --until-steady, the run stops early once the simulation reaches a fixed point or a short cycle
+ * (only when no cell acts at random), or stationary populations (see SteadyStateDetector). Given a scenario file, its edits are made to
+ * the field as the run reaches their generations (see Scenario). With --clusters=k, the connected
+ * clusters of every k-th generation are found in the background (see ClusterAnalyzer), printed as
+ * they are found, and written to the stats file (if any). Given a mapped file, the simulation is run by
+ * the MAPPED engine (unless resumed from a checkpoint of another engine), with its field kept in that
+ * file (replacing its contents) instead of in a temporary file.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class BatchRunner
+{
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    private Simulator simulator;
+    private FieldStats stats;
+    private CheckpointWriter checkpointWriter; // Null if no checkpoints are written
+    private StatsWriter statsWriter; // Null if no statistics are written
+    private SteadyStateDetector detector; // Null if the run is never stopped early
+    private Scenario scenario; // Null if no edits are scripted
+    private EditQueue edits;
+    private ClusterAnalyzer clusterAnalyzer; // Null if no clusters are found
+
+    /**
+     * Create a BatchRunner for the given simulation.
+     * @param simulator The simulation to run.
+     */
+    public BatchRunner(Simulator simulator)
+    {
+        this.simulator = simulator;
+        this.stats = new FieldStats();
+        this.edits = new EditQueue();
+    }
+
+    /**
+     * Sets the writer of checkpoints of the simulation, which is given every generation simulated.
+     * @param checkpointWriter The checkpoint writer, or null to stop writing checkpoints.
+     */
+    public void setCheckpointWriter(CheckpointWriter checkpointWriter)
+    {
+        this.checkpointWriter = checkpointWriter;
+    }
+
+    /**
+     * Sets the writer of the statistics of the simulation, which is given every generation simulated.
+     * @param statsWriter The statistics writer, or null to stop writing statistics.
+     */
+    public void setStatsWriter(StatsWriter statsWriter)
+    {
+        this.statsWriter = statsWriter;
+    }
+
+    /**
+     * Sets the detector that stops the run early once the simulation stops going anywhere.
+     * @param detector The detector, or null to always run for the given number of generations.
+     */
+    public void setSteadyStateDetector(SteadyStateDetector detector)
+    {
+        this.detector = detector;
+    }
+
+    /**
+     * Sets the scenario whose edits are made as the run reaches their generations. Events before the
+     * current generation are skipped.
+     * @param scenario The scenario, or null to stop making scripted edits.
+     */
+    public void setScenario(Scenario scenario)
+    {
+        this.scenario = scenario;
+        if (scenario != null)
+        {
+            scenario.skipBefore(simulator.getGeneration());
+        }
+    }
+
+    /**
+     * Sets the analyzer that finds the clusters of the simulation, which is given every generation simulated.
+     * @param clusterAnalyzer The analyzer, or null to stop finding clusters.
+     */
+    public void setClusterAnalyzer(ClusterAnalyzer clusterAnalyzer)
+    {
+        this.clusterAnalyzer = clusterAnalyzer;
+    }
+
+    /**
+     * Runs the simulation for the given number of generations (or until the steady state detector, if
+     * any, finds that it has stopped going anywhere), printing the population of each
+     * generation followed by the throughput. Only the time spent simulating is measured.
+     * @param numGenerations The number of generations to run for.
+     */
+    public void run(int numGenerations)
+    {
+        CellGrid grid = simulator.getGrid();
+        long numCells = (long) grid.getDepth() * grid.getWidth();
+
+        printPopulation(numGenerations == 0);
+        long elapsedNanos = 0;
+        int numRun = 0;
+        while (numRun < numGenerations)
+        {
+            if (scenario != null)
+            {
+                scenario.submitDue(simulator.getGeneration(), edits);
+                edits.applyTo(simulator);
+            }
+            long start = System.nanoTime();
+            simulator.simOneGeneration();
+            elapsedNanos += System.nanoTime() - start;
+            if (checkpointWriter != null)
+            {
+                checkpointWriter.afterGeneration(simulator);
+            }
+            numRun++;
+
+            boolean isSteady = detector != null
+                               && detector.update(simulator) != SteadyStateDetector.State.RUNNING;
+            printPopulation(isSteady || numRun == numGenerations);
+            if (isSteady)
+            {
+                SteadyStateDetector.State state = detector.getState();
+                System.out.println("Stopped early: " + state.getDescription()
+                                   + ((state == SteadyStateDetector.State.CYCLE) ? " of period " + detector.getPeriod() : ""));
+                break;
+            }
+        }
+
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("Simulated %d generations of %dx%d (%s) in %.3f s%n", numRun,
+                          grid.getDepth(), grid.getWidth(), simulator.getMode(), seconds);
+        System.out.printf("Generations/sec: %.2f%n", numRun / seconds);
+        System.out.printf("Cells/sec: %.0f%n", numRun * numCells / seconds);
+    }
+
+    /**
+     * Prints the current generation and population of the simulation, and passes them to the statistics writer
+     * (if any), with the clusters found since the last generation (if any).
+     * @param isLast Whether this is the last generation of the run, in which case the analysis of the
+     *               clusters running (if any) is waited for, so that it is written.
+     */
+    private void printPopulation(boolean isLast)
+    {
+        ClusterStats clusters = null;
+        if (clusterAnalyzer != null)
+        {
+            clusters = takeClusters(false);
+            clusterAnalyzer.afterGeneration(simulator.getGrid(), simulator.getGeneration());
+            ClusterStats latest = isLast ? takeClusters(true) : null;
+            if (latest != null)
+            {
+                clusters = latest;
+            }
+        }
+        if (statsWriter != null)
+        {
+            statsWriter.afterGeneration(simulator, clusters);
+        }
+        stats.reset();
+        System.out.println(simulator.getGeneration() + ": " + stats.getPopulationDetails(simulator.getGrid()));
+    }
+
+    /**
+     * Takes the clusters found by the analyzer (if it has found any since they were last taken), and prints them.
+     * @param wait Whether to wait for the analysis running (if any) to finish.
+     * @return The clusters found, or null if none were.
+     */
+    private ClusterStats takeClusters(boolean wait)
+    {
+        ClusterStats clusters = clusterAnalyzer.takeResult(wait);
+        if (clusters != null)
+        {
+            System.out.println("Clusters of " + clusters.getGeneration() + ": " + clusters);
+        }
+        return clusters;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Path statsFile = null;
+        boolean untilSteady = false;
+        Path scenarioFile = null;
+        int clusterInterval = 0;
+        Path mappedFile = null;
+        while (args.length > 0 && args[0].startsWith("--"))
+        {
+            if (args[0].startsWith("--stats="))
+            {
+                statsFile = Paths.get(args[0].substring("--stats=".length()));
+            }
+            else if (args[0].equals("--until-steady"))
+            {
+                untilSteady = true;
+            }
+            else if (args[0].startsWith("--clusters="))
+            {
+                clusterInterval = Integer.parseInt(args[0].substring("--clusters=".length()));
+            }
+            else if (args[0].startsWith("--scenario="))
+            {
+                scenarioFile = Paths.get(args[0].substring("--scenario=".length()));
+            }
+            else if (args[0].startsWith("--mapped-file="))
+            {
+                mappedFile = Paths.get(args[0].substring("--mapped-file=".length()));
+            }
+            else
+            {
+                System.err.println("Unknown option: " + args[0]);
+                System.exit(1);
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length < 3)
+        {
+            System.err.println("Usage: java BatchRunner [--stats=file] [--until-steady] [--scenario=file] [--clusters=k] [--mapped-file=file] depth width generations [seed] [engine] [threads] [checkpoint [interval]]");
+            System.exit(1);
+        }
+
+        int depth = Integer.parseInt(args[0]);
+        int width = Integer.parseInt(args[1]);
+        int numGenerations = Integer.parseInt(args[2]);
+        long seed = (args.length > 3) ? Long.parseLong(args[3]) : System.nanoTime();
+        EngineMode mode = (args.length > 4) ? EngineMode.valueOf(args[4].toUpperCase()) : EngineMode.ARRAY;
+        int numThreads = (args.length > 5) ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+        Path checkpoint = (args.length > 6) ? Paths.get(args[6]) : null;
+        int interval = (args.length > 7) ? Integer.parseInt(args[7]) : DEFAULT_CHECKPOINT_INTERVAL;
+
+        Simulator simulator;
+        if (checkpoint != null && Files.exists(checkpoint))
+        {
+            simulator = Checkpoint.load(checkpoint, numThreads, mappedFile);
+            System.out.println("Resumed from " + checkpoint + " at generation " + simulator.getGeneration());
+        }
+        else
+        {
+            simulator = (mappedFile != null) ? new Simulator(depth, width, mappedFile, numThreads, seed, new RuleSet())
+                                             : new Simulator(depth, width, mode, numThreads, seed);
+        }
+        System.out.println("Seed: " + simulator.getSeed());
+
+        BatchRunner runner = new BatchRunner(simulator);
+        if (untilSteady)
+        {
+            runner.setSteadyStateDetector(new SteadyStateDetector());
+        }
+        if (scenarioFile != null)
+        {
+            runner.setScenario(Scenario.load(scenarioFile));
+        }
+        StatsWriter statsWriter = (statsFile != null) ? new StatsWriter(statsFile, clusterInterval > 0) : null;
+        ClusterAnalyzer clusterAnalyzer = (clusterInterval > 0) ? new ClusterAnalyzer(simulator.getGrid().getDepth(),
+                                              simulator.getGrid().getWidth(), clusterInterval, numThreads) : null;
+        try (statsWriter; clusterAnalyzer)
+        {
+            runner.setStatsWriter(statsWriter);
+            runner.setClusterAnalyzer(clusterAnalyzer);
+            if (checkpoint == null)
+            {
+                runner.run(numGenerations);
+                return;
+            }
+            try (CheckpointWriter writer = new CheckpointWriter(checkpoint, interval))
+            {
+                runner.setCheckpointWriter(writer);
+                runner.run(Math.max(numGenerations - simulator.getGeneration(), 0));
+            }
+        }
+        finally
+        {
+            if (statsWriter != null && statsWriter.getNumDropped() > 0)
+            {
+                System.err.println("Statistics of " + statsWriter.getNumDropped() + " generations were dropped");
+            }
+            if (clusterAnalyzer != null && clusterAnalyzer.getNumSkipped() > 0)
+            {
+                System.err.println("Clusters of " + clusterAnalyzer.getNumSkipped() + " generations were not found, as the last analysis had not finished");
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 import java.util.List;
-import java.util.Random;
-import javafx.scene.paint.Color; 
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.random.RandomGenerator;
 
 /**
  * A class representing the shared characteristics of all forms of life
@@ -11,26 +12,41 @@ import javafx.scene.paint.Color;
 
 public abstract class Cell 
 {
+    private final CellType type; // The type of this cell, read by its neighbours without a virtual call (see countNeighbours)
     private boolean alive;    
     private boolean nextAlive; // The state of the cell in the next iteration
-    private Color color = Color.WHITE;
+    private CellColor color = CellColor.WHITE;
     private List<Cell> neighbours;
-    private static final Random rand = new Random();
+    private RandomGenerator rand; // The simulation's random number generator for cells
+    private Field field; // The field this cell is placed in, which counts the living cells of each type
+    private int fieldIndex; // The index of this cell's position in the field
+
+    // The living neighbours of this cell, in total and by category, counted just before it acts (see countNeighbours).
+    private int numLivingNeighbours;
+    private int numNonImmuneNeighbours;
+    private int numInfectedNeighbours;
+    private int numChaosNeighbours;
+    private int numChameleonNeighbours;
+    private int numDiseaseNeighbours;
 
     /**
      * Create a new cell at location in field.
      * @param row The row index of the field that this cell will be placed in.
      * @param col The column index of the field that this cell will be placed in.
+     * @param type The type of this cell, which getType must return.
      * @param color The color of this cell.
      * @param aliveProbability The probability that this cell will be alive when being created.
+     * @param rand The simulation's random number generator for cells.
      */
-    public Cell(int row, int col, Color color, double aliveProbability) {
+    public Cell(int row, int col, CellType type, CellColor color, double aliveProbability, RandomGenerator rand) {
+        this.type = type;
+        this.rand = rand;
         alive = true;
         nextAlive = false;
         setColor(color);
 
         // Chance of setting this cell to dead.
-        if (Cell.rand.nextDouble() > aliveProbability)
+        if (rand.nextDouble() > aliveProbability)
         {
             this.setDead();
         }
@@ -50,6 +66,31 @@ public abstract class Cell
      */
     abstract public void act();
 
+    /**
+     * Returns the type of this cell.
+     * @return The CellType of this cell's class.
+     */
+    abstract public CellType getType();
+
+    /**
+     * Returns a boolean indicating whether the cell has been infected by a disease.
+     * Only NonImmuneCell cells can be infected.
+     * @return The boolean indicating whether or not the cell is currently infected.
+     */
+    protected boolean isInfected()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the simulation's random number generator for cells.
+     * @return The random number generator for this cell to use.
+     */
+    protected RandomGenerator getRandom()
+    {
+        return rand;
+    }
+
     /**
      * Check whether the cell is alive or not.
      * @return true if the cell is still alive.
@@ -62,7 +103,9 @@ public abstract class Cell
      * Indicate that the cell is no longer alive.
      */
     protected void setDead() {
+        boolean wasAlive = isAlive();
         alive = false;
+        updatePopulation(wasAlive);
     }
 
     /**
@@ -95,14 +138,59 @@ public abstract class Cell
      * Changes the state of the cell.
      */
     public void updateState() {
+        boolean wasAlive = isAlive();
         alive = nextAlive;
+        updatePopulation(wasAlive);
+    }
+
+    /**
+     * Tells the field this cell is placed in if the cell has been born or has died, so that the
+     * population of each type is kept up to date without counting every cell.
+     * Must be called after every change that can make the cell alive or dead.
+     * @param wasAlive Whether the cell was alive before the change.
+     */
+    protected void updatePopulation(boolean wasAlive)
+    {
+        if (field != null && isAlive() != wasAlive)
+        {
+            field.updatePopulation(getType(), fieldIndex, wasAlive ? -1 : 1);
+        }
+    }
+
+    /**
+     * Returns the rules of the simulation that this cell is in (see RuleSet).
+     * @return The rules of the field that this cell is placed in.
+     */
+    protected RuleSet getRules()
+    {
+        return field.getRules();
+    }
+
+    /**
+     * Sets the field that this cell is placed in.
+     * @param field The field that this cell has been placed in, or null if it has been removed.
+     * @param index The index of the cell's position in the field (row * width + col).
+     */
+    protected void setField(Field field, int index)
+    {
+        this.field = field;
+        this.fieldIndex = index;
+    }
+
+    /**
+     * Returns the index of this cell's position in the field it is placed in.
+     * @return The index (row * width + col), or -1 if the cell is not in a field.
+     */
+    int getFieldIndex()
+    {
+        return fieldIndex;
     }
 
     /**
      * Changes the color of the cell.
      * @param color The color to change the cell into.
      */
-    protected void setColor(Color color) {
+    protected void setColor(CellColor color) {
         this.color = color;
     }
 
@@ -110,7 +198,7 @@ public abstract class Cell
      * Returns the cell's color.
      * @return The current color of this cell.
      */
-    protected Color getColor() {
+    protected CellColor getColor() {
         return this.color;
     }
 
@@ -119,7 +207,7 @@ public abstract class Cell
      */
     protected void setDeadColor()
     {
-        setColor(Color.WHITE);
+        setColor(CellColor.WHITE);
     }
     
     /**
@@ -131,8 +219,108 @@ public abstract class Cell
         this.neighbours = neighbours;
     }
 
+    /**
+     * Counts the living neighbours of this cell, in total and by category, without creating any objects.
+     * Called by the simulator just before this cell acts, so that the counts see the changes made by the
+     * cells that have already acted in this generation (just like checking the neighbours while acting).
+     */
+    public void countNeighbours()
+    {
+        numLivingNeighbours = 0;
+        numNonImmuneNeighbours = 0;
+        numInfectedNeighbours = 0;
+        numChaosNeighbours = 0;
+        numChameleonNeighbours = 0;
+        numDiseaseNeighbours = 0;
+        for (int i = 0; i < neighbours.size(); i++)
+        {
+            Cell neighbour = neighbours.get(i);
+            if (!neighbour.isAlive())
+            {
+                continue;
+            }
+            numLivingNeighbours ++;
+            CellType type = neighbour.type;
+            if (type.isNonImmune())
+            {
+                numNonImmuneNeighbours ++;
+                if (neighbour.isInfected())
+                {
+                    numInfectedNeighbours ++;
+                }
+            }
+            if (type == CellType.CHAOS)
+            {
+                numChaosNeighbours ++;
+            }
+            else if (type == CellType.CHAMELEON)
+            {
+                numChameleonNeighbours ++;
+            }
+            else if (type == CellType.DISEASE)
+            {
+                numDiseaseNeighbours ++;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of living neighbours of this cell (see countNeighbours).
+     * @return The number of living neighbours.
+     */
+    protected int getNumLivingNeighbours()
+    {
+        return numLivingNeighbours;
+    }
+
+    /**
+     * Returns the number of living NonImmuneCell neighbours of this cell (see countNeighbours).
+     * @return The number of living neighbours that can be infected with a disease.
+     */
+    protected int getNumNonImmuneNeighbours()
+    {
+        return numNonImmuneNeighbours;
+    }
+
+    /**
+     * Returns the number of living, infected neighbours of this cell (see countNeighbours).
+     * @return The number of living neighbours infected with a disease.
+     */
+    protected int getNumInfectedNeighbours()
+    {
+        return numInfectedNeighbours;
+    }
+
+    /**
+     * Returns the number of living ChaosCell neighbours of this cell (see countNeighbours).
+     * @return The number of living ChaosCell neighbours.
+     */
+    protected int getNumChaosNeighbours()
+    {
+        return numChaosNeighbours;
+    }
+
+    /**
+     * Returns the number of living ChameleonCell neighbours of this cell (see countNeighbours).
+     * @return The number of living ChameleonCell neighbours.
+     */
+    protected int getNumChameleonNeighbours()
+    {
+        return numChameleonNeighbours;
+    }
+
+    /**
+     * Returns the number of living DiseaseCell neighbours of this cell (see countNeighbours).
+     * @return The number of living DiseaseCell neighbours.
+     */
+    protected int getNumDiseaseNeighbours()
+    {
+        return numDiseaseNeighbours;
+    }
+
     /**
      * Returns a list containing Cell objects that are living neighbours of this cell.
+     * Creates a new list on every call, so the rules use countNeighbours and getAllNeighbours instead.
      * @return A list containing the neighbours of this cell that are alive.
      */
     protected List<Cell> getLivingNeighbours()
@@ -148,4 +336,30 @@ public abstract class Cell
     {
         return neighbours;
     }
+
+    /**
+     * Writes the state of this cell to a checkpoint (see Checkpoint). Subclasses with state of their
+     * own write it after the state of their superclass.
+     * @param out The checkpoint being written.
+     * @param indexOf Returns the index (row * width + col) of any cell in the field.
+     */
+    protected void writeState(Checkpoint.Output out, ToIntFunction<Cell> indexOf)
+    {
+        out.putBoolean(alive);
+        out.putBoolean(nextAlive);
+        out.putByte(color.ordinal());
+    }
+
+    /**
+     * Reads the state of this cell from a checkpoint, as written by writeState. Must be called before
+     * the cell is placed in a field, so that the population is counted when it is placed.
+     * @param in The checkpoint being read.
+     * @param cellAt Returns the cell at any index (row * width + col) of the field.
+     */
+    protected void readState(Checkpoint.Input in, IntFunction<Cell> cellAt)
+    {
+        alive = in.get() != 0;
+        nextAlive = in.get() != 0;
+        color = CellColor.fromCode(in.get());
+    }
 }
@@ -0,0 +1,56 @@
+/**
+ * The colors that cells can be displayed in. Kept separate from any user interface library, so that
+ * the simulation itself can run without one (e.g., on a headless server). The view converts these
+ * into colors of its own.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public enum CellColor
+{
+    WHITE(0xFFFFFFFF),
+    ORANGE(0xFFFFA500),
+    RED(0xFFFF0000),
+    BLACK(0xFF000000),
+    BLUE(0xFF0000FF),
+    LIGHTPINK(0xFFFFB6C1),
+    CHARTREUSE(0xFF7FFF00),
+    LIME(0xFF00FF00),
+    DARKGREEN(0xFF006400),
+    CYAN(0xFF00FFFF),
+    DEEPSKYBLUE(0xFF00BFFF),
+    PURPLE(0xFF800080),
+    YELLOW(0xFFFFFF00);
+
+    private static final CellColor[] VALUES = values(); // Cached, as values() copies the array on every call
+
+    private final int argb;
+
+    /**
+     * Create a color.
+     * @param argb The color as a 32-bit ARGB value (8 bits each for alpha, red, green and blue).
+     */
+    private CellColor(int argb)
+    {
+        this.argb = argb;
+    }
+
+    /**
+     * Returns the color with the given code (ordinal).
+     * @param code The code of the color.
+     * @return The color with the given code.
+     */
+    public static CellColor fromCode(int code)
+    {
+        return VALUES[code];
+    }
+
+    /**
+     * Returns this color as a 32-bit ARGB value.
+     * @return The ARGB value of this color.
+     */
+    public int getArgb()
+    {
+        return argb;
+    }
+}
@@ -1,71 +1,60 @@
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.random.RandomGenerator;
 
 /**
  * A class responsible for creating "Cell" objects and objects from all subclasses of "Cell".
  * Gives precedence to certain cells to ensure that behaviour is consistent and working as 
  * intended, for example, ensuring that all "DiseaseCell" cells "act" first, to ensure that
- * disease spreads.
+ * disease spreads. The other cells are of random types, chosen with the spawn weights of a
+ * CellRegistry, which also holds the factory of each type.
  *
  * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel 
  */
 
 public class CellCreator 
 {
-    private ArrayList<Method> createMethods; // List containing every method to create cells
-    private int numCreateMethods;
-    private Random rand; // Shared random number generator
+    private static final int ROWS_PER_CHUNK = 64; // The rows of cells created by each task in createCells
+    private static final int MIN_PARALLEL_CELLS = 100_000; // Smaller fields are created on a single thread
+
+    private CellRegistry registry;
+    private RandomGenerator rand; // The simulation's random number generator for cells
+    private RuleSet rules; // The rules of the simulation, which limit the number of DiseaseCell cells
     private int numDiseaseCellsCreated;
 
     /**
      * Instantiate a CellCreator, to create Cell objects (and objects of its subclasses).
      *
-     * @param rand The shared random number generator.
+     * @param rand The simulation's random number generator for cells, shared with the cells created.
      */
-    public CellCreator(Random rand)
+    public CellCreator(RandomGenerator rand)
     {
-        this.createMethods = CellCreator.findCreateMethods();
-        this.numCreateMethods = createMethods.size();
-        this.rand = rand;
-        this.numDiseaseCellsCreated = 0;
+        this(rand, CellRegistry.createDefault());
     }
 
     /**
-     * Finds and stores all methods in the CellCreator class which are used to create cells inside an ArrayList<Method>
-     * Gives precedence to the "createDiseaseCell" method, to ensure that "Disease" is working as intended.
-     * @return A list of Method objects which will be invoked to create cell objects of any defined type.
+     * Instantiate a CellCreator, to create Cell objects with the factories and spawn weights of the given registry.
+     *
+     * @param rand The simulation's random number generator for cells, shared with the cells created.
+     * @param registry The registry of the factory and spawn weight of each cell type.
      */
-    public static ArrayList<Method> findCreateMethods()
+    public CellCreator(RandomGenerator rand, CellRegistry registry)
     {
-        Method[] methods = CellCreator.class.getDeclaredMethods();
-        ArrayList<Method> createMethods = new ArrayList<Method>();
+        this(rand, registry, new RuleSet());
+    }
 
-        // Add methods in the defined order: 
-        // (allows for particular behaviour, e.g., cells getting infected by
-        // DiseaseCell cells before other cells perform their own behaviour)
-        String[] methodNames = new String[] {
-                                            "createDiseaseCell",
-                                            "createPurgerCell",
-                                            "createChaosCell",
-                                            "createCleansingCell",
-                                            "createChameleonCell",
-                                            "createEvolvingCell"
-                                            };
-                                            
-        for (String methodName: methodNames)
-        {
-            for (int i = 0; i < methods.length; i++)
-            {
-                Method method = methods[i];
-                if ((method.getName().equals(methodName)))
-                {
-                    createMethods.add(method);
-                    break;
-                }
-            }
-        }
-        return createMethods;
+    /**
+     * Instantiate a CellCreator, to create Cell objects with the given registry for a simulation with the given rules.
+     *
+     * @param rand The simulation's random number generator for cells, shared with the cells created.
+     * @param registry The registry of the factory and spawn weight of each cell type.
+     * @param rules The rules of the simulation.
+     */
+    public CellCreator(RandomGenerator rand, CellRegistry registry, RuleSet rules)
+    {
+        this.registry = registry;
+        this.rules = rules;
+        this.rand = rand;
+        this.numDiseaseCellsCreated = 0;
     }
 
     /**
@@ -75,104 +64,101 @@ public class CellCreator
     {
         this.numDiseaseCellsCreated = 0;
     }
+
     /**
-     * Generates and returns a random Cell object (including any subclasses of Cell) using the stored create methods.
+     * Generates and returns a random Cell object (including any subclasses of Cell).
+     * The first Rule.DISEASE_MAXIMUM_NUM_CELLS cells generated (since the last reset) are DiseaseCell cells.
      * @param row Row number of the location that the cell will be spawned in.
      * @param col Column number of the location that the cell will be spawned in.
      */
     public Cell generateRandomCell(int row, int col)
     {      
-        int index;
-        Cell cell;
+        CellType type;
         
         // Have not generated the maximum number of DiseaseCell instances
-        if (numDiseaseCellsCreated < DiseaseCell.MAXIMUM_NUM_CELLS)
+        if (numDiseaseCellsCreated < rules.get(Rule.DISEASE_MAXIMUM_NUM_CELLS))
         {
-            index = 0; // Index for "createDiseaseCell" method.
+            type = CellType.DISEASE;
             numDiseaseCellsCreated ++;
         }
         else
         {
-            index = rand.nextInt(numCreateMethods - 1) + 1; // Not DiseaseCell 
-        }
-
-        Method createMethod = createMethods.get(index);
-
-        // Try create a cell.
-        try 
-        {
-            cell = (Cell) createMethod.invoke(this, row, col); // Cast to Cell from Object
-        }
-        // Cannot make this cell, then by default create Mycoplasma.
-        catch (Exception e)
-        {  
-            e.printStackTrace();
-            cell = createMycoplasma(row, col);
+            type = registry.sampleType(rand);
         }
-        return cell;
-
-    }  
-
-    /**
-     * Creates and returns a Mycoplasma object.
-     * @return The Mycoplasma object.
-     */
-    public Mycoplasma createMycoplasma(int row, int col)
-    {
-        return new Mycoplasma(row, col);
-    }   
-
-    /**
-     * Creates and returns a ChameleonCell object.
-     * @return The ChameleonCell object.
-     */
-    public ChameleonCell createChameleonCell(int row, int col)
-    {
-        return new ChameleonCell(row, col);
+        return registry.create(type, row, col, rand);
     }
 
     /**
-     * Creates and returns a EvolvingCell object.
-     * @return The EvolvingCell object.
+     * Creates a random cell for every position of a field, in parallel for large fields. As with
+     * generateRandomCell, the first Rule.DISEASE_MAXIMUM_NUM_CELLS positions in the given order get
+     * DiseaseCell cells.
+     *
+     * The field is split into chunks of rows, each of which uses its own random number generator
+     * derived from this creator's one, so the cells created do not depend on the number of threads.
+     * The cells of a chunk share its generator for the rest of the simulation.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param order Every position (row * width + col) of the field, in the order that the cells will act.
+     * @return The new cells, indexed by position.
      */
-    public EvolvingCell createEvolvingCell(int row, int col)
+    public Cell[] createCells(int depth, int width, int[] order)
     {
-        return new EvolvingCell(row, col);
-    }
+        Cell[] cells = new Cell[depth * width];
+        boolean[] isDisease = new boolean[cells.length];
+        for (int i = 0; i < Math.min(rules.get(Rule.DISEASE_MAXIMUM_NUM_CELLS), order.length); i++)
+        {
+            isDisease[order[i]] = true;
+        }
 
-    /**
-     * Creates and returns a DiseaseCell object.
-     * @return The DiseaseCell object.
-     */
-    public DiseaseCell createDiseaseCell(int row, int col)
-    {
-        return new DiseaseCell(row, col);
+        long chunkSeed = rand.nextLong();
+        int numChunks = getNumChunks(depth);
+        IntStream chunks = IntStream.range(0, numChunks);
+        if (cells.length >= MIN_PARALLEL_CELLS)
+        {
+            chunks = chunks.parallel();
+        }
+        chunks.forEach(chunk -> {
+            SplitMixRandom chunkRand = SplitMixRandom.forStream(chunkSeed, chunk);
+            int toRow = Math.min((chunk + 1) * ROWS_PER_CHUNK, depth);
+            for (int row = chunk * ROWS_PER_CHUNK; row < toRow; row++)
+            {
+                for (int col = 0; col < width; col++)
+                {
+                    int index = row * width + col;
+                    CellType type = isDisease[index] ? CellType.DISEASE : registry.sampleType(chunkRand);
+                    cells[index] = registry.create(type, row, col, chunkRand);
+                }
+            }
+        });
+        return cells;
     }
 
     /**
-     * Creates and returns a ChaosCell object.
-     * @return The ChaosCell object.
+     * Returns the chunk of rows (see createCells) that a row belongs to. The cells of a chunk share a random number generator.
+     * @param row The row.
+     * @return The index of the chunk.
      */
-    public ChaosCell createChaosCell(int row, int col)
+    public static int getChunk(int row)
     {
-        return new ChaosCell(row, col);
+        return row / ROWS_PER_CHUNK;
     }
 
     /**
-     * Creates and returns a PurgerCell object.
-     * @return The PurgerCell object.
+     * Returns the number of chunks of rows (see createCells) in a field of the given depth.
+     * @param depth The depth of the field.
+     * @return The number of chunks.
      */
-    public PurgerCell createPurgerCell(int row, int col)
+    public static int getNumChunks(int depth)
     {
-        return new PurgerCell(row, col);
+        return (depth + ROWS_PER_CHUNK - 1) / ROWS_PER_CHUNK;
     }
 
     /**
-     * Creates and returns a CleansingCell object.
-     * @return The CleansingCell object.
+     * Return the registry of the factory and spawn weight of each cell type.
+     * @return The registry used by this creator.
      */
-    public CleansingCell createCleansingCell(int row, int col)
+    public CellRegistry getRegistry()
     {
-        return new CleansingCell(row, col);
+        return registry;
     }
 }
@@ -0,0 +1,20 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Creates a cell of one type, e.g., a constructor reference such as ChaosCell::new.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+@FunctionalInterface
+public interface CellFactory
+{
+    /**
+     * Creates a new cell.
+     * @param row The row index of the field that the cell will be placed in.
+     * @param col The column index of the field that the cell will be placed in.
+     * @param rand The simulation's random number generator for cells.
+     * @return The new cell.
+     */
+    Cell create(int row, int col, RandomGenerator rand);
+}
@@ -0,0 +1,109 @@
+/**
+ * A read-only view of a rectangular grid of cells, regardless of how the cells are stored.
+ * Implemented by the object-per-cell Field and the structure-of-arrays ArrayField, so that
+ * the view and the statistics can be used with either simulation engine.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public interface CellGrid
+{
+    /**
+     * Return the depth of the grid.
+     * @return The depth of the grid.
+     */
+    int getDepth();
+
+    /**
+     * Return the width of the grid.
+     * @return The width of the grid.
+     */
+    int getWidth();
+
+    /**
+     * Returns the type of the cell at the given position.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return The type of the cell, or null if there is no cell at the position.
+     */
+    CellType getCellType(int row, int col);
+
+    /**
+     * Returns a boolean indicating whether the cell at the given position is alive.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return true if there is a living cell at the position.
+     */
+    boolean isAlive(int row, int col);
+
+    /**
+     * Returns a boolean indicating whether the cell at the given position is alive and infected with a disease.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return true if there is a living, infected cell at the position.
+     */
+    boolean isInfected(int row, int col);
+
+    /**
+     * Returns the color of the cell at the given position.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return The current color of the cell at the position.
+     */
+    CellColor getColor(int row, int col);
+
+    /**
+     * Returns the number of living cells of the given type. This is kept up to date as cells are
+     * born and die, so it does not need to count the cells.
+     * @param type The type of cell.
+     * @return The number of living cells of the type.
+     */
+    int getPopulation(CellType type);
+
+    /**
+     * Returns the number of cells of the given type that have been born in the generations run so far.
+     * This only ever grows, so the births in one generation are the difference between two generations.
+     * @param type The type of cell.
+     * @return The number of births.
+     */
+    long getBirths(CellType type);
+
+    /**
+     * Returns the number of cells of the given type that have died in the generations run so far.
+     * This only ever grows, so the deaths in one generation are the difference between two generations.
+     * @param type The type of cell.
+     * @return The number of deaths.
+     */
+    long getDeaths(CellType type);
+
+    /**
+     * Returns the number of living cells infected with a disease.
+     * @return The number of living, infected cells.
+     */
+    int getNumInfected();
+
+    /**
+     * Returns a Zobrist hash of the state of the grid: the XOR of the key (see zobristKey) of every
+     * living cell. This is kept up to date as cells are born and die, by XORing in the key of every
+     * cell that changes, so it does not need to visit every cell. Colors and infections are not hashed.
+     * @return The hash of the living cells of the grid.
+     */
+    long getStateHash();
+
+    /**
+     * Returns the random key that a living cell of the given type at the given position adds to the
+     * hash of a grid (see getStateHash).
+     * @param index The index of the position (row * width + col).
+     * @param type The type of the cell.
+     * @return The key of the cell.
+     */
+    static long zobristKey(int index, CellType type)
+    {
+        return SplitMixRandom.hash(SplitMixRandom.hash(ZOBRIST_SEED, index), type.ordinal());
+    }
+
+    /**
+     * The seed of the keys of every grid, so that grids in the same state have the same hash.
+     */
+    long ZOBRIST_SEED = 0x5A0B8157L;
+}
@@ -0,0 +1,129 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * A registry of the factory of every cell type, and the weight with which each type is spawned
+ * when a random cell is created. Random types are sampled in constant time with an AliasTable.
+ *
+ * DiseaseCell cells are normally not spawned at random (their weight is 0): a fixed number of them
+ * is created first instead (see CellCreator).
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class CellRegistry
+{
+    private static final CellType[] TYPES = CellType.values();
+
+    private final CellFactory[] factories; // Indexed by CellType ordinal
+    private final double[] weights; // Indexed by CellType ordinal
+    private AliasTable spawnTable; // Built when first needed after the weights change
+
+    /**
+     * Create an empty registry.
+     */
+    public CellRegistry()
+    {
+        this.factories = new CellFactory[CellType.count()];
+        this.weights = new double[CellType.count()];
+    }
+
+    /**
+     * Creates a registry of every cell type, in which the PurgerCell, ChaosCell, CleansingCell,
+     * ChameleonCell and EvolvingCell types are equally likely to be spawned.
+     * @return The default registry.
+     */
+    public static CellRegistry createDefault()
+    {
+        CellRegistry registry = new CellRegistry();
+        registry.register(CellType.DISEASE, DiseaseCell::new, 0);
+        registry.register(CellType.PURGER, PurgerCell::new, 1);
+        registry.register(CellType.CHAOS, ChaosCell::new, 1);
+        registry.register(CellType.CLEANSING, CleansingCell::new, 1);
+        registry.register(CellType.CHAMELEON, ChameleonCell::new, 1);
+        registry.register(CellType.EVOLVING, EvolvingCell::new, 1);
+        registry.register(CellType.MYCOPLASMA, Mycoplasma::new, 0);
+        return registry;
+    }
+
+    /**
+     * Registers the factory of a cell type, replacing any previous one.
+     * @param type The type of cell created by the factory.
+     * @param factory The factory.
+     * @param weight The weight with which the type is spawned (0 if it is never spawned at random).
+     */
+    public void register(CellType type, CellFactory factory, double weight)
+    {
+        factories[type.ordinal()] = factory;
+        setWeight(type, weight);
+    }
+
+    /**
+     * Sets the weight with which a cell type is spawned, relative to the other types.
+     * @param type The type of cell.
+     * @param weight The weight of the type (0 if it is never spawned at random).
+     */
+    public void setWeight(CellType type, double weight)
+    {
+        if (weight < 0 || Double.isNaN(weight))
+        {
+            throw new IllegalArgumentException("Spawn weight of " + type.getName() + " must not be negative: " + weight);
+        }
+        weights[type.ordinal()] = weight;
+        spawnTable = null;
+    }
+
+    /**
+     * Returns the weight with which a cell type is spawned.
+     * @param type The type of cell.
+     * @return The weight of the type.
+     */
+    public double getWeight(CellType type)
+    {
+        return weights[type.ordinal()];
+    }
+
+    /**
+     * Chooses a random cell type, according to the spawn weights.
+     * @param rand The random number generator to use.
+     * @return The chosen type.
+     */
+    public CellType sampleType(RandomGenerator rand)
+    {
+        return sampleType(rand.nextLong());
+    }
+
+    /**
+     * Chooses a cell type from a random long (e.g., a counter-based one from SplitMixRandom.hash),
+     * according to the spawn weights.
+     * @param random The random long.
+     * @return The chosen type.
+     */
+    public CellType sampleType(long random)
+    {
+        AliasTable table = spawnTable;
+        if (table == null)
+        {
+            table = new AliasTable(weights);
+            spawnTable = table;
+        }
+        return TYPES[table.sample(random)];
+    }
+
+    /**
+     * Creates a new cell of the given type.
+     * @param type The type of cell to create.
+     * @param row The row index of the field that the cell will be placed in.
+     * @param col The column index of the field that the cell will be placed in.
+     * @param rand The simulation's random number generator for cells.
+     * @return The new cell.
+     */
+    public Cell create(CellType type, int row, int col, RandomGenerator rand)
+    {
+        CellFactory factory = factories[type.ordinal()];
+        if (factory == null)
+        {
+            throw new IllegalStateException("No factory is registered for " + type.getName());
+        }
+        return factory.create(row, col, rand);
+    }
+}
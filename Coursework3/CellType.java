@@ -0,0 +1,103 @@
+/**
+ * Enumerates every concrete type of cell in the simulation.
+ * The types are declared in the order that CellCreator gives precedence to when creating cells,
+ * with Mycoplasma (only created as a fallback) last. The ordinal of a type is used as its compact
+ * code wherever cells are stored as primitive values rather than objects.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public enum CellType
+{
+    DISEASE("DiseaseCell", false, true, false, false),
+    PURGER("PurgerCell", true, true, false, false),
+    CHAOS("ChaosCell", true, true, true, true),
+    CLEANSING("CleansingCell", true, true, false, false),
+    CHAMELEON("ChameleonCell", true, true, true, false),
+    EVOLVING("EvolvingCell", true, true, false, false),
+    MYCOPLASMA("Mycoplasma", false, false, false, false);
+
+    private static final CellType[] VALUES = values(); // Cached, as values() copies the array on every call
+
+    private final String name;
+    private final boolean nonImmune;
+    private final boolean hasHealth;
+    private final boolean randomWhenAlive;
+    private final boolean randomWhenDead;
+
+    /**
+     * Create a cell type.
+     * @param name The name of the class implementing this type.
+     * @param nonImmune Whether cells of this type can be infected with "Disease".
+     * @param hasHealth Whether cells of this type have health (i.e., are HealthCell cells).
+     * @param randomWhenAlive Whether living cells of this type make random decisions as they act.
+     * @param randomWhenDead Whether dead cells of this type make random decisions as they act.
+     */
+    private CellType(String name, boolean nonImmune, boolean hasHealth, boolean randomWhenAlive, boolean randomWhenDead)
+    {
+        this.name = name;
+        this.nonImmune = nonImmune;
+        this.hasHealth = hasHealth;
+        this.randomWhenAlive = randomWhenAlive;
+        this.randomWhenDead = randomWhenDead;
+    }
+
+    /**
+     * Returns the cell type with the given code (ordinal).
+     * @param code The code of the cell type.
+     * @return The cell type with the given code.
+     */
+    public static CellType fromCode(int code)
+    {
+        return VALUES[code];
+    }
+
+    /**
+     * Returns the number of cell types.
+     * @return The number of cell types.
+     */
+    public static int count()
+    {
+        return VALUES.length;
+    }
+
+    /**
+     * Returns the name of this cell type.
+     * @return The name of the class implementing this type.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns a boolean indicating whether cells of this type can be infected with "Disease".
+     * @return Whether cells of this type are NonImmuneCell cells.
+     */
+    public boolean isNonImmune()
+    {
+        return nonImmune;
+    }
+
+    /**
+     * Returns a boolean indicating whether cells of this type have health.
+     * @return Whether cells of this type are HealthCell cells.
+     */
+    public boolean hasHealth()
+    {
+        return hasHealth;
+    }
+
+    /**
+     * Returns a boolean indicating whether a cell of this type makes random decisions as it acts, so
+     * that its next state is not decided by the current state alone: ChaosCell cells, alive (which may
+     * die or change their neighbours) or dead (which may revive), and living ChameleonCell cells (which
+     * change to a random color).
+     * @param alive Whether the cell is alive.
+     * @return true if the cell acts at random.
+     */
+    public boolean actsAtRandom(boolean alive)
+    {
+        return alive ? randomWhenAlive : randomWhenDead;
+    }
+}
@@ -1,7 +1,6 @@
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
-import javafx.scene.paint.Color; 
+import java.util.random.RandomGenerator;
 
 /**
  * The ChameleonCell class represents a type of cell in a simulation, extending from NonImmuneCell. 
@@ -15,36 +14,46 @@ import javafx.scene.paint.Color;
 public class ChameleonCell extends NonImmuneCell
 {
     // Colors that the Chameleon cells can shift into.
-    private static final ArrayList<Color> COLORS = new ArrayList<Color>(){{
-                                                                        add(Color.CHARTREUSE);
-                                                                        add(Color.LIME);
-                                                                        add(Color.DARKGREEN);
+    static final ArrayList<CellColor> COLORS = new ArrayList<CellColor>(){{
+                                                                        add(CellColor.CHARTREUSE);
+                                                                        add(CellColor.LIME);
+                                                                        add(CellColor.DARKGREEN);
                                                                         }}; 
     private static final int numColors = COLORS.size();
-    private static final int NUM_REVIVAL_CELLS_REQUIRED = 2; // The number of chameleon cells that need to be near this cell for it to be revived.
-    private static final double ALIVE_PROB = 0.5;
-    private static final int INITIAL_HEALTH = 3;
-    private static final Random rand = new Random();
-    private static final int DEATH_THRESHOLD = 5;
+    static final int NUM_REVIVAL_CELLS_REQUIRED = 2; // Default number of chameleon cells that need to be near this cell for it to be revived.
+    static final double ALIVE_PROB = 0.5;
+    static final int INITIAL_HEALTH = 3;
+    static final int DEATH_THRESHOLD = 5; // Default (see Rule)
 
     /**
      * Create a new ChameleonCell.
      *
      * @param row The row index of the field that this cell will be placed in.
      * @param col The column index of the field that this cell will be placed in.
+     * @param rand The simulation's random number generator for cells.
      */
-    public ChameleonCell(int row, int col)
+    public ChameleonCell(int row, int col, RandomGenerator rand)
     {
-        super(row, col, ChameleonCell.COLORS.get(0), ChameleonCell.ALIVE_PROB, ChameleonCell.INITIAL_HEALTH);
+        super(row, col, CellType.CHAMELEON, ChameleonCell.COLORS.get(0), ChameleonCell.ALIVE_PROB, ChameleonCell.INITIAL_HEALTH, rand);
+    }
+
+    @Override
+    /**
+     * Returns the type of this cell.
+     * @return CellType.CHAMELEON
+     */
+    public CellType getType()
+    {
+        return CellType.CHAMELEON;
     }
 
     /**
      * Generates and returns a random color from the allowed colors for chameleon cells.
      * @return A random color from the allowed colors.
      */
-    private Color generateRandomColor()
+    private CellColor generateRandomColor()
     {   
-        int randIndex = ChameleonCell.rand.nextInt(ChameleonCell.numColors);
+        int randIndex = getRandom().nextInt(ChameleonCell.numColors);
         return ChameleonCell.COLORS.get(randIndex);
     }
 
@@ -53,7 +62,7 @@ public class ChameleonCell extends NonImmuneCell
      */
     private void shiftColor()
     {
-        Color newColor = this.getColor();
+        CellColor newColor = this.getColor();
         while (newColor.equals(this.getColor()))
         {
             newColor = generateRandomColor();
@@ -68,7 +77,7 @@ public class ChameleonCell extends NonImmuneCell
      */
     protected int getDeathThreshold()
     {  
-        int deathThreshold = ChameleonCell.DEATH_THRESHOLD;
+        int deathThreshold = getRules().get(Rule.CHAMELEON_DEATH_THRESHOLD);
         
         // Infected with a disease.
         if (isInfected())
@@ -80,27 +89,19 @@ public class ChameleonCell extends NonImmuneCell
 
     /**
      * Attempts to revive this ChameleonCell if the requirement is met
-     * Requirement: At least NUM_REVIVAL_CELLS_REQUIRED living neighbours.
+     * Requirement: At least Rule.CHAMELEON_REVIVAL_NEIGHBOURS living ChameleonCell neighbours.
      */
     private void attemptRevival()
     {
-        int numChameleons = 0;
-        for (Object neighbour: getLivingNeighbours())
-        {   
-            boolean isChameleon = (neighbour instanceof ChameleonCell);
-            numChameleons += isChameleon ? 1: 0;
-
-            // If the requirement has been met, revive the cell.
-            if (numChameleons >= NUM_REVIVAL_CELLS_REQUIRED)
+        // If the requirement has been met, revive the cell.
+        if (getNumChameleonNeighbours() >= getRules().get(Rule.CHAMELEON_REVIVAL_NEIGHBOURS))
+        {
+            setNextState(true);
+            
+            // Reset health
+            while( getHealth() < ChameleonCell.INITIAL_HEALTH)
             {
-                setNextState(true);
-                
-                // Reset health
-                while( getHealth() < ChameleonCell.INITIAL_HEALTH)
-                {
-                    increaseHealth(ChameleonCell.INITIAL_HEALTH);
-                }
-                return;
+                increaseHealth(ChameleonCell.INITIAL_HEALTH);
             }
         }
     }
@@ -119,7 +120,7 @@ public class ChameleonCell extends NonImmuneCell
      */
     protected void performAliveBehaviour()
     {   
-        int numNeighbours = getLivingNeighbours().size();
+        int numNeighbours = getNumLivingNeighbours();
 
         // Assign next state, dies if exceeding the death threshold.
         super.assignNextState(numNeighbours, this.getDeathThreshold());
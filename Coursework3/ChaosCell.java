@@ -1,7 +1,5 @@
-import java.util.Random;
-import javafx.scene.paint.Color;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.random.RandomGenerator;
 
 /**
  * These cells have a light pink color and exhibit chaotic, non-deterministic behavior influenced by random chance when alive.
@@ -16,21 +14,31 @@ import java.util.stream.Stream;
 
 public class ChaosCell extends NonImmuneCell
 {
-    private static final Color COLOR = Color.LIGHTPINK;
-    private static final int DEATH_THRESHOLD = 5;
-    private static final double ALIVE_PROB = 0.25;
-    private static final int INITIAL_HEALTH = 5;
-    private static final Random rand = new Random();
+    static final CellColor COLOR = CellColor.LIGHTPINK;
+    static final int DEATH_THRESHOLD = 5; // Default (see Rule)
+    static final double ALIVE_PROB = 0.25;
+    static final int INITIAL_HEALTH = 5;
 
     /**
      * Create a new ChaosCell.
      *
      * @param row The row index of the field that this cell will be placed in.
      * @param col The column index of the field that this cell will be placed in.
+     * @param rand The simulation's random number generator for cells.
      */
-    public ChaosCell(int row, int col)
+    public ChaosCell(int row, int col, RandomGenerator rand)
     {
-        super(row, col, ChaosCell.COLOR, ChaosCell.ALIVE_PROB, ChaosCell.INITIAL_HEALTH);
+        super(row, col, CellType.CHAOS, ChaosCell.COLOR, ChaosCell.ALIVE_PROB, ChaosCell.INITIAL_HEALTH, rand);
+    }
+
+    @Override
+    /**
+     * Returns the type of this cell.
+     * @return CellType.CHAOS
+     */
+    public CellType getType()
+    {
+        return CellType.CHAOS;
     }
 
     @Override
@@ -40,7 +48,7 @@ public class ChaosCell extends NonImmuneCell
      */
     protected int getDeathThreshold()
     {  
-        int deathThreshold = ChaosCell.DEATH_THRESHOLD;
+        int deathThreshold = getRules().get(Rule.CHAOS_DEATH_THRESHOLD);
 
         // Infected with a disease.
         if (isInfected())
@@ -55,16 +63,15 @@ public class ChaosCell extends NonImmuneCell
      */
     private void reviveNeighbours()
     {
-        // Get all dead neighbours
-        List<NonImmuneCell> deadNeighbours = getAllNeighbours()
-                                            .stream()
-                                            .filter(cell -> (cell instanceof NonImmuneCell) && !cell.isAlive())
-                                            .map(cell -> (NonImmuneCell) cell)
-                                            .toList();
-        // Revive all dead neighbours                    
-        for (NonImmuneCell neighbour: deadNeighbours)
+        // Revive all dead neighbours
+        List<Cell> neighbours = getAllNeighbours();
+        for (int i = 0; i < neighbours.size(); i++)
         {   
-            neighbour.setNextState(true);
+            Cell neighbour = neighbours.get(i);
+            if ((neighbour instanceof NonImmuneCell) && !neighbour.isAlive())
+            {
+                ((NonImmuneCell) neighbour).setNextState(true);
+            }
         }
     }
 
@@ -73,10 +80,12 @@ public class ChaosCell extends NonImmuneCell
      */
     private void exterminateNeighbours()
     {
-        // Get and exterminate all living neighbours.
-        for (Object neighbour: getLivingNeighbours())
+        // Exterminate all living neighbours.
+        List<Cell> neighbours = getAllNeighbours();
+        for (int i = 0; i < neighbours.size(); i++)
         {  
-            if (neighbour instanceof NonImmuneCell)
+            Cell neighbour = neighbours.get(i);
+            if ((neighbour instanceof NonImmuneCell) && neighbour.isAlive())
             {
                 NonImmuneCell nonImmuneCell = (NonImmuneCell) neighbour;
                 nonImmuneCell.takeDamage(nonImmuneCell.getHealth());
@@ -98,8 +107,8 @@ public class ChaosCell extends NonImmuneCell
      */
     protected void performAliveBehaviour()
     {
-        int randNum = ChaosCell.rand.nextInt(100);
-        int numNeighbours = getLivingNeighbours().size();
+        int randNum = getRandom().nextInt(100);
+        int numNeighbours = getNumLivingNeighbours();
         
         // 10% chance of self-destructing
         if (0 <= randNum && randNum < 10)
@@ -132,8 +141,7 @@ public class ChaosCell extends NonImmuneCell
      */
     protected void performDeadBehaviour()
     {
-        int randNum = ChaosCell.rand.nextInt(100);
-        int numNeighbours = getLivingNeighbours().size();
+        int randNum = getRandom().nextInt(100);
         
         // 25% chance of reviving itself
         if (0 <= randNum && randNum < 25)
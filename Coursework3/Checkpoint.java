@@ -0,0 +1,365 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A compact binary format for the full state of a simulation, so that a long run can be resumed
+ * after the process running it has died (see CheckpointWriter).
+ *
+ * A checkpoint starts with a header (a magic number and the version of the format), followed by
+ * the state written by Simulator: the size, seed, rules, engine and generation of the simulation, and then
+ * either the planes of the ArrayField and the state of the ArrayEngine, or every Cell object (in the
+ * order in which they act) along with the state of every random number generator. Resuming from a
+ * checkpoint gives exactly the same generations as carrying on with the original run.
+ *
+ * Checkpoints are streamed to and from their files a piece at a time, so they are never held in
+ * memory as a whole, and can be larger than the 2 GB that a single buffer can hold.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class Checkpoint
+{
+    private static final int MAGIC = 0x4C494645; // "LIFE"
+    private static final int VERSION = 3; // 2: the rules of the simulation follow its seed, 3: each cell has its own order of neighbours
+
+    /**
+     * Writes a checkpoint of the current state of a simulation to the given channel.
+     * Must not be called while the simulation is running a generation.
+     * @param simulator The simulation.
+     * @param out The output to write through.
+     * @param channel The channel to write to, e.g., a file.
+     * @throws UncheckedIOException If the checkpoint could not be written to the channel.
+     */
+    public static void capture(Simulator simulator, Output out, WritableByteChannel channel)
+    {
+        out.begin(channel);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        simulator.writeState(out);
+        out.flush();
+    }
+
+    /**
+     * Loads a simulation from a checkpoint file, which is memory-mapped (a window at a time) rather than
+     * read into the heap.
+     * @param file The checkpoint file.
+     * @param numThreads The number of threads to run each generation on with EngineMode.PARALLEL or EngineMode.MAPPED.
+     * @return The simulation, in the state it was in when the checkpoint was captured.
+     * @throws IOException If the file cannot be read, or is not a checkpoint of a supported version.
+     */
+    public static Simulator load(Path file, int numThreads) throws IOException
+    {
+        return load(file, numThreads, null);
+    }
+
+    /**
+     * Loads a simulation from a checkpoint file (see load), keeping its field in the given file if it is
+     * run by EngineMode.MAPPED.
+     * @param file The checkpoint file.
+     * @param numThreads The number of threads to run each generation on with EngineMode.PARALLEL or EngineMode.MAPPED.
+     * @param mappedFile The file to keep the field in with EngineMode.MAPPED (whose contents are replaced),
+     *                   or null for a temporary file.
+     * @return The simulation, in the state it was in when the checkpoint was captured.
+     * @throws IOException If the file cannot be read, or is not a checkpoint of a supported version.
+     */
+    public static Simulator load(Path file, int numThreads, Path mappedFile) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            Input in = (channel.size() < 8) ? null : new Input(channel);
+            if (in == null || in.getInt() != MAGIC)
+            {
+                throw new IOException(file + " is not a checkpoint.");
+            }
+            int version = in.getInt();
+            if (version != VERSION)
+            {
+                throw new IOException(file + " is a checkpoint of unsupported version " + version);
+            }
+            return Simulator.readState(in, numThreads, mappedFile);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * The buffer that a checkpoint is written through to a channel: whenever it is full, its contents
+     * are written to the channel. Its memory is kept between checkpoints, so capturing a checkpoint
+     * again allocates nothing.
+     */
+    public static class Output
+    {
+        private static final int BUFFER_SIZE = 1 << 20;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private WritableByteChannel channel;
+
+        /**
+         * Starts writing a new checkpoint to a channel.
+         * @param channel The channel.
+         */
+        public void begin(WritableByteChannel channel)
+        {
+            this.channel = channel;
+            buffer.clear();
+        }
+
+        /**
+         * Writes whatever is in the buffer to the channel.
+         * @throws UncheckedIOException If the channel could not be written to.
+         */
+        public void flush()
+        {
+            buffer.flip();
+            try
+            {
+                while (buffer.hasRemaining())
+                {
+                    channel.write(buffer);
+                }
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Makes room for at least the given number of bytes (at most BUFFER_SIZE).
+         */
+        private void reserve(int numBytes)
+        {
+            if (buffer.remaining() < numBytes)
+            {
+                flush();
+            }
+        }
+
+        /**
+         * Writes a boolean, as a byte.
+         * @param value The boolean.
+         */
+        public void putBoolean(boolean value)
+        {
+            putByte(value ? 1 : 0);
+        }
+
+        /**
+         * Writes the low 8 bits of an int.
+         * @param value The value.
+         */
+        public void putByte(int value)
+        {
+            reserve(1);
+            buffer.put((byte) value);
+        }
+
+        /**
+         * Writes the low 16 bits of an int.
+         * @param value The value.
+         */
+        public void putShort(int value)
+        {
+            reserve(2);
+            buffer.putShort((short) value);
+        }
+
+        /**
+         * Writes an int.
+         * @param value The value.
+         */
+        public void putInt(int value)
+        {
+            reserve(4);
+            buffer.putInt(value);
+        }
+
+        /**
+         * Writes a long.
+         * @param value The value.
+         */
+        public void putLong(long value)
+        {
+            reserve(8);
+            buffer.putLong(value);
+        }
+
+        /**
+         * Writes an array of bytes.
+         * @param bytes The bytes.
+         * @param length The number of bytes (from the start of the array) to write.
+         */
+        public void putBytes(byte[] bytes, int length)
+        {
+            for (int offset = 0; offset < length; )
+            {
+                int numBytes = Math.min(length - offset, BUFFER_SIZE);
+                reserve(numBytes);
+                buffer.put(bytes, offset, numBytes);
+                offset += numBytes;
+            }
+        }
+    }
+
+    /**
+     * A channel that keeps a hash of the bytes written to it instead of the bytes themselves, so that
+     * the state written to checkpoints can be compared without being stored (see Simulator.getCellStateHash).
+     */
+    public static class HashChannel implements WritableByteChannel
+    {
+        private long hash;
+
+        /**
+         * Starts a new hash.
+         */
+        public void reset()
+        {
+            hash = 0;
+        }
+
+        /**
+         * Returns the hash of the bytes written since the last reset.
+         * @return The hash.
+         */
+        public long getHash()
+        {
+            return hash;
+        }
+
+        @Override
+        public int write(ByteBuffer source)
+        {
+            int numBytes = source.remaining();
+            while (source.remaining() >= 8)
+            {
+                hash = SplitMixRandom.hash(hash, source.getLong());
+            }
+            while (source.hasRemaining())
+            {
+                hash = SplitMixRandom.hash(hash, source.get());
+            }
+            return numBytes;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    /**
+     * A checkpoint file being read. A single MappedByteBuffer can only map 2 GB, so the file is mapped
+     * a window of at most 1 GB at a time, moving the window on whenever a value reaches past its end.
+     */
+    public static class Input
+    {
+        private static final long WINDOW_SIZE = 1L << 30;
+
+        private final FileChannel channel;
+        private final long length;
+        private long windowStart; // The position in the file of the start of the window
+        private MappedByteBuffer window;
+
+        /**
+         * Starts reading a checkpoint file from its start.
+         * @param channel The channel of the file, which must stay open while it is read.
+         * @throws IOException If the file cannot be mapped.
+         */
+        private Input(FileChannel channel) throws IOException
+        {
+            this.channel = channel;
+            this.length = channel.size();
+            map(0);
+        }
+
+        /**
+         * Maps the window starting at the given position of the file.
+         */
+        private void map(long start) throws IOException
+        {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, length - start));
+        }
+
+        /**
+         * Makes sure that the next given number of bytes are in the window.
+         * @throws BufferUnderflowException If the file ends first.
+         */
+        private void require(int numBytes)
+        {
+            if (window.remaining() >= numBytes)
+            {
+                return;
+            }
+            long position = windowStart + window.position();
+            if (length - position < numBytes)
+            {
+                throw new BufferUnderflowException();
+            }
+            try
+            {
+                map(position);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Reads a byte.
+         * @return The byte.
+         */
+        public byte get()
+        {
+            require(1);
+            return window.get();
+        }
+
+        /**
+         * Reads a short.
+         * @return The short.
+         */
+        public short getShort()
+        {
+            require(2);
+            return window.getShort();
+        }
+
+        /**
+         * Reads an int.
+         * @return The int.
+         */
+        public int getInt()
+        {
+            require(4);
+            return window.getInt();
+        }
+
+        /**
+         * Reads a long.
+         * @return The long.
+         */
+        public long getLong()
+        {
+            require(8);
+            return window.getLong();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a checkpoint of a simulation to a file every given number of generations, without making
+ * the simulation wait for the disk. The state is streamed into a temporary file on the simulation's
+ * thread (it must not change while it is captured), which only copies it into the operating system's
+ * file cache; flushing the file to the disk, which is the slow part, is done on a background thread.
+ *
+ * Once flushed, the temporary file is moved over the previous checkpoint, so the file always holds a
+ * complete checkpoint, even if the process dies while writing. The next checkpoint is only captured
+ * once the previous one has been moved into place: if it is still being flushed when the next one is
+ * due, that checkpoint is postponed until the end of a later generation, rather than making the
+ * simulation wait.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class CheckpointWriter implements AutoCloseable
+{
+    private final Path file;
+    private final Path tempFile;
+    private final int interval;
+    private final Checkpoint.Output output;
+    private final ExecutorService executor;
+    private Future<?> pending; // The checkpoint being flushed, if any
+    private boolean overdue; // Whether a checkpoint was postponed, as the previous one was still being flushed
+
+    /**
+     * Create a writer of checkpoints to the given file.
+     * @param file The file to write the checkpoints to.
+     * @param interval The number of generations between checkpoints.
+     */
+    public CheckpointWriter(Path file, int interval)
+    {
+        if (interval < 1)
+        {
+            throw new IllegalArgumentException("Checkpoint interval must be at least 1: " + interval);
+        }
+        this.file = file;
+        this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        this.interval = interval;
+        this.output = new Checkpoint.Output();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Writes a checkpoint if the simulation has reached a multiple of the interval (or a checkpoint was
+     * postponed), unless the previous checkpoint is still being flushed. To be called after every generation.
+     * @param simulator The simulation.
+     */
+    public void afterGeneration(Simulator simulator)
+    {
+        if (simulator.getGeneration() % interval != 0 && !overdue)
+        {
+            return;
+        }
+        if (pending != null && !pending.isDone())
+        {
+            overdue = true;
+            return;
+        }
+        write(simulator);
+    }
+
+    /**
+     * Captures a checkpoint of the current state of the simulation into the temporary file, and starts
+     * flushing it to the disk. Waits for the previous checkpoint to be flushed first, if it still is.
+     * @param simulator The simulation.
+     * @throws UncheckedIOException If the checkpoint could not be written.
+     */
+    public void write(Simulator simulator)
+    {
+        awaitPending();
+        overdue = false;
+        FileChannel channel;
+        try
+        {
+            channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                       StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Could not write checkpoint to " + tempFile, e);
+        }
+        try
+        {
+            Checkpoint.capture(simulator, output, channel);
+        }
+        catch (UncheckedIOException e)
+        {
+            close(channel);
+            throw new UncheckedIOException("Could not write checkpoint to " + tempFile, e.getCause());
+        }
+        catch (RuntimeException e)
+        {
+            close(channel);
+            throw e;
+        }
+        pending = executor.submit(() -> {
+            flushFile(channel);
+            return null;
+        });
+    }
+
+    /**
+     * Flushes the temporary file to the disk, closes it, and moves it over the checkpoint file.
+     */
+    private void flushFile(FileChannel channel) throws IOException
+    {
+        try (channel)
+        {
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Closes a channel that a checkpoint failed to be written to.
+     */
+    private static void close(FileChannel channel)
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            // The checkpoint has failed anyway.
+        }
+    }
+
+    /**
+     * Waits for the checkpoint being flushed (if any) to be moved into place. An interrupt does not stop
+     * the wait (the interrupt status is kept), as the checkpoint must be in place before the next one is
+     * written to the temporary file.
+     * @throws UncheckedIOException If it could not be written.
+     */
+    public void awaitPending()
+    {
+        if (pending == null)
+        {
+            return;
+        }
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    pending.get();
+                    return;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            throw (cause instanceof IOException) ? new UncheckedIOException("Could not write checkpoint to " + file, (IOException) cause)
+                                                 : new IllegalStateException("Could not write checkpoint to " + file, cause);
+        }
+        finally
+        {
+            pending = null;
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Return the file that the checkpoints are written to.
+     * @return The checkpoint file.
+     */
+    public Path getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Waits for the checkpoint being flushed (if any), and stops the background thread.
+     */
+    @Override
+    public void close()
+    {
+        try
+        {
+            awaitPending();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
@@ -1,5 +1,5 @@
-import java.util.Random;
-import javafx.scene.paint.Color;
+import java.util.List;
+import java.util.random.RandomGenerator;
 
 /**
  * The CleansingCell class is a type of cell in a simulation that extends from NonImmuneCell. 
@@ -12,21 +12,31 @@ import javafx.scene.paint.Color;
 
 public class CleansingCell extends NonImmuneCell
 {
-    private static final Color COLOR = Color.BLUE;
-    private static final int DEATH_THRESHOLD = 4;
-    private static final double ALIVE_PROB = 0.03;
-    private static final int INITIAL_HEALTH = 4;
-    private static final Random rand = new Random();
+    static final CellColor COLOR = CellColor.BLUE;
+    static final int DEATH_THRESHOLD = 4; // Default (see Rule)
+    static final double ALIVE_PROB = 0.03;
+    static final int INITIAL_HEALTH = 4;
 
     /**
      * Create a new CleansingCell.
      *
      * @param row The row index of the field that this cell will be placed in.
      * @param col The column index of the field that this cell will be placed in.
+     * @param rand The simulation's random number generator for cells.
      */
-    public CleansingCell(int row, int col)
+    public CleansingCell(int row, int col, RandomGenerator rand)
     {
-        super(row, col, CleansingCell.COLOR, CleansingCell.ALIVE_PROB, CleansingCell.INITIAL_HEALTH);
+        super(row, col, CellType.CLEANSING, CleansingCell.COLOR, CleansingCell.ALIVE_PROB, CleansingCell.INITIAL_HEALTH, rand);
+    }
+
+    @Override
+    /**
+     * Returns the type of this cell.
+     * @return CellType.CLEANSING
+     */
+    public CellType getType()
+    {
+        return CellType.CLEANSING;
     }
 
     @Override
@@ -36,7 +46,7 @@ public class CleansingCell extends NonImmuneCell
      */
     protected int getDeathThreshold()
     {  
-        int deathThreshold = CleansingCell.DEATH_THRESHOLD;
+        int deathThreshold = getRules().get(Rule.CLEANSING_DEATH_THRESHOLD);
 
         // Infected with a disease.
         if (isInfected())
@@ -55,9 +65,11 @@ public class CleansingCell extends NonImmuneCell
         super.setDisease(null);
 
         // Cleanse all neighbours from the disease
-        for (Object cell: getLivingNeighbours())
+        List<Cell> neighbours = getAllNeighbours();
+        for (int i = 0; i < neighbours.size(); i++)
         {   
-            if (!(cell instanceof NonImmuneCell)) // Not a NonImmuneCell (i.e., is not infectable with a disease)
+            Cell cell = neighbours.get(i);
+            if (!(cell instanceof NonImmuneCell) || !cell.isAlive()) // Dead, or not a NonImmuneCell (i.e., is not infectable with a disease)
             {
                 continue;
             }
@@ -80,7 +92,7 @@ public class CleansingCell extends NonImmuneCell
      */
     protected void performAliveBehaviour()
     {
-        int numNeighbours = getLivingNeighbours().size();
+        int numNeighbours = getNumLivingNeighbours();
 
         // Assign next state, dies if exceeding the death threshold.
         super.assignNextState(numNeighbours, this.getDeathThreshold());
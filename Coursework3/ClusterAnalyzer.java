@@ -0,0 +1,444 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Finds the connected clusters of a grid (see ClusterStats) every few generations, in the background,
+ * so that the simulation does not wait for the analysis. The simulation's thread only copies the
+ * grid into a compact array of keys (one byte per position), in parallel; the clusters are then
+ * labelled on a thread of the analyzer, while the simulation carries on. Only one analysis runs at a
+ * time: if the last one has not finished when the next is due, the next is skipped (and counted,
+ * see getNumSkipped), rather than making the simulation wait.
+ *
+ * The clusters are labelled with a union-find over the positions, split into square tiles:
+ * 1. Every tile is labelled on its own, in parallel, by joining each living cell with the neighbours
+ *    in the same tile that are in the same cluster. Every tile only writes its own positions.
+ * 2. The borders of the tiles are merged, by joining the cells on each border with their neighbours
+ *    in the next tiles. Only the cells on the borders are visited.
+ * 3. Every position is given the root of its cluster (the first position of the cluster), in
+ *    parallel, and the sizes of the clusters are counted.
+ * Roots are always joined to the root that comes first, so the labels only depend on the grid.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class ClusterAnalyzer implements AutoCloseable
+{
+    private static final int TILE_SIZE = 128; // The rows and columns of each tile
+    private static final int TYPE_MASK = 0x0F; // The bits of a key holding the CellType ordinal + 1 of a living cell
+    private static final int INFECTED_MASK = 0x80; // The bit of a key set for a living, infected cell
+    private static final CellType[] TYPES = CellType.values();
+
+    private final int depth, width;
+    private final int interval;
+    private final int tileRows, tileCols;
+    private final byte[] keys; // The key of each position of the grid being analysed
+    private final int[] parents; // The union-find forest, then the size of each cluster at its root
+    private final int[] roots; // The root of the cluster of each position
+    private final ForkJoinPool pool; // Null when the tiles are labelled on a single thread
+    private final ExecutorService executor; // Runs the analyses in the background
+    private Future<ClusterStats> pending; // The analysis running, or finished but not yet taken
+    private long numSkipped;
+
+    /**
+     * Create an analyzer of a grid of the given dimensions.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     * @param interval The number of generations between analyses (1 to analyse every generation).
+     * @param numThreads The number of threads to label the tiles on.
+     */
+    public ClusterAnalyzer(int depth, int width, int interval, int numThreads)
+    {
+        if (interval < 1)
+        {
+            throw new IllegalArgumentException("Interval must be at least 1: " + interval);
+        }
+        if (numThreads < 1)
+        {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
+        int size = ArrayField.getSize(depth, width);
+        this.depth = depth;
+        this.width = width;
+        this.interval = interval;
+        this.tileRows = (depth + TILE_SIZE - 1) / TILE_SIZE;
+        this.tileCols = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.keys = new byte[size];
+        this.parents = new int[size];
+        this.roots = new int[size];
+        this.pool = (numThreads > 1) ? new ForkJoinPool(numThreads) : null;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster analysis");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts analysing the grid in the background, if the generation is due to be analysed (every
+     * interval generations) and the last analysis has finished. To be called after every generation,
+     * by the simulation's thread.
+     * @param grid The grid.
+     * @param generation The generation that the grid is in.
+     * @return true if an analysis was started.
+     */
+    public boolean afterGeneration(CellGrid grid, int generation)
+    {
+        if (generation % interval != 0)
+        {
+            return false;
+        }
+        if (pending != null && !pending.isDone())
+        {
+            numSkipped ++;
+            return false;
+        }
+        capture(grid);
+        pending = executor.submit(() -> label(generation));
+        return true;
+    }
+
+    /**
+     * Takes the result of the last analysis started, if it has finished. A result that is not taken
+     * before the next analysis starts is replaced by that of the next analysis.
+     * @param wait Whether to wait for the analysis to finish, if it is still running.
+     * @return The clusters found, or null if no analysis has finished since the last result was taken.
+     */
+    public ClusterStats takeResult(boolean wait)
+    {
+        if (pending == null || (!wait && !pending.isDone()))
+        {
+            return null;
+        }
+        try
+        {
+            return pending.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("The cluster analysis failed", e.getCause());
+        }
+        finally
+        {
+            if (pending.isDone())
+            {
+                pending = null;
+            }
+        }
+    }
+
+    /**
+     * Analyses a grid straight away, on the calling thread (and the threads of the analyzer).
+     * Must not be called while an analysis started by afterGeneration is running.
+     * @param grid The grid.
+     * @param generation The generation that the grid is in.
+     * @return The clusters of the grid.
+     */
+    public ClusterStats analyse(CellGrid grid, int generation)
+    {
+        if (pending != null && !pending.isDone())
+        {
+            throw new IllegalStateException("An analysis is already running");
+        }
+        capture(grid);
+        return label(generation);
+    }
+
+    /**
+     * Returns the number of generations that were not analysed because the last analysis had not finished.
+     * @return The number of skipped analyses.
+     */
+    public long getNumSkipped()
+    {
+        return numSkipped;
+    }
+
+    /**
+     * Stops the threads of the analyzer, abandoning any analysis running.
+     */
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+        if (pool != null)
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Copies the grid into the keys, a tile at a time.
+     */
+    private void capture(CellGrid grid)
+    {
+        if (grid.getDepth() != depth || grid.getWidth() != width)
+        {
+            throw new IllegalArgumentException("Grid of " + grid.getDepth() + "x" + grid.getWidth()
+                                               + " does not fit an analyzer of " + depth + "x" + width);
+        }
+        runTiles((fromRow, toRow, fromCol, toCol) -> {
+            for (int row = fromRow; row < toRow; row++)
+            {
+                for (int col = fromCol; col < toCol; col++)
+                {
+                    int key = 0;
+                    if (grid.isAlive(row, col))
+                    {
+                        key = (grid.getCellType(row, col).ordinal() + 1) | (grid.isInfected(row, col) ? INFECTED_MASK : 0);
+                    }
+                    keys[row * width + col] = (byte) key;
+                }
+            }
+        });
+    }
+
+    /**
+     * Labels the clusters of the keys captured, of each type and of infected cells.
+     */
+    private ClusterStats label(int generation)
+    {
+        ClusterStats stats = new ClusterStats(generation);
+        label(TYPE_MASK, stats);
+        label(INFECTED_MASK, stats);
+        return stats;
+    }
+
+    /**
+     * Labels the clusters of the positions whose keys have the same (non-zero) bits under the mask,
+     * and adds them to the statistics.
+     */
+    private void label(int mask, ClusterStats stats)
+    {
+        // 1. Each tile on its own.
+        runTiles((fromRow, toRow, fromCol, toCol) -> {
+            for (int row = fromRow; row < toRow; row++)
+            {
+                for (int col = fromCol; col < toCol; col++)
+                {
+                    int index = row * width + col;
+                    int key = keys[index] & mask;
+                    if (key == 0)
+                    {
+                        continue;
+                    }
+                    parents[index] = index;
+                    // The neighbours before this position (to the west, and in the row above), inside the tile.
+                    if (col > fromCol)
+                    {
+                        joinIfSame(index, index - 1, key, mask);
+                    }
+                    if (row > fromRow)
+                    {
+                        int above = index - width;
+                        if (col > fromCol)
+                        {
+                            joinIfSame(index, above - 1, key, mask);
+                        }
+                        joinIfSame(index, above, key, mask);
+                        if (col < toCol - 1)
+                        {
+                            joinIfSame(index, above + 1, key, mask);
+                        }
+                    }
+                }
+            }
+        });
+
+        // 2. The borders of the tiles. Every pair of neighbours in different tiles has a position on the top
+        // row, left column or right column of its tile, whose neighbour before it is outside the tile.
+        for (int tileRow = 0; tileRow < tileRows; tileRow++)
+        {
+            for (int tileCol = 0; tileCol < tileCols; tileCol++)
+            {
+                int fromRow = tileRow * TILE_SIZE;
+                int toRow = Math.min(fromRow + TILE_SIZE, depth);
+                int fromCol = tileCol * TILE_SIZE;
+                int toCol = Math.min(fromCol + TILE_SIZE, width);
+                for (int col = fromCol; col < toCol; col++)
+                {
+                    joinAcrossBorders(fromRow, col, fromRow, fromCol, toCol, mask);
+                }
+                for (int row = fromRow + 1; row < toRow; row++)
+                {
+                    joinAcrossBorders(row, fromCol, fromRow, fromCol, toCol, mask);
+                    joinAcrossBorders(row, toCol - 1, fromRow, fromCol, toCol, mask);
+                }
+            }
+        }
+
+        // 3. The root of every position, then the size of every cluster.
+        runTiles((fromRow, toRow, fromCol, toCol) -> {
+            for (int row = fromRow; row < toRow; row++)
+            {
+                for (int col = fromCol; col < toCol; col++)
+                {
+                    int index = row * width + col;
+                    if ((keys[index] & mask) != 0)
+                    {
+                        int root = index;
+                        while (parents[root] != root)
+                        {
+                            root = parents[root];
+                        }
+                        roots[index] = root;
+                    }
+                }
+            }
+        });
+        int[] sizes = parents; // The forest is no longer needed
+        for (int index = 0; index < keys.length; index++)
+        {
+            if ((keys[index] & mask) != 0)
+            {
+                sizes[index] = 0;
+            }
+        }
+        for (int index = 0; index < keys.length; index++)
+        {
+            if ((keys[index] & mask) != 0)
+            {
+                sizes[roots[index]] ++;
+            }
+        }
+        for (int index = 0; index < keys.length; index++)
+        {
+            int key = keys[index] & mask;
+            if (key != 0 && roots[index] == index)
+            {
+                stats.addCluster((mask == INFECTED_MASK) ? null : TYPES[key - 1], sizes[index]);
+            }
+        }
+    }
+
+    /**
+     * Joins a position on the border of its tile with its neighbours before it (to the west, and in
+     * the row above) that are outside the tile and in the same cluster.
+     */
+    private void joinAcrossBorders(int row, int col, int fromRow, int fromCol, int toCol, int mask)
+    {
+        int index = row * width + col;
+        int key = keys[index] & mask;
+        if (key == 0)
+        {
+            return;
+        }
+        if (col > 0 && col == fromCol)
+        {
+            joinIfSame(index, index - 1, key, mask);
+        }
+        if (row > 0)
+        {
+            for (int nextCol = Math.max(col - 1, 0); nextCol <= Math.min(col + 1, width - 1); nextCol++)
+            {
+                if (row == fromRow || nextCol < fromCol || nextCol >= toCol)
+                {
+                    joinIfSame(index, index - width + nextCol - col, key, mask);
+                }
+            }
+        }
+    }
+
+    /**
+     * Joins the clusters of two positions, if the other position has the same key.
+     */
+    private void joinIfSame(int index, int other, int key, int mask)
+    {
+        if ((keys[other] & mask) != key)
+        {
+            return;
+        }
+        int root = find(index);
+        int otherRoot = find(other);
+        if (root < otherRoot)
+        {
+            parents[otherRoot] = root;
+        }
+        else if (otherRoot < root)
+        {
+            parents[root] = otherRoot;
+        }
+    }
+
+    /**
+     * Returns the root of the cluster of a position, halving the path to it on the way.
+     */
+    private int find(int index)
+    {
+        while (parents[index] != index)
+        {
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+        return index;
+    }
+
+    /**
+     * Performs a task for every tile, in parallel when running on more than one thread.
+     */
+    private void runTiles(TileTask task)
+    {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int tileRow = 0; tileRow < tileRows; tileRow++)
+        {
+            for (int tileCol = 0; tileCol < tileCols; tileCol++)
+            {
+                int fromRow = tileRow * TILE_SIZE;
+                int fromCol = tileCol * TILE_SIZE;
+                tasks.add(() -> {
+                    task.run(fromRow, Math.min(fromRow + TILE_SIZE, depth), fromCol, Math.min(fromCol + TILE_SIZE, width));
+                    return null;
+                });
+            }
+        }
+        if (pool == null)
+        {
+            for (Callable<Void> tile : tasks)
+            {
+                try
+                {
+                    tile.call();
+                }
+                catch (Exception e)
+                {
+                    throw new IllegalStateException("A tile failed in the cluster analysis", e);
+                }
+            }
+            return;
+        }
+        for (Future<Void> result : pool.invokeAll(tasks))
+        {
+            try
+            {
+                result.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while analysing clusters", e);
+            }
+            catch (ExecutionException e)
+            {
+                throw new IllegalStateException("A tile failed in the cluster analysis", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * A task performed for a single tile, given its rows and columns.
+     */
+    @FunctionalInterface
+    private interface TileTask
+    {
+        void run(int fromRow, int toRow, int fromCol, int toCol);
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * The connected clusters of a generation of a grid, as found by a ClusterAnalyzer: for each cell type,
+ * the clusters of living cells of the type, and the clusters of living, infected cells (whatever their
+ * type). Two cells are in the same cluster if they are neighbours (in any of the 8 directions), or
+ * are both in a cluster with a third. For each kind of cluster, the number of clusters, the size of
+ * the largest one, and a histogram of their sizes are kept. The histogram has one bin for each power
+ * of 2: clusters of 1 cell, of 2 to 3 cells, of 4 to 7 cells, and so on, with the last bin holding
+ * every cluster at least as large as its lower bound.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class ClusterStats
+{
+    public static final int NUM_SIZE_BINS = 12; // Up to clusters of 2048 cells or more
+
+    private static final int INFECTED = CellType.count(); // The index of the infected clusters, after those of each type
+
+    private final int generation;
+    private final int[] numClusters; // Indexed by CellType ordinal, then INFECTED
+    private final int[] largest;
+    private final int[][] histograms;
+
+    /**
+     * Create the statistics of a generation with no clusters, to be added to.
+     * @param generation The generation that the clusters were found in.
+     */
+    ClusterStats(int generation)
+    {
+        this.generation = generation;
+        this.numClusters = new int[INFECTED + 1];
+        this.largest = new int[INFECTED + 1];
+        this.histograms = new int[INFECTED + 1][NUM_SIZE_BINS];
+    }
+
+    /**
+     * Adds a cluster.
+     * @param type The type of the cells of the cluster, or null if it is a cluster of infected cells.
+     * @param size The number of cells in the cluster.
+     */
+    void addCluster(CellType type, int size)
+    {
+        int kind = (type == null) ? INFECTED : type.ordinal();
+        numClusters[kind] ++;
+        largest[kind] = Math.max(largest[kind], size);
+        histograms[kind][getSizeBin(size)] ++;
+    }
+
+    /**
+     * Returns the bin of the histogram that clusters of the given size are counted in.
+     * @param size The number of cells in a cluster (at least 1).
+     * @return The bin of the size.
+     */
+    public static int getSizeBin(int size)
+    {
+        return Math.min(31 - Integer.numberOfLeadingZeros(size), NUM_SIZE_BINS - 1);
+    }
+
+    /**
+     * Returns a description of the sizes of the clusters counted in a bin of the histogram, e.g., "4-7".
+     * @param bin The bin.
+     * @return The sizes of the bin.
+     */
+    public static String getBinName(int bin)
+    {
+        if (bin == 0)
+        {
+            return "1";
+        }
+        if (bin == NUM_SIZE_BINS - 1)
+        {
+            return (1 << bin) + "+";
+        }
+        return (1 << bin) + "-" + ((2 << bin) - 1);
+    }
+
+    /**
+     * Return the generation that the clusters were found in.
+     * @return The generation.
+     */
+    public int getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Returns the number of clusters of living cells of a type.
+     * @param type The type of cell, or null for the clusters of living, infected cells.
+     * @return The number of clusters.
+     */
+    public int getNumClusters(CellType type)
+    {
+        return numClusters[(type == null) ? INFECTED : type.ordinal()];
+    }
+
+    /**
+     * Returns the size of the largest cluster of living cells of a type.
+     * @param type The type of cell, or null for the clusters of living, infected cells.
+     * @return The number of cells in the largest cluster, or 0 if there are none.
+     */
+    public int getLargestCluster(CellType type)
+    {
+        return largest[(type == null) ? INFECTED : type.ordinal()];
+    }
+
+    /**
+     * Returns the number of clusters of living cells of a type whose sizes are in a bin of the histogram.
+     * @param type The type of cell, or null for the clusters of living, infected cells.
+     * @param bin The bin (see getSizeBin).
+     * @return The number of clusters in the bin.
+     */
+    public int getNumClusters(CellType type, int bin)
+    {
+        return histograms[(type == null) ? INFECTED : type.ordinal()][bin];
+    }
+
+    /**
+     * Returns a one-line summary of the clusters: the number of clusters and the largest one of each kind.
+     * @return The summary.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder summary = new StringBuilder();
+        for (CellType type : CellType.values())
+        {
+            if (getNumClusters(type) > 0)
+            {
+                summary.append(type.getName()).append(": ").append(getNumClusters(type))
+                       .append(" (largest ").append(getLargestCluster(type)).append(") ");
+            }
+        }
+        summary.append("Infected: ").append(getNumClusters(null)).append(" (largest ").append(getLargestCluster(null)).append(")");
+        return summary.toString();
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.Arrays;
+
+/**
+ * A mipmap pyramid of the colors of a grid of cells, for drawing grids far larger than the screen.
+ * The grid is split into square blocks of cells, and the pyramid holds a histogram of the colors
+ * in every block (how many of its cells are shown in each CellColor), at every level from blocks of
+ * BASE_SIZE x BASE_SIZE cells up to a single block covering the whole grid, each level's blocks
+ * twice the size of those of the level below. When zoomed out, each pixel is drawn from the block
+ * of the level whose blocks are about the size of a pixel, in the mean color of the block, so the
+ * cost of drawing depends on the number of pixels, not the number of cells.
+ *
+ * The histograms are kept up to date as cells change color (see FieldCanvas), which takes time
+ * proportional to the number of levels for each change, instead of being rebuilt for every frame.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class ColorPyramid
+{
+    public static final int BASE_SHIFT = 3;
+    public static final int BASE_SIZE = 1 << BASE_SHIFT; // The cells along each side of a block of the first level
+
+    private static final CellColor[] COLORS = CellColor.values();
+    private static final int NUM_COLORS = COLORS.length;
+
+    private final int depth, width;
+    private final int[] levelWidths; // The number of blocks in each row of each level
+    private final int[][] counts; // [level][(blockRow * levelWidth + blockCol) * NUM_COLORS + color]
+
+    /**
+     * Create a pyramid of a grid of the given dimensions, in which every cell is white.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     */
+    public ColorPyramid(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        int numLevels = 1;
+        while ((BASE_SIZE << (numLevels - 1)) < Math.max(depth, width))
+        {
+            numLevels ++;
+        }
+        this.levelWidths = new int[numLevels];
+        this.counts = new int[numLevels][];
+        for (int level = 0; level < numLevels; level++)
+        {
+            int shift = getBlockShift(level);
+            int levelDepth = ((depth - 1) >> shift) + 1;
+            levelWidths[level] = ((width - 1) >> shift) + 1;
+            counts[level] = new int[levelDepth * levelWidths[level] * NUM_COLORS];
+        }
+        clear();
+    }
+
+    /**
+     * Makes every cell of the grid white again.
+     */
+    public void clear()
+    {
+        for (int level = 0; level < counts.length; level++)
+        {
+            Arrays.fill(counts[level], 0);
+            int shift = getBlockShift(level);
+            for (int row = 0; row < depth; row += 1 << shift)
+            {
+                for (int col = 0; col < width; col += 1 << shift)
+                {
+                    int blockDepth = Math.min(1 << shift, depth - row);
+                    int blockWidth = Math.min(1 << shift, width - col);
+                    counts[level][getBlockIndex(level, row, col) + CellColor.WHITE.ordinal()] = blockDepth * blockWidth;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that the cell at the given position has changed color.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param oldColor The CellColor ordinal that the cell was shown in.
+     * @param newColor The CellColor ordinal that the cell is now shown in.
+     */
+    public void changeColor(int row, int col, int oldColor, int newColor)
+    {
+        for (int level = 0; level < counts.length; level++)
+        {
+            int block = getBlockIndex(level, row, col);
+            counts[level][block + oldColor] --;
+            counts[level][block + newColor] ++;
+        }
+    }
+
+    /**
+     * Returns the number of levels of the pyramid.
+     * @return The number of levels.
+     */
+    public int getNumLevels()
+    {
+        return counts.length;
+    }
+
+    /**
+     * Returns the log2 of the cells along each side of a block of the given level.
+     * @param level The level.
+     * @return The block shift of the level.
+     */
+    public static int getBlockShift(int level)
+    {
+        return BASE_SHIFT + level;
+    }
+
+    /**
+     * Returns the level whose blocks are the largest that are not larger than a pixel, when each pixel
+     * covers the given number of cells along each side.
+     * @param cellsPerPixel The number of cells along each side of a pixel.
+     * @return The level to draw from, or -1 if the blocks of every level are larger than a pixel.
+     */
+    public int getLevel(double cellsPerPixel)
+    {
+        int level = -1;
+        while (level + 1 < counts.length && (1 << getBlockShift(level + 1)) <= cellsPerPixel)
+        {
+            level ++;
+        }
+        return level;
+    }
+
+    /**
+     * Returns the number of cells of a block shown in a color.
+     * @param level The level of the block.
+     * @param row The row of any cell in the block.
+     * @param col The column of any cell in the block.
+     * @param color The color.
+     * @return The number of cells of the block shown in the color.
+     */
+    public int getCount(int level, int row, int col, CellColor color)
+    {
+        return counts[level][getBlockIndex(level, row, col) + color.ordinal()];
+    }
+
+    /**
+     * Returns the mean color of the cells in a block.
+     * @param level The level of the block.
+     * @param row The row of any cell in the block.
+     * @param col The column of any cell in the block.
+     * @return The mean color of the block, as a 32-bit ARGB value.
+     */
+    public int getMeanArgb(int level, int row, int col)
+    {
+        int[] levelCounts = counts[level];
+        int block = getBlockIndex(level, row, col);
+        long red = 0, green = 0, blue = 0, total = 0;
+        for (int color = 0; color < NUM_COLORS; color++)
+        {
+            int count = levelCounts[block + color];
+            if (count == 0)
+            {
+                continue;
+            }
+            int argb = COLORS[color].getArgb();
+            red += (long) count * ((argb >> 16) & 0xFF);
+            green += (long) count * ((argb >> 8) & 0xFF);
+            blue += (long) count * (argb & 0xFF);
+            total += count;
+        }
+        return 0xFF000000 | (int) (red / total) << 16 | (int) (green / total) << 8 | (int) (blue / total);
+    }
+
+    /**
+     * Returns the index of the histogram of the block containing the given cell.
+     */
+    private int getBlockIndex(int level, int row, int col)
+    {
+        int shift = getBlockShift(level);
+        return ((row >> shift) * levelWidths[level] + (col >> shift)) * NUM_COLORS;
+    }
+}
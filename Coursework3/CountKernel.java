@@ -0,0 +1,54 @@
+/**
+ * The row operations that NeighbourhoodCounts is built from. Every operation is a simple loop over
+ * rows of bytes, so it can be done many cells at a time with SIMD instructions where available.
+ *
+ * Rows of indicators are "padded": the value of column col is at index col + 1, and indices 0 and
+ * width + 1 are always 0, so the neighbours of the first and last columns can be read without
+ * checking the bounds.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public interface CountKernel
+{
+    /**
+     * Sums a padded row of indicators over a window of 3 columns: sums[col] = the indicators of
+     * columns col - 1, col and col + 1.
+     * @param indicators The padded row of indicators (0 or 1), of length width + 2.
+     * @param sums The row to write the sums into, of length (at least) width.
+     * @param width The width of the row.
+     */
+    void windowSums(byte[] indicators, byte[] sums, int width);
+
+    /**
+     * Combines the window sums of a row and the rows above and below it into the counts of the
+     * neighbours of each cell in the row: counts[start + col] = above[col] + middle[col] + below[col] - self[col + 1].
+     * @param above The window sums of the row above.
+     * @param middle The window sums of the row.
+     * @param below The window sums of the row below.
+     * @param self The padded row of indicators of the row itself, which are not its own neighbours.
+     * @param counts The count plane to write the counts into.
+     * @param start The index of the first cell of the row in the count plane.
+     * @param width The width of the row.
+     */
+    void combine(byte[] above, byte[] middle, byte[] below, byte[] self, byte[] counts, int start, int width);
+
+    /**
+     * Returns the fastest kernel available: the VectorCountKernel if it was compiled and the
+     * jdk.incubator.vector module was added (see vector-api/VectorCountKernel.java), otherwise the
+     * ScalarCountKernel.
+     * @return The kernel to use.
+     */
+    static CountKernel create()
+    {
+        try
+        {
+            return (CountKernel) Class.forName("VectorCountKernel").getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e)
+        {
+            // The kernel was not compiled (it is opt-in), or the module was not added (--add-modules jdk.incubator.vector).
+            return new ScalarCountKernel();
+        }
+    }
+}
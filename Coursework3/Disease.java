@@ -12,7 +12,7 @@
 
 public class Disease 
 {
-    private static final int BASE_DMG = 1;
+    static final int BASE_DMG = 1;
     private int damage;
     private int bonusDamage;
 
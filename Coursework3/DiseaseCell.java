@@ -1,5 +1,8 @@
-import javafx.scene.paint.Color;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.random.RandomGenerator;
 
 
 /**
@@ -15,13 +18,12 @@ import java.util.ArrayList;
 
  public class DiseaseCell extends HealthCell
 {
-    private static final int INITIAL_HEALTH = 5;
-    private static final double ALIVE_PROB = 0.9;
-    private static final Color COLOR = Color.RED;
-    private static final int DEATH_THRESHOLD = 8;
-    private static final int MAXIMUM_AGE = 250;
-    public static final int MAXIMUM_NUM_CELLS = 80; // Maximum number of DiseaseCell instances
-    private static int numCellsCreated = 0; // Number of DiseaseCell instances created in the current simulation / environment.
+    static final int INITIAL_HEALTH = 5;
+    static final double ALIVE_PROB = 0.9;
+    static final CellColor COLOR = CellColor.RED;
+    static final int DEATH_THRESHOLD = 8; // Default (see Rule)
+    static final int MAXIMUM_AGE = 250; // Default (see Rule)
+    public static final int MAXIMUM_NUM_CELLS = 80; // Default maximum number of DiseaseCell instances in a simulation (see Rule)
 
     private ArrayList<HealthCell> infectedCells = new ArrayList<HealthCell>();
     private int age;
@@ -31,20 +33,21 @@ import java.util.ArrayList;
      *
      * @param row The row index of the field that this cell will be placed in.
      * @param col The column index of the field that this cell will be placed in.
+     * @param rand The simulation's random number generator for cells.
      */
-    public DiseaseCell(int row, int col)
+    public DiseaseCell(int row, int col, RandomGenerator rand)
     {
-        super(row, col, DiseaseCell.COLOR, DiseaseCell.ALIVE_PROB, DiseaseCell.INITIAL_HEALTH);
-        DiseaseCell.numCellsCreated ++; 
+        super(row, col, CellType.DISEASE, DiseaseCell.COLOR, DiseaseCell.ALIVE_PROB, DiseaseCell.INITIAL_HEALTH, rand);
     }
 
+    @Override
     /**
-     * Returns a boolean indicating whether the maximum number of DiseaseCell cells have been created or not.
-     * @return A boolean indicating whether the maximum number of DiseaseCell cells have been created or not.
+     * Returns the type of this cell.
+     * @return CellType.DISEASE
      */
-    public static boolean generatedMaximumCells()
+    public CellType getType()
     {
-        return DiseaseCell.numCellsCreated == DiseaseCell.MAXIMUM_NUM_CELLS;
+        return CellType.DISEASE;
     }
 
     /**
@@ -52,9 +55,11 @@ import java.util.ArrayList;
      */
     private void infectNeighbours()
     {
-        for (Object cell: getLivingNeighbours())
+        List<Cell> neighbours = getAllNeighbours();
+        for (int i = 0; i < neighbours.size(); i++)
         {   
-            if ((cell instanceof NonImmuneCell)) // Is a neighbour that can be infected with a disease.
+            Cell cell = neighbours.get(i);
+            if ((cell instanceof NonImmuneCell) && cell.isAlive()) // Is a living neighbour that can be infected with a disease.
             {
                 NonImmuneCell neighbour = (NonImmuneCell) cell;
                 if (neighbour.isInfected() == false) // Is not already infected with a disease.
@@ -87,6 +92,16 @@ import java.util.ArrayList;
         this.infectedCells = newInfectedCells;
     }
     
+    /**
+     * Forgets a cell that this cell infected, as it is no longer in the field (e.g., because an edit
+     * placed a new cell in its position, see Simulator.applyEdits).
+     * @param cell The cell to forget.
+     */
+    void forgetInfected(Cell cell)
+    {
+        this.infectedCells.removeIf(infected -> infected == cell);
+    }
+
     /**
      * Return the bonus damage of the disease that this cell inflicts onto other cells.
      * Dependent on the number of cells that this DiseaseCell currently has infected with its "Disease".
@@ -113,7 +128,7 @@ import java.util.ArrayList;
      */
     private void mature()
     {
-        if (getAge() > DiseaseCell.MAXIMUM_AGE)
+        if (getAge() > getRules().get(Rule.DISEASE_MAXIMUM_AGE))
         {
             setNextState(false); // Die as this cell has reached its maximum age.
         }
@@ -131,7 +146,7 @@ import java.util.ArrayList;
      */
     protected int getDeathThreshold()
     {  
-        int deathThreshold = DiseaseCell.DEATH_THRESHOLD;
+        int deathThreshold = getRules().get(Rule.DISEASE_DEATH_THRESHOLD);
         return deathThreshold;
     }
 
@@ -170,4 +185,29 @@ import java.util.ArrayList;
             performDeadBehaviour();
         }
     }
+
+    @Override
+    protected void writeState(Checkpoint.Output out, ToIntFunction<Cell> indexOf)
+    {
+        super.writeState(out, indexOf);
+        out.putInt(this.age);
+        out.putInt(this.infectedCells.size());
+        for (HealthCell cell : this.infectedCells)
+        {
+            out.putInt(indexOf.applyAsInt(cell));
+        }
+    }
+
+    @Override
+    protected void readState(Checkpoint.Input in, IntFunction<Cell> cellAt)
+    {
+        super.readState(in, cellAt);
+        this.age = in.getInt();
+        int numInfected = in.getInt();
+        this.infectedCells = new ArrayList<HealthCell>(numInfected);
+        for (int i = 0; i < numInfected; i++)
+        {
+            this.infectedCells.add((HealthCell) cellAt.apply(in.getInt()));
+        }
+    }
 }
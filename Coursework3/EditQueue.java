@@ -0,0 +1,79 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A queue of edits (see FieldEdit) to be made to a running simulation. Any number of threads (e.g.,
+ * the JavaFX thread while the mouse paints, and a Scenario) can submit edits at any time, while the
+ * thread running the simulation applies them all at once between two generations, so no generation
+ * ever sees half of the edits made at the same time.
+ *
+ * The queue is a lock-free ConcurrentLinkedQueue: submitting an edit never waits for the simulation,
+ * and the simulation never waits for a thread that is submitting one. Applying the edits costs
+ * nothing when there are none, so the queue can be checked before every generation.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class EditQueue
+{
+    private final ConcurrentLinkedQueue<FieldEdit> edits;
+    private final List<FieldEdit> batch; // The edits being applied, only used by the applying thread
+
+    /**
+     * Create an empty queue.
+     */
+    public EditQueue()
+    {
+        this.edits = new ConcurrentLinkedQueue<>();
+        this.batch = new ArrayList<>();
+    }
+
+    /**
+     * Adds an edit to the queue, to be applied before the next generation. May be called from any thread.
+     * @param edit The edit.
+     */
+    public void submit(FieldEdit edit)
+    {
+        edits.offer(edit);
+    }
+
+    /**
+     * Returns a boolean indicating whether there are edits waiting to be applied.
+     * @return true if no edits are waiting.
+     */
+    public boolean isEmpty()
+    {
+        return edits.isEmpty();
+    }
+
+    /**
+     * Takes every edit submitted so far off the queue, and applies them to the simulation, in the
+     * order they were submitted. Must only be called by the thread running the simulation, between
+     * two generations (or while the simulation is not being run).
+     * @param simulator The simulation to edit.
+     * @return The number of edits applied.
+     */
+    public int applyTo(Simulator simulator)
+    {
+        FieldEdit edit;
+        while ((edit = edits.poll()) != null)
+        {
+            batch.add(edit);
+        }
+        if (batch.isEmpty())
+        {
+            return 0;
+        }
+        int numApplied = batch.size();
+        try
+        {
+            simulator.applyEdits(batch);
+        }
+        finally
+        {
+            batch.clear();
+        }
+        return numApplied;
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * The ways in which the Simulator can store and run the simulation.
+ *
+ * The OBJECT mode runs the rules of each Cell subclass, with every cell acting in turn and
+ * changing its neighbours straight away. The other modes run the same rules in an ArrayEngine, where
+ * every cell acts on the state of the previous generation and its effects on its neighbours are applied
+ * afterwards, infections first (as DiseaseCell cells act first in the OBJECT mode). So the two kinds of
+ * mode follow the same rules, but do not produce the same generations from the same seed.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public enum EngineMode
+{
+    OBJECT,  // One Cell object per position in a Field
+    ARRAY,   // Primitive parallel arrays in an ArrayField, run by an ArrayEngine on a single thread
+    PARALLEL, // As ARRAY, but with bands of rows run in parallel on several threads
+    MAPPED    // As PARALLEL, but with the ArrayField kept in a memory-mapped file outside the heap
+}
@@ -0,0 +1,342 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs an ensemble of independent simulations (a Monte Carlo study), e.g., to see how the rules
+ * (see RuleSet) change which cell types survive. Every member of the ensemble has its own seed and
+ * rules, and the members run at the same time, one per thread, each on a single-threaded ArrayEngine.
+ * Simulations share no mutable state, so they cannot affect each other.
+ *
+ * For every set of rules, the survival of each cell type (the fraction of runs in which it is still
+ * alive at the end, and when it died out in the others) and its population (at the end, and averaged
+ * over the run) are reported across the runs.
+ *
+ * Usage: java EnsembleRunner depth width generations runs [seed] [RULE=value,value,... ...]
+ * where each RULE is the name of a Rule. Every combination of the given rule values is run with the
+ * same runs seeds (derived from the given seed), so differences between them are due to the rules.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class EnsembleRunner
+{
+    private static final CellType[] TYPES = CellType.values();
+
+    private final int depth, width;
+    private final int numGenerations;
+    private final int numThreads;
+
+    /**
+     * Create a runner of ensembles of simulations of the given size.
+     * @param depth The depth of each simulation.
+     * @param width The width of each simulation.
+     * @param numGenerations The number of generations to run each simulation for.
+     * @param numThreads The number of simulations to run at the same time.
+     */
+    public EnsembleRunner(int depth, int width, int numGenerations, int numThreads)
+    {
+        if (numThreads < 1)
+        {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
+        this.depth = depth;
+        this.width = width;
+        this.numGenerations = numGenerations;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Runs a simulation for every member of an ensemble, and waits for all of them to finish.
+     * @param members The seed and rules of each simulation.
+     * @return The result of each simulation, in the order of the members.
+     */
+    public List<Result> run(List<Member> members)
+    {
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (Member member : members)
+        {
+            tasks.add(() -> runMember(member));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "ensemble member");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try
+        {
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : executor.invokeAll(tasks))
+            {
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the ensemble", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("A member of the ensemble failed", e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the simulation of one member of an ensemble.
+     */
+    private Result runMember(Member member)
+    {
+        Simulator simulator = new Simulator(depth, width, EngineMode.ARRAY, 1, member.seed, member.rules);
+        CellGrid grid = simulator.getGrid();
+        int[] extinctions = new int[TYPES.length];
+        long[] populationSums = new long[TYPES.length];
+        for (CellType type : TYPES)
+        {
+            extinctions[type.ordinal()] = (grid.getPopulation(type) > 0) ? -1 : 0;
+        }
+        for (int gen = 1; gen <= numGenerations; gen++)
+        {
+            simulator.simOneGeneration();
+            for (CellType type : TYPES)
+            {
+                int population = grid.getPopulation(type);
+                populationSums[type.ordinal()] += population;
+                if (population > 0)
+                {
+                    extinctions[type.ordinal()] = -1; // Revived, or never died out
+                }
+                else if (extinctions[type.ordinal()] < 0)
+                {
+                    extinctions[type.ordinal()] = gen;
+                }
+            }
+        }
+
+        int[] finalPopulations = new int[TYPES.length];
+        double[] meanPopulations = new double[TYPES.length];
+        for (CellType type : TYPES)
+        {
+            finalPopulations[type.ordinal()] = grid.getPopulation(type);
+            meanPopulations[type.ordinal()] = (numGenerations > 0) ? (double) populationSums[type.ordinal()] / numGenerations : 0;
+        }
+        return new Result(member, finalPopulations, meanPopulations, extinctions);
+    }
+
+    /**
+     * Prints the survival and population statistics of each cell type across the results of an
+     * ensemble that were run with the given rules.
+     * @param rules The rules to report on.
+     * @param results The results of the ensemble.
+     */
+    public static void printSummary(RuleSet rules, List<Result> results)
+    {
+        List<Result> matching = new ArrayList<>();
+        for (Result result : results)
+        {
+            if (result.getMember().getRules().equals(rules))
+            {
+                matching.add(result);
+            }
+        }
+        int numRuns = matching.size();
+        System.out.println("Rules: " + rules + " (" + numRuns + " runs)");
+        System.out.printf("  %-14s %9s %20s %10s %15s%n", "Type", "Survival", "Final population", "Mean", "Died out at");
+        for (CellType type : TYPES)
+        {
+            int numSurvived = 0;
+            int numExtinct = 0;
+            double sum = 0, sumOfSquares = 0, meanSum = 0, extinctionSum = 0;
+            for (Result result : matching)
+            {
+                int population = result.getFinalPopulation(type);
+                sum += population;
+                sumOfSquares += (double) population * population;
+                meanSum += result.getMeanPopulation(type);
+                int extinction = result.getExtinctionGeneration(type);
+                if (extinction < 0)
+                {
+                    numSurvived++;
+                }
+                else if (extinction > 0)
+                {
+                    numExtinct++;
+                    extinctionSum += extinction;
+                }
+            }
+            if (numRuns == 0 || (numSurvived == 0 && numExtinct == 0))
+            {
+                continue; // Never present in any run
+            }
+            double mean = sum / numRuns;
+            double deviation = Math.sqrt(Math.max(sumOfSquares / numRuns - mean * mean, 0));
+            String extinction = (numExtinct > 0) ? String.format("%.0f", extinctionSum / numExtinct) : "-";
+            System.out.printf("  %-14s %8.1f%% %10.1f +/- %-6.1f %10.1f %15s%n", type.getName(), 100.0 * numSurvived / numRuns,
+                              mean, deviation, meanSum / numRuns, extinction);
+        }
+    }
+
+    /**
+     * One simulation of an ensemble: its seed and its rules.
+     */
+    public static class Member
+    {
+        private final long seed;
+        private final RuleSet rules;
+
+        /**
+         * Create a member of an ensemble.
+         * @param seed The seed of the simulation.
+         * @param rules The rules of the simulation, which are copied.
+         */
+        public Member(long seed, RuleSet rules)
+        {
+            this.seed = seed;
+            this.rules = new RuleSet(rules);
+        }
+
+        /**
+         * Return the seed of the simulation.
+         * @return The seed.
+         */
+        public long getSeed()
+        {
+            return seed;
+        }
+
+        /**
+         * Return the rules of the simulation.
+         * @return The rules.
+         */
+        public RuleSet getRules()
+        {
+            return rules;
+        }
+    }
+
+    /**
+     * The outcome of one simulation of an ensemble.
+     */
+    public static class Result
+    {
+        private final Member member;
+        private final int[] finalPopulations; // Indexed by CellType ordinal
+        private final double[] meanPopulations;
+        private final int[] extinctions;
+
+        /**
+         * Create the result of a simulation.
+         */
+        private Result(Member member, int[] finalPopulations, double[] meanPopulations, int[] extinctions)
+        {
+            this.member = member;
+            this.finalPopulations = finalPopulations;
+            this.meanPopulations = meanPopulations;
+            this.extinctions = extinctions;
+        }
+
+        /**
+         * Return the member of the ensemble that this is the result of.
+         * @return The member.
+         */
+        public Member getMember()
+        {
+            return member;
+        }
+
+        /**
+         * Returns the number of living cells of a type at the end of the simulation.
+         * @param type The type of cell.
+         * @return The final population of the type.
+         */
+        public int getFinalPopulation(CellType type)
+        {
+            return finalPopulations[type.ordinal()];
+        }
+
+        /**
+         * Returns the number of living cells of a type, averaged over every generation run.
+         * @param type The type of cell.
+         * @return The mean population of the type.
+         */
+        public double getMeanPopulation(CellType type)
+        {
+            return meanPopulations[type.ordinal()];
+        }
+
+        /**
+         * Returns the generation in which a type died out (for good).
+         * @param type The type of cell.
+         * @return The generation in which the type died out, 0 if it was never alive, or -1 if it survived.
+         */
+        public int getExtinctionGeneration(CellType type)
+        {
+            return extinctions[type.ordinal()];
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length < 4)
+        {
+            System.err.println("Usage: java EnsembleRunner depth width generations runs [seed] [RULE=value,value,... ...]");
+            System.exit(1);
+        }
+        int depth = Integer.parseInt(args[0]);
+        int width = Integer.parseInt(args[1]);
+        int numGenerations = Integer.parseInt(args[2]);
+        int numRuns = Integer.parseInt(args[3]);
+        int next = 4;
+        long seed = (args.length > next && !args[next].contains("=")) ? Long.parseLong(args[next++]) : System.nanoTime();
+
+        // Every combination of the given rule values.
+        List<RuleSet> ruleSets = new ArrayList<>();
+        ruleSets.add(new RuleSet());
+        for (; next < args.length; next++)
+        {
+            String[] parts = args[next].split("=", 2);
+            Rule rule = Rule.valueOf(parts[0].toUpperCase());
+            List<RuleSet> combined = new ArrayList<>();
+            for (RuleSet rules : ruleSets)
+            {
+                for (String value : parts[1].split(","))
+                {
+                    combined.add(new RuleSet(rules).set(rule, Integer.parseInt(value.trim())));
+                }
+            }
+            ruleSets = combined;
+        }
+
+        List<Member> members = new ArrayList<>();
+        for (RuleSet rules : ruleSets)
+        {
+            for (int run = 0; run < numRuns; run++)
+            {
+                members.add(new Member(SplitMixRandom.hash(seed, run), rules));
+            }
+        }
+
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        System.out.println("Seed: " + seed);
+        System.out.printf("Running %d simulations of %dx%d for %d generations on %d threads%n", members.size(),
+                          depth, width, numGenerations, numThreads);
+        long start = System.nanoTime();
+        List<Result> results = new EnsembleRunner(depth, width, numGenerations, numThreads).run(members);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        for (RuleSet rules : ruleSets)
+        {
+            printSummary(rules, results);
+        }
+        System.out.printf("Simulated %d generations in %.3f s%n", (long) members.size() * numGenerations, seconds);
+    }
+}
@@ -1,5 +1,7 @@
 import java.util.List;
-import javafx.scene.paint.Color; 
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.random.RandomGenerator;
 
 /**
  *  The EvolvingCell class extends from NonImmuneCell and represents a type of cell in a simulation. 
@@ -15,12 +17,12 @@ import javafx.scene.paint.Color;
 
 public class EvolvingCell extends NonImmuneCell
 {
-    private static final double ALIVE_PROB = 0.25;
-    private static final Color[] COLORS = {Color.CYAN, Color.DEEPSKYBLUE, Color.PURPLE};
-    private static final int MATURE_AGE = 25; // Age to be considered as a mature cell
-    private static final int ELDERLY_AGE = 75; // Elderly cell age (also the max age of EvolvingCell)
-    private static final int[] DEATH_THRESHOLDS = {2, 4, 7}; // The number of other cells that need to be adjacent to it for it to die.
-    private static final int INITIAL_HEALTH = 2;
+    static final double ALIVE_PROB = 0.25;
+    static final CellColor[] COLORS = {CellColor.CYAN, CellColor.DEEPSKYBLUE, CellColor.PURPLE};
+    static final int MATURE_AGE = 25; // Default age to be considered as a mature cell (see Rule)
+    static final int ELDERLY_AGE = 75; // Default elderly cell age (also the max age of EvolvingCell)
+    static final int[] DEATH_THRESHOLDS = {2, 4, 7}; // Default number of other cells that need to be adjacent to it for it to die.
+    static final int INITIAL_HEALTH = 2;
 
     private int generationsLived = 0;
     
@@ -29,10 +31,21 @@ public class EvolvingCell extends NonImmuneCell
      *
      * @param row The row index of the field that this cell will be placed in.
      * @param col The column index of the field that this cell will be placed in.
+     * @param rand The simulation's random number generator for cells.
      */
-    public EvolvingCell(int row, int col)
+    public EvolvingCell(int row, int col, RandomGenerator rand)
     {
-        super(row, col, EvolvingCell.COLORS[0], EvolvingCell.ALIVE_PROB, EvolvingCell.INITIAL_HEALTH);
+        super(row, col, CellType.EVOLVING, EvolvingCell.COLORS[0], EvolvingCell.ALIVE_PROB, EvolvingCell.INITIAL_HEALTH, rand);
+    }
+
+    @Override
+    /**
+     * Returns the type of this cell.
+     * @return CellType.EVOLVING
+     */
+    public CellType getType()
+    {
+        return CellType.EVOLVING;
     }  
 
     /**
@@ -41,7 +54,7 @@ public class EvolvingCell extends NonImmuneCell
      */
     private boolean isElderly()
     {
-        return (this.generationsLived == EvolvingCell.ELDERLY_AGE);
+        return (this.generationsLived == getRules().get(Rule.EVOLVING_ELDERLY_AGE));
     }
 
     /**
@@ -58,18 +71,7 @@ public class EvolvingCell extends NonImmuneCell
      */
     private void mature()
     {   
-        if (0 <= this.generationsLived && this.generationsLived < EvolvingCell.MATURE_AGE)
-        {
-            this.setColor(EvolvingCell.COLORS[0]); // Young
-        }
-        else if (EvolvingCell.MATURE_AGE <= this.generationsLived && this.generationsLived < EvolvingCell.ELDERLY_AGE)
-        {
-            this.setColor(EvolvingCell.COLORS[1]); // Mature
-        }
-        else
-        {
-            this.setColor(EvolvingCell.COLORS[2]); // Elderly
-        }
+        this.setColor(EvolvingCell.COLORS[getRules().getMaturityLevel(this.generationsLived)]);
     }
 
     @Override
@@ -79,20 +81,8 @@ public class EvolvingCell extends NonImmuneCell
      */
     protected int getDeathThreshold()
     {  
-        int deathThreshold;
-
-        if (0 <= this.generationsLived && this.generationsLived < EvolvingCell.MATURE_AGE)
-        {
-            deathThreshold = EvolvingCell.DEATH_THRESHOLDS[0]; // Young
-        }
-        else if (EvolvingCell.MATURE_AGE <= this.generationsLived && this.generationsLived < EvolvingCell.ELDERLY_AGE)
-        {
-            deathThreshold = EvolvingCell.DEATH_THRESHOLDS[1]; // Mature
-        }
-        else
-        {
-            deathThreshold = EvolvingCell.DEATH_THRESHOLDS[2]; // Elderly
-        }
+        RuleSet rules = getRules();
+        int deathThreshold = rules.getEvolvingDeathThreshold(rules.getMaturityLevel(this.generationsLived));
 
         // Infected with a disease.
         if (isInfected())
@@ -108,7 +98,7 @@ public class EvolvingCell extends NonImmuneCell
      */
     protected void performAliveBehaviour()
     {
-        int numNeighbours = getLivingNeighbours().size();
+        int numNeighbours = getNumLivingNeighbours();
 
         // Assign next state, dies if exceeding the death threshold.
         super.assignNextState(numNeighbours, this.getDeathThreshold()); 
@@ -159,4 +149,18 @@ public class EvolvingCell extends NonImmuneCell
             performAliveBehaviour();
         }
     }
+
+    @Override
+    protected void writeState(Checkpoint.Output out, ToIntFunction<Cell> indexOf)
+    {
+        super.writeState(out, indexOf);
+        out.putInt(this.generationsLived);
+    }
+
+    @Override
+    protected void readState(Checkpoint.Input in, IntFunction<Cell> cellAt)
+    {
+        super.readState(in, cellAt);
+        this.generationsLived = in.getInt();
+    }
 }
@@ -1,7 +1,8 @@
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Represent a rectangular grid of field positions.
@@ -11,33 +12,191 @@ import java.util.Random;
  * @version 2022.01.06
  */
 
-public class Field {
-    private Random rand;
+public class Field implements CellGrid {
+    private static final int MAX_NEIGHBOURS = 8;
+    // Every permutation of the neighbours of a position with each neighbour count, one after the other.
+    private static final byte[][] PERMUTATIONS = buildPermutations();
+
+    private RandomGenerator rand;
+    private RuleSet rules; // The rules that the cells in the field follow
     private int depth, width;
-    private Cell[][] field;
+    private Cell[] field; // Cells stored row by row, indexed by (row * width + col)
+    private int[] population; // The number of living cells of each type, indexed by CellType ordinal
+    private long[] births, deaths; // The number of cells of each type born and died since the field was created
+    private long stateHash; // The XOR of the Zobrist keys of the living cells (see CellGrid.getStateHash)
+
+    // Neighbour topology in compressed sparse row form, built once as cells never move.
+    // The neighbours of the cell at index i are neighbourIndices[neighbourStarts[i]] up to
+    // (but not including) neighbourIndices[neighbourStarts[i + 1]].
+    private int[] neighbourStarts;
+    private int[] neighbourIndices;
+
+    // The neighbours of each position are visited in one of the PERMUTATIONS for its neighbour count
+    // (3 in corners, 5 on edges, 8 inside the grid), chosen by hashing the position with a key that is
+    // drawn every generation, so every cell has its own random order without any being stored.
+    private long orderKey;
+    private long orderVersion; // Changes with the key, so a NeighbourList knows to choose its permutation again
 
     /**
      * Represent a field of the given dimensions.
-     * @param rand The shared "Random" object.
+     * @param rand The random number generator for ordering neighbours.
      * @param depth The depth of the field.
      * @param width The width of the field.
      */
-    public Field(Random rand, int depth, int width) {
+    public Field(RandomGenerator rand, int depth, int width) {
+        this(rand, depth, width, new RuleSet());
+    }
+
+    /**
+     * Represent a field of the given dimensions, whose cells follow the given rules.
+     * @param rand The random number generator for ordering neighbours.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param rules The rules that the cells placed in the field follow.
+     */
+    public Field(RandomGenerator rand, int depth, int width, RuleSet rules) {
         this.depth = depth;
         this.width = width;
         this.rand = rand;
-        field = new Cell[depth][width];
+        this.rules = rules;
+        field = new Cell[depth * width];
+        population = new int[CellType.count()];
+        births = new long[CellType.count()];
+        deaths = new long[CellType.count()];
+        buildNeighbourIndex();
+        updateCellNeighbours();
+    }
+
+    /**
+     * Returns every permutation of 0 to n - 1 for each n up to MAX_NEIGHBOURS, in lexicographic order.
+     */
+    private static byte[][] buildPermutations()
+    {
+        byte[][] permutations = new byte[MAX_NEIGHBOURS + 1][];
+        int numPermutations = 1;
+        for (int degree = 0; degree <= MAX_NEIGHBOURS; degree++)
+        {
+            numPermutations *= Math.max(degree, 1);
+            permutations[degree] = new byte[numPermutations * degree];
+            byte[] order = new byte[degree];
+            for (int i = 0; i < degree; i++)
+            {
+                order[i] = (byte) i;
+            }
+            for (int p = 0; p < numPermutations; p++)
+            {
+                System.arraycopy(order, 0, permutations[degree], p * degree, degree);
+                // The next permutation: reverse the suffix after the last element smaller than its successor,
+                // having swapped that element with the last element of the suffix larger than it.
+                int i = degree - 2;
+                while (i >= 0 && order[i] > order[i + 1])
+                {
+                    i --;
+                }
+                if (i < 0)
+                {
+                    break;
+                }
+                int j = degree - 1;
+                while (order[j] < order[i])
+                {
+                    j --;
+                }
+                swap(order, i, j);
+                for (int low = i + 1, high = degree - 1; low < high; low++, high--)
+                {
+                    swap(order, low, high);
+                }
+            }
+        }
+        return permutations;
+    }
+
+    private static void swap(byte[] array, int i, int j)
+    {
+        byte temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+
+    /**
+     * Returns the offset in PERMUTATIONS[degree] of the order of the neighbours of a position in this generation.
+     * @param index The index (row * width + col) of the position.
+     * @param degree The number of neighbours of the position.
+     */
+    private int getOrderOffset(int index, int degree)
+    {
+        int numPermutations = (degree == 0) ? 1 : PERMUTATIONS[degree].length / degree;
+        return SplitMixRandom.toInt(SplitMixRandom.hash(orderKey, index), numPermutations) * degree;
+    }
+
+    /**
+     * Builds the neighbour index of every position in the field.
+     */
+    private void buildNeighbourIndex()
+    {
+        neighbourStarts = new int[depth * width + 1];
+        neighbourIndices = new int[countNeighbourLinks()];
+
+        int next = 0;
+        for (int row = 0; row < depth; row++)
+        {
+            for (int col = 0; col < width; col++)
+            {
+                neighbourStarts[row * width + col] = next;
+                for (int roffset = -1; roffset <= 1; roffset++)
+                {
+                    int nextRow = row + roffset;
+                    if (nextRow < 0 || nextRow >= depth)
+                    {
+                        continue;
+                    }
+                    for (int coffset = -1; coffset <= 1; coffset++)
+                    {
+                        int nextCol = col + coffset;
+                        // Exclude invalid locations and the original location.
+                        if (nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0))
+                        {
+                            neighbourIndices[next] = nextRow * width + nextCol;
+                            next ++;
+                        }
+                    }
+                }
+            }
+        }
+        neighbourStarts[depth * width] = next;
+    }
+
+    /**
+     * Returns the total number of (directed) neighbour links in a field of this size.
+     * @return The sum of the number of neighbours of every position.
+     */
+    private int countNeighbourLinks()
+    {
+        // Every position has a 3x3 block around it, clipped to the field, minus itself.
+        // Summed over a dimension of size n, the clipped spans add up to 3n - 2 (or 1 when n is 1).
+        long rowsSpanned = (depth == 1) ? 1 : 3L * depth - 2;
+        long colsSpanned = (width == 1) ? 1 : 3L * width - 2;
+        long links = rowsSpanned * colsSpanned - (long) depth * width;
+        if (links > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Field of " + depth + "x" + width + " is too large to index.");
+        }
+        return (int) links;
     }
 
     /**
      * Empty the field.
      */
     public void clear() {
-        for (int row = 0; row < depth; row++) {
-            for (int col = 0; col < width; col++) {
-                field[row][col] = null;
+        for (int i = 0; i < field.length; i++) {
+            if (field[i] != null) {
+                field[i].setField(null, -1);
             }
+            field[i] = null;
         }
+        Arrays.fill(population, 0);
+        stateHash = 0;
     }
 
     /**
@@ -45,7 +204,23 @@ public class Field {
      * @param location The location to clear.
      */
     public void clear(Location location) {
-        field[location.getRow()][location.getCol()] = null;
+        remove(location.getRow() * width + location.getCol());
+    }
+
+    /**
+     * Removes the cell (if any) at the given index from the field and from the population.
+     * @param index The index of the position.
+     */
+    private void remove(int index) {
+        Cell cell = field[index];
+        if (cell != null) {
+            if (cell.isAlive()) {
+                population[cell.getType().ordinal()] --;
+                stateHash ^= CellGrid.zobristKey(index, cell.getType());
+            }
+            cell.setField(null, -1);
+            field[index] = null;
+        }
     }
 
     /**
@@ -66,7 +241,91 @@ public class Field {
      * @param location Where to place the cell.
      */
     public void place(Cell cell, Location location) {
-        field[location.getRow()][location.getCol()] = cell;
+        int index = location.getRow() * width + location.getCol();
+        remove(index);
+        field[index] = cell;
+        cell.setAllNeighbours(new NeighbourList(index));
+        cell.setField(this, index);
+        if (cell.isAlive()) {
+            population[cell.getType().ordinal()] ++;
+            stateHash ^= CellGrid.zobristKey(index, cell.getType());
+        }
+    }
+
+    /**
+     * Changes the number of living cells of a type, and the hash of the field, when a cell is born or dies.
+     * @param type The type of the cell.
+     * @param index The index of the cell's position.
+     * @param change The change in the number of living cells (1 for a birth, -1 for a death).
+     */
+    void updatePopulation(CellType type, int index, int change) {
+        population[type.ordinal()] += change;
+        stateHash ^= CellGrid.zobristKey(index, type);
+        if (change > 0) {
+            births[type.ordinal()] += change;
+        }
+        else {
+            deaths[type.ordinal()] -= change;
+        }
+    }
+
+    /**
+     * Returns the rules that the cells in the field follow.
+     * @return The rules of the field.
+     */
+    public RuleSet getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns the number of living cells of the given type, which is kept up to date as cells change state.
+     * @param type The type of cell.
+     * @return The number of living cells of the type.
+     */
+    public int getPopulation(CellType type) {
+        return population[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of cells of the given type that have been born since the field was created.
+     * Placing a living cell in the field does not count as a birth.
+     * @param type The type of cell.
+     * @return The number of births.
+     */
+    public long getBirths(CellType type) {
+        return births[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of cells of the given type that have died since the field was created.
+     * @param type The type of cell.
+     * @return The number of deaths.
+     */
+    public long getDeaths(CellType type) {
+        return deaths[type.ordinal()];
+    }
+
+    /**
+     * Returns the hash of the living cells of the field, which is kept up to date as cells change state.
+     * @return The hash of the field.
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * Returns the number of living cells infected with a disease. Unlike the population, this is
+     * counted by visiting every cell, as cells are infected and cleansed in many places.
+     * @return The number of living, infected cells.
+     */
+    public int getNumInfected() {
+        int count = 0;
+        for (Cell cell : field) {
+            if (cell != null && cell.isAlive() && cell.isInfected()) {
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -85,7 +344,51 @@ public class Field {
      * @return The cell at the given location, or null if there is none.
      */
     public Cell getObjectAt(int row, int col) {
-        return field[row][col];
+        return field[row * width + col];
+    }
+
+    /**
+     * Returns the type of the cell at the given position.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The type of the cell, or null if there is none.
+     */
+    public CellType getCellType(int row, int col) {
+        Cell cell = field[row * width + col];
+        return (cell == null) ? null : cell.getType();
+    }
+
+    /**
+     * Returns a boolean indicating whether the cell at the given position is alive.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return true if there is a living cell at the position.
+     */
+    public boolean isAlive(int row, int col) {
+        Cell cell = field[row * width + col];
+        return cell != null && cell.isAlive();
+    }
+
+    /**
+     * Returns a boolean indicating whether the cell at the given position is alive and infected with a disease.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return true if there is a living, infected cell at the position.
+     */
+    public boolean isInfected(int row, int col) {
+        Cell cell = field[row * width + col];
+        return cell != null && cell.isAlive() && cell.isInfected();
+    }
+
+    /**
+     * Returns the color of the cell at the given position.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The color of the cell, or white if there is none.
+     */
+    public CellColor getColor(int row, int col) {
+        Cell cell = field[row * width + col];
+        return (cell == null) ? CellColor.WHITE : cell.getColor();
     }
 
     /**
@@ -97,8 +400,14 @@ public class Field {
      * @return A valid location within the grid area.
      */
     public Location randomAdjacentLocation(Location location) {
-        List<Location> adjacent = adjacentLocations(location);
-        return adjacent.get(0);
+        int index = location.getRow() * width + location.getCol();
+        int start = neighbourStarts[index];
+        int degree = neighbourStarts[index + 1] - start;
+        if (degree == 0) {
+            return location;
+        }
+        int neighbour = neighbourIndices[start + rand.nextInt(degree)];
+        return new Location(neighbour / width, neighbour % width);
     }
 
     /**
@@ -111,70 +420,63 @@ public class Field {
     public List<Location> adjacentLocations(Location location) {
         assert location != null : "Null location passed to adjacentLocations";
         // The list of locations to be returned.
-        List<Location> locations = new LinkedList<>();
+        List<Location> locations = new ArrayList<>(MAX_NEIGHBOURS);
         if (location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            for (int roffset = -1; roffset <= 1; roffset++) {
-                int nextRow = row + roffset;
-                if (nextRow >= 0 && nextRow < depth) {
-                    for (int coffset = -1; coffset <= 1; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if (nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
-                    }
-                }
+            int index = location.getRow() * width + location.getCol();
+            int start = neighbourStarts[index];
+            int degree = neighbourStarts[index + 1] - start;
+            int offset = getOrderOffset(index, degree);
+            // Several other methods rely on the list being in a random order.
+            for (int i = 0; i < degree; i++) {
+                int neighbour = neighbourIndices[start + PERMUTATIONS[degree][offset + i]];
+                locations.add(new Location(neighbour / width, neighbour % width));
             }
-
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
         }
         return locations;
     }
 
     /**
-     * Get a shuffled list of living neighbours.
-     * @param location Get locations adjacent to this.
-     * @return A list of living neighbours.
+     * Get a shuffled list of the neighbours of a location, alive or dead.
+     * @param location Get neighbours adjacent to this.
+     * @return A list of neighbours.
      */
     public List<Cell> getAllNeighbours(Location location) {
-
-        assert location != null : "Null location passed to adjacentLocations";
-        List<Cell> neighbours = new LinkedList<>();
-  
+        assert location != null : "Null location passed to getAllNeighbours";
+        List<Cell> neighbours = new ArrayList<>(MAX_NEIGHBOURS);
         if (location != null) {
-          List<Location> adjLocations = adjacentLocations(location);
-  
-          for (Location loc : adjLocations) {
-            Cell cell = field[loc.getRow()][loc.getCol()];
-            neighbours.add(cell);
-          }
-          Collections.shuffle(neighbours, rand);
+            neighbours.addAll(new NeighbourList(location.getRow() * width + location.getCol()));
         }
         return neighbours;
-      }
+    }
 
     /**
-     * Finds and assigns the living neighbours for each cell inside of the Field.
+     * Gives the neighbours of every cell a new random order for the next generation.
+     * The neighbours themselves never change, and each cell's order is chosen from its
+     * position and a new key, so only the key is drawn rather than shuffling any lists.
      */
     public void updateCellNeighbours()
     {
-        for (int row = 0; row < depth; row++)
-        {
-            for (int col = 0; col < width; col++)
-            {
-                if (field[row][col] != null)
-                {
-                    Cell cell = field[row][col];
-                    Location location = new Location(row, col);
-                    List<Cell> neighbours = getAllNeighbours(location);
-                    cell.setAllNeighbours(neighbours);
-                }
-            }
-        }
+        orderKey = rand.nextLong();
+        orderVersion ++;
+    }
+
+    /**
+     * Writes the key of the current order of the neighbours of every cell to a checkpoint (see Checkpoint).
+     * @param out The checkpoint being written.
+     */
+    void writeNeighbourOrders(Checkpoint.Output out)
+    {
+        out.putLong(orderKey);
+    }
+
+    /**
+     * Reads the key of the order of the neighbours from a checkpoint, as written by writeNeighbourOrders.
+     * @param in The checkpoint being read.
+     */
+    void readNeighbourOrders(Checkpoint.Input in)
+    {
+        orderKey = in.getLong();
+        orderVersion ++;
     }
 
     /**
@@ -192,4 +494,47 @@ public class Field {
     public int getWidth() {
         return width;
     }
+
+    /**
+     * A read-only view of the neighbours of a single position, in the order given by the
+     * position's permutation in the current generation. No copies are made; cells are read from the field.
+     */
+    private class NeighbourList extends AbstractList<Cell>
+    {
+        private final int index;
+        private final int start;
+        private final int size;
+        private final byte[] permutations;
+        private int offset; // The offset of the current permutation in permutations
+        private long offsetVersion = -1; // The orderVersion that the offset was chosen in
+
+        /**
+         * Create a view of the neighbours of the position at the given index.
+         * @param index The index (row * width + col) of the position.
+         */
+        private NeighbourList(int index)
+        {
+            this.index = index;
+            this.start = neighbourStarts[index];
+            this.size = neighbourStarts[index + 1] - start;
+            this.permutations = PERMUTATIONS[size];
+        }
+
+        @Override
+        public Cell get(int i)
+        {
+            if (offsetVersion != orderVersion)
+            {
+                offset = getOrderOffset(index, size);
+                offsetVersion = orderVersion;
+            }
+            return field[neighbourIndices[start + permutations[offset + i]]];
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+    }
 }
@@ -1,9 +1,27 @@
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.paint.Color; 
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
 
 /**
- * Provide a graphical view of the field. This is a custom node for the user interface. 
+ * Provide a graphical view of the field. This is a custom node for the user interface.
+ *
+ * The canvas is a viewport onto the field, which can be zoomed (with the scroll wheel) and panned
+ * (by dragging with the secondary mouse button). The pixels of the canvas are drawn into a WritableImage
+ * of the size of the canvas, which is then drawn onto the canvas. Zoomed out so that a pixel covers many
+ * cells, each pixel is drawn in the mean color of the cells it covers, read from a ColorPyramid instead
+ * of the cells themselves, so the cost of drawing depends on the size of the canvas, not of the field.
+ *
+ * The canvas keeps the color shown for every cell, and each new snapshot is compared with it to find
+ * the cells in view whose color has changed, which also keeps the pyramid up to date. Only the pixels
+ * of those cells (or of the pyramid blocks they are in) are written into the image, unless so many
+ * changed that writing every pixel of the view at once is quicker. Zooming or panning redraws every pixel.
+ *
+ * Pressing or dragging with the primary mouse button paints the cells under the mouse, by passing
+ * them to the CellPainter (if any), which decides what to do with them (see SimulatorView).
  *
  * @author Jeffery Raphael
  * @version 2024.02.03
@@ -11,14 +29,32 @@ import javafx.scene.paint.Color;
 
 public class FieldCanvas extends Canvas {
 
-    private static final int GRID_VIEW_SCALING_FACTOR = 6;
-    private static final Color EMPTY_COLOR = Color.WHITE;
+    private static final CellColor[] COLORS = CellColor.values();
+    private static final int EMPTY_ARGB = CellColor.WHITE.getArgb(); // Dead cells, the gaps between cells, and beyond the field
+    private static final double MAX_CELL_SIZE = 64; // The most pixels along each side of a cell when zoomed in
+    private static final double ZOOM_STEP = 1.25; // The zoom of each step of the scroll wheel
+    private static final int MAX_CHANGED_CELLS = 4096; // The most changed cells in view drawn one by one, rather than redrawing the view
     private int width, height;
-    private int xScale, yScale;
     GraphicsContext gc;
-    
+
+    private int gridHeight, gridWidth;
+    private double cellSize; // The pixels along each side of a cell (less than 1 when zoomed out)
+    private double minCellSize; // The cell size at which the whole field fits the canvas
+    private double viewRow, viewCol; // The position in the field of the top left corner of the canvas
+    private double dragX, dragY; // The last position of the mouse while panning
+
+    private WritableImage image;
+    private PixelWriter pixelWriter;
+    private int[] pixels; // The ARGB pixels of the image, row by row
+    private int[] pixelCols; // The column of the field shown in each column of pixels (-1 for a gap or beyond the field)
+    private byte[] shownColors; // The CellColor ordinal shown for each cell of the field (null until a snapshot is shown)
+    private ColorPyramid pyramid; // The pyramid of the shown colors
+    private int[] changedCells; // The indices of the cells in view whose color changed in the last update
+    private int numChangedCells;
+    private CellPainter painter; // Null if the cells cannot be painted
+
     private FieldStats stats;
-    
+
     /**
      * Create a new FieldView component.
      */
@@ -28,53 +64,256 @@ public class FieldCanvas extends Canvas {
         this.height = height;
         this.width = width;
         this.stats = new FieldStats();
+        image = new WritableImage(width, height);
+        pixelWriter = image.getPixelWriter();
+        pixels = new int[width * height];
+        pixelCols = new int[width];
+
+        setOnScroll(event -> zoom((event.getDeltaY() > 0) ? ZOOM_STEP : 1 / ZOOM_STEP, event.getX(), event.getY()));
+        setOnMousePressed(event -> {
+            dragX = event.getX();
+            dragY = event.getY();
+            if (event.isPrimaryButtonDown()) {
+                paint(event.getX(), event.getY());
+            }
+        });
+        setOnMouseDragged(event -> {
+            if (event.isSecondaryButtonDown()) {
+                pan(event.getX() - dragX, event.getY() - dragY);
+                dragX = event.getX();
+                dragY = event.getY();
+            }
+            else if (event.isPrimaryButtonDown()) {
+                paint(event.getX(), event.getY());
+            }
+        });
+    }
+
+    /**
+     * Sets what is done with the cells painted with the mouse.
+     * @param painter The painter, or null to stop the cells being painted.
+     */
+    public void setCellPainter(CellPainter painter) {
+        this.painter = painter;
+    }
+
+    /**
+     * Passes the cells under the given point of the canvas to the painter: a single cell, or when
+     * zoomed out, every cell that the pixel at the point covers.
+     */
+    private void paint(double x, double y) {
+        if (painter == null || gridHeight == 0) {
+            return;
+        }
+        int col = (int) Math.floor(viewCol + x / cellSize);
+        int row = (int) Math.floor(viewRow + y / cellSize);
+        if (row < 0 || row >= gridHeight || col < 0 || col >= gridWidth) {
+            return;
+        }
+        int size = (int) Math.max(Math.ceil(1 / cellSize), 1);
+        painter.paint(row, col, size, size);
     }
-    
+
     /**
-     * Sets the x and y scale for the FieldCanvas.
+     * Sets the size of the field shown, and zooms out to show all of it: with a whole
+     * number of pixels for each cell if it fits, otherwise with several cells to each pixel.
      */
     public void setScale(int gridHeight, int gridWidth) {
-        xScale = width / gridWidth;
-        yScale = height / gridHeight;
-    
-        if (xScale < 1)
-            xScale = GRID_VIEW_SCALING_FACTOR;
-    
-        if (yScale < 1)
-            yScale = GRID_VIEW_SCALING_FACTOR;
+        this.gridHeight = gridHeight;
+        this.gridWidth = gridWidth;
+        minCellSize = Math.min((double) width / gridWidth, (double) height / gridHeight);
+        cellSize = (minCellSize >= 1) ? Math.floor(minCellSize) : minCellSize;
+        viewRow = 0;
+        viewCol = 0;
+        redraw();
     }
-  
+
     /**
-     * Paint a rectangle of the given color on the canvas
+     * Zooms the view in or out, keeping the cell under the given point of the canvas in place.
+     * The view cannot be zoomed out further than the whole field.
+     * @param factor How much larger the cells become (less than 1 to zoom out).
+     * @param x The x coordinate of the point on the canvas.
+     * @param y The y coordinate of the point on the canvas.
      */
-    private void drawMark(int x, int y, Color color) {
-        gc.setFill(color);
-        gc.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
+    public void zoom(double factor, double x, double y) {
+        double col = viewCol + x / cellSize;
+        double row = viewRow + y / cellSize;
+        cellSize = Math.max(Math.min(cellSize * factor, MAX_CELL_SIZE), Math.min(minCellSize, MAX_CELL_SIZE));
+        viewCol = col - x / cellSize;
+        viewRow = row - y / cellSize;
+        redraw();
     }
 
     /**
-     * Updates the stats of the field and the canvas itself, drawing the cells and stats onto the screen.
-     * @param Field The field to "update" and display.
-     * @return A string containing the population details (stats) for it to be drawn on the screen by the SimulatorView.
+     * Moves the view, as if the field were dragged by the given number of pixels.
+     * @param dx The pixels to move the field to the right.
+     * @param dy The pixels to move the field down.
      */
-    public String update(Field field)
-    {
-        this.stats.reset();
-        for (int row = 0; row < field.getDepth(); row++) {
-            for (int col = 0; col < field.getWidth(); col++) {
-                Cell cell = field.getObjectAt(row, col);
-                if (cell != null && cell.isAlive()) 
-                {
-                    this.stats.incrementCount(cell.getClass());
-                    this.drawMark(col, row, cell.getColor());
+    public void pan(double dx, double dy) {
+        viewCol -= dx / cellSize;
+        viewRow -= dy / cellSize;
+        redraw();
+    }
+
+    /**
+     * Keeps the view within the field (or at its top left, if all of it is in view).
+     */
+    private void clampView() {
+        viewCol = Math.max(Math.min(viewCol, gridWidth - width / cellSize), 0);
+        viewRow = Math.max(Math.min(viewRow, gridHeight - height / cellSize), 0);
+    }
+
+    /**
+     * Draws every pixel of the view of the colors shown (if any) onto the canvas.
+     */
+    private void redraw() {
+        if (shownColors == null) {
+            return;
+        }
+        clampView();
+        boolean hasGaps = cellSize >= 2; // Leave a 1 pixel gap between cells when they are large enough
+        for (int x = 0; x < width; x++) {
+            int col = (int) Math.floor(viewCol + x / cellSize);
+            boolean isGap = hasGaps && (int) Math.floor(viewCol + (x + 1) / cellSize) != col;
+            pixelCols[x] = (col >= gridWidth || isGap) ? -1 : col;
+        }
+        drawPixels(0, 0, width, height);
+        pixelWriter.setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        gc.drawImage(image, 0, 0, width, height);
+    }
+
+    /**
+     * Draws the pixels of the cells that changed in the last update onto the canvas, each as a rectangle
+     * of the cell (or, zoomed out, of the pyramid block it is in). The view must not have moved since it
+     * was last redrawn.
+     */
+    private void redrawChanged() {
+        if (numChangedCells == 0) {
+            return;
+        }
+        int level = pyramid.getLevel(1 / cellSize);
+        int shift = (level >= 0) ? ColorPyramid.getBlockShift(level) : 0;
+        for (int i = 0; i < numChangedCells; i++) {
+            int row = (changedCells[i] / gridWidth) >> shift << shift;
+            int col = (changedCells[i] % gridWidth) >> shift << shift;
+            // A pixel shows the cell under its top left corner, so the pixels of the cells from col
+            // to col + size are those from (col - viewCol) * cellSize, give or take a pixel of rounding.
+            int x0 = Math.max((int) Math.ceil((col - viewCol) * cellSize) - 1, 0);
+            int x1 = Math.min((int) Math.ceil((col + (1 << shift) - viewCol) * cellSize) + 1, width);
+            int y0 = Math.max((int) Math.ceil((row - viewRow) * cellSize) - 1, 0);
+            int y1 = Math.min((int) Math.ceil((row + (1 << shift) - viewRow) * cellSize) + 1, height);
+            if (x0 < x1 && y0 < y1) {
+                drawPixels(x0, y0, x1, y1);
+                pixelWriter.setPixels(x0, y0, x1 - x0, y1 - y0, PixelFormat.getIntArgbInstance(), pixels, y0 * width + x0, width);
+            }
+        }
+        gc.drawImage(image, 0, 0, width, height);
+    }
+
+    /**
+     * Draws a rectangle of pixels of the view into the pixel buffer, from the colors shown.
+     * pixelCols must be up to date with the view.
+     */
+    private void drawPixels(int x0, int y0, int x1, int y1) {
+        int level = pyramid.getLevel(1 / cellSize);
+        boolean hasGaps = cellSize >= 2;
+        for (int y = y0; y < y1; y++) {
+            int row = (int) Math.floor(viewRow + y / cellSize);
+            int offset = y * width;
+            if (row >= gridHeight || (hasGaps && (int) Math.floor(viewRow + (y + 1) / cellSize) != row)) {
+                Arrays.fill(pixels, offset + x0, offset + x1, EMPTY_ARGB);
+                continue;
+            }
+            for (int x = x0; x < x1; x++) {
+                int col = pixelCols[x];
+                if (col < 0) {
+                    pixels[offset + x] = EMPTY_ARGB;
+                }
+                else if (level >= 0) {
+                    pixels[offset + x] = pyramid.getMeanArgb(level, row, col);
+                }
+                else {
+                    pixels[offset + x] = COLORS[shownColors[row * gridWidth + col]].getArgb();
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the colors shown (and the pyramid) to those of a snapshot, and collects the cells in view
+     * whose color changed, unless there are more than MAX_CHANGED_CELLS of them.
+     * @return true if the changed cells were collected, false if there were too many.
+     */
+    private boolean updateColors(GridSnapshot snapshot) {
+        int firstRow = (int) Math.floor(viewRow);
+        int lastRow = Math.min((int) Math.ceil(viewRow + height / cellSize), gridHeight - 1);
+        int firstCol = (int) Math.floor(viewCol);
+        int lastCol = Math.min((int) Math.ceil(viewCol + width / cellSize), gridWidth - 1);
+        numChangedCells = 0;
+        boolean collected = true;
+        for (int row = 0; row < gridHeight; row++) {
+            boolean rowInView = row >= firstRow && row <= lastRow;
+            for (int col = 0, index = row * gridWidth; col < gridWidth; col++, index++) {
+                int color = snapshot.getShownColor(index);
+                if (color == shownColors[index]) {
+                    continue;
                 }
-                else 
-                {
-                    this.drawMark(col, row, EMPTY_COLOR);
+                pyramid.changeColor(row, col, shownColors[index], color);
+                shownColors[index] = (byte) color;
+                if (rowInView && col >= firstCol && col <= lastCol && collected) {
+                    if (numChangedCells == MAX_CHANGED_CELLS) {
+                        collected = false;
+                    }
+                    else {
+                        changedCells[numChangedCells++] = index;
+                    }
                 }
             }
         }
-        this.stats.countFinished();
-        return this.stats.getPopulationDetails(field);
+        return collected;
+    }
+
+    /**
+     * Updates the stats of the field and the canvas itself, drawing the cells in view and stats onto the screen.
+     * @param snapshot The snapshot of the grid of cells to display.
+     * @return A string containing the population details (stats) for it to be drawn on the screen by the SimulatorView.
+     */
+    public String update(GridSnapshot snapshot)
+    {
+        if (shownColors == null || snapshot.getDepth() != gridHeight || snapshot.getWidth() != gridWidth) {
+            shownColors = new byte[snapshot.getDepth() * snapshot.getWidth()]; // Every cell is shown white
+            pyramid = new ColorPyramid(snapshot.getDepth(), snapshot.getWidth());
+            changedCells = new int[MAX_CHANGED_CELLS];
+            gridHeight = snapshot.getDepth();
+            gridWidth = snapshot.getWidth();
+            updateColors(snapshot);
+            setScale(gridHeight, gridWidth);
+        }
+        else if (updateColors(snapshot)) {
+            redrawChanged();
+        }
+        else {
+            redraw();
+        }
+
+        // The field keeps its population up to date, so the stats do not need to count the cells.
+        this.stats.reset();
+        return this.stats.getPopulationDetails(snapshot);
+    }
+
+    /**
+     * What is done with the cells painted with the mouse, e.g., submitting a FieldEdit of them.
+     * Called on the JavaFX thread.
+     */
+    @FunctionalInterface
+    public interface CellPainter {
+        /**
+         * Paints a rectangle of cells.
+         * @param row The top row of the rectangle.
+         * @param col The left column of the rectangle.
+         * @param depth The number of rows of the rectangle.
+         * @param width The number of columns of the rectangle.
+         */
+        void paint(int row, int col, int depth, int width);
     }
 }
@@ -0,0 +1,157 @@
+/**
+ * A change made to a running simulation from outside of it (e.g., painted with the mouse, or an
+ * event of a Scenario): placing living cells of a type, infecting living cells with a disease, or
+ * killing cells, in every position of a rectangle of the field. Edits are immutable, so they can be
+ * made on one thread and applied on another (see EditQueue).
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class FieldEdit
+{
+    /**
+     * What an edit does to each position of its rectangle.
+     */
+    public enum Kind
+    {
+        PLACE,  // Replace the cell with a new, living cell of the edit's type
+        INFECT, // Infect the cell with a disease, if it is a living NonImmuneCell that is not infected yet
+        CLEAR   // Kill the cell (and cure it, if it was infected)
+    }
+
+    private final Kind kind;
+    private final CellType type; // The type of the cells placed (null unless the kind is PLACE)
+    private final int row, col;
+    private final int depth, width;
+
+    /**
+     * Create an edit of a rectangle of the field. Parts of the rectangle outside the field are ignored.
+     * @param kind What the edit does.
+     * @param type The type of the cells placed, for Kind.PLACE (ignored otherwise).
+     * @param row The top row of the rectangle.
+     * @param col The left column of the rectangle.
+     * @param depth The number of rows of the rectangle.
+     * @param width The number of columns of the rectangle.
+     */
+    public FieldEdit(Kind kind, CellType type, int row, int col, int depth, int width)
+    {
+        if (kind == Kind.PLACE && type == null)
+        {
+            throw new IllegalArgumentException("The type of the cells to place is missing");
+        }
+        if (depth < 1 || width < 1)
+        {
+            throw new IllegalArgumentException("Invalid size of edit: " + depth + "x" + width);
+        }
+        this.kind = kind;
+        this.type = (kind == Kind.PLACE) ? type : null;
+        this.row = row;
+        this.col = col;
+        this.depth = depth;
+        this.width = width;
+    }
+
+    /**
+     * Create an edit that places living cells of a type in a rectangle of the field.
+     * @param type The type of the cells.
+     * @param row The top row of the rectangle.
+     * @param col The left column of the rectangle.
+     * @param depth The number of rows of the rectangle.
+     * @param width The number of columns of the rectangle.
+     * @return The edit.
+     */
+    public static FieldEdit place(CellType type, int row, int col, int depth, int width)
+    {
+        return new FieldEdit(Kind.PLACE, type, row, col, depth, width);
+    }
+
+    /**
+     * Create an edit that infects the living NonImmuneCell cells in a rectangle of the field.
+     * @param row The top row of the rectangle.
+     * @param col The left column of the rectangle.
+     * @param depth The number of rows of the rectangle.
+     * @param width The number of columns of the rectangle.
+     * @return The edit.
+     */
+    public static FieldEdit infect(int row, int col, int depth, int width)
+    {
+        return new FieldEdit(Kind.INFECT, null, row, col, depth, width);
+    }
+
+    /**
+     * Create an edit that kills every cell in a rectangle of the field.
+     * @param row The top row of the rectangle.
+     * @param col The left column of the rectangle.
+     * @param depth The number of rows of the rectangle.
+     * @param width The number of columns of the rectangle.
+     * @return The edit.
+     */
+    public static FieldEdit clear(int row, int col, int depth, int width)
+    {
+        return new FieldEdit(Kind.CLEAR, null, row, col, depth, width);
+    }
+
+    /**
+     * Return what the edit does.
+     * @return The kind of the edit.
+     */
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * Return the type of the cells placed by the edit.
+     * @return The type of the cells, or null if the edit does not place cells.
+     */
+    public CellType getType()
+    {
+        return type;
+    }
+
+    /**
+     * Returns the first row of the edit inside a field of the given depth.
+     * @param fieldDepth The depth of the field.
+     * @return The top row of the rectangle, clipped to the field.
+     */
+    public int getFromRow(int fieldDepth)
+    {
+        return Math.min(Math.max(row, 0), fieldDepth);
+    }
+
+    /**
+     * Returns the row after the last row of the edit inside a field of the given depth.
+     * @param fieldDepth The depth of the field.
+     * @return The row after the bottom row of the rectangle, clipped to the field.
+     */
+    public int getToRow(int fieldDepth)
+    {
+        return (int) Math.min(Math.max((long) row + depth, 0), fieldDepth);
+    }
+
+    /**
+     * Returns the first column of the edit inside a field of the given width.
+     * @param fieldWidth The width of the field.
+     * @return The left column of the rectangle, clipped to the field.
+     */
+    public int getFromCol(int fieldWidth)
+    {
+        return Math.min(Math.max(col, 0), fieldWidth);
+    }
+
+    /**
+     * Returns the column after the last column of the edit inside a field of the given width.
+     * @param fieldWidth The width of the field.
+     * @return The column after the right column of the rectangle, clipped to the field.
+     */
+    public int getToCol(int fieldWidth)
+    {
+        return (int) Math.min(Math.max((long) col + width, 0), fieldWidth);
+    }
+
+    @Override
+    public String toString()
+    {
+        return kind + ((type != null) ? " " + type : "") + " " + depth + "x" + width + " at (" + row + ", " + col + ")";
+    }
+}
@@ -1,9 +1,7 @@
-import java.util.HashMap;
-
 /**
  * This class collects and provides some statistical data on the state
- * of a field. It is flexible: it will create and maintain a counter
- * for any class of object that is found within the field.
+ * of a field. It keeps a count of the living cells of every type,
+ * read from the population that the field maintains as cells change state.
  *
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
@@ -11,69 +9,77 @@ import java.util.HashMap;
 
 public class FieldStats {
     
-    private HashMap<Class, Counter> counters;
+    private int[] counts; // The number of living cells of each type, indexed by CellType ordinal
+    private boolean[] counted; // Whether each type has been found in the field yet
     private boolean countsValid;
 
     /**
-     * Construct a FieldStats object.  Set up a collection for counters for
+     * Construct a FieldStats object.  Set up counters for
      * each type of cell that we might find
      */
     public FieldStats() {
-        counters = new HashMap<>();
-        countsValid = true;
+        counts = new int[CellType.count()];
+        counted = new boolean[CellType.count()];
+        countsValid = false;
     }
 
     /**
      * Get details of what is in the field.
      * @return A string describing what is in the field.
      */
-    public String getPopulationDetails(Field field) {
-        StringBuffer buffer = new StringBuffer();
+    public String getPopulationDetails(CellGrid field) {
         if (!countsValid) {
             generateCounts(field);
         }
-        for (Class key : counters.keySet()) {
-            Counter info = counters.get(key);
-            buffer.append(info.getName());
-            buffer.append(": ");
-            buffer.append(info.getCount());
-            buffer.append(' ');
-        }
-        return buffer.toString();
+        return getDetails();
     }
 
     /**
-     * Invalidate the current set of statistics; reset all
-     * counts to zero.
+     * Get details of the given population, e.g., the total over the tiles of a
+     * field that is run in pieces (see TileCoordinator).
+     * @param population The number of living cells of each type, indexed by CellType ordinal.
+     * @return A string describing the population.
      */
-    public void reset() {
-        countsValid = false;
-        for (Class key : counters.keySet()) {
-            Counter count = counters.get(key);
-            count.reset();
+    public String getPopulationDetails(int[] population) {
+        for (CellType type : CellType.values()) {
+            setCount(type, population[type.ordinal()]);
         }
+        countsValid = true;
+        return getDetails();
     }
 
     /**
-     * Increment the count for one class of life.
-     * @param cellClass The class of cell to increment.
+     * Describe the counts of the living cells of every type found so far.
+     * @return A string describing the counts.
      */
-    public void incrementCount(Class cellClass) {
-        Counter count = counters.get(cellClass);
-
-        if (count == null) {
-            // We do not have a counter for this species yet. Create one.
-            count = new Counter(cellClass.getName());
-            counters.put(cellClass, count);
+    private String getDetails() {
+        StringBuilder buffer = new StringBuilder();
+        for (CellType type : CellType.values()) {
+            if (counted[type.ordinal()]) {
+                buffer.append(type.getName());
+                buffer.append(": ");
+                buffer.append(counts[type.ordinal()]);
+                buffer.append(' ');
+            }
         }
-        count.increment();
+        return buffer.toString();
     }
 
     /**
-     * Indicate that a cell count has been completed.
+     * Invalidate the current set of statistics, so that they
+     * are read from the field again when next needed.
      */
-    public void countFinished() {
-        countsValid = true;
+    public void reset() {
+        countsValid = false;
+    }
+
+    /**
+     * Return the number of living cells of the given type when the statistics were last generated.
+     * @param type The type of cell.
+     * @return The number of living cells of the type.
+     */
+    public int getCount(CellType type) {
+        return counts[type.ordinal()];
     }
 
     /**
@@ -81,14 +87,13 @@ public class FieldStats {
      * I.e., should it continue to run.
      * @return true If there is more than one life form alive
      */
-    public boolean isViable(Field field) {
+    public boolean isViable(CellGrid field) {
         int nonZero = 0;
         if (!countsValid) {
             generateCounts(field);
         }
-        for (Class key : counters.keySet()) {
-            Counter info = counters.get(key);
-            if (info.getCount() > 0) {
+        for (int count : counts) {
+            if (count > 0) {
                 nonZero++;
             }
         }
@@ -97,22 +102,27 @@ public class FieldStats {
     }
 
     /**
-     * Generate counts of the number of cells.
-     * These are not kept up to date.
+     * Generate counts of the number of living cells of each type.
+     * The grid keeps its population up to date as cells are born and die,
+     * so this takes time proportional to the number of types, not the size of the grid.
      * @param field The field to generate the stats for.
      */
-    private void generateCounts(Field field) {
-        reset();
-        for (int row = 0; row < field.getDepth(); row++) {
-            for (int col = 0; col < field.getWidth(); col++) {
-                Object obj = field.getObjectAt(row, col);
-                
-                // If the object at the given location isn't null (i.e., is a Cell or a subclass of a Cell)
-                if (obj != null) {
-                    incrementCount(obj.getClass());
-                }
-            }
+    private void generateCounts(CellGrid field) {
+        for (CellType type : CellType.values()) {
+            setCount(type, field.getPopulation(type));
         }
         countsValid = true;
     }
+
+    /**
+     * Record the number of living cells of a type.
+     * @param type The type of cell.
+     * @param count The number of living cells of the type.
+     */
+    private void setCount(CellType type, int count) {
+        counts[type.ordinal()] = count;
+        if (count > 0) {
+            counted[type.ordinal()] = true;
+        }
+    }
 }
@@ -0,0 +1,74 @@
+/**
+ * The memory that an ArrayField keeps its state in: a few "planes" of primitive values, each with one
+ * value per position (or, for the bit-planes, one long per 64 positions of a row). The bit-planes of
+ * the ActiveSet of the engine running the field are kept here too, so that they are wherever the
+ * field is. HeapFieldStorage keeps the planes in arrays on the Java heap, and MappedFieldStorage in a
+ * memory-mapped file outside of it.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public interface FieldStorage
+{
+    // The planes of bytes, with one byte per position.
+    int TYPES = 0;
+    int HEALTH = 1;
+    int DISEASE = 2;
+    int NEXT_DISEASE = 3;
+    int NUM_BYTE_PLANES = 4;
+
+    // The bit-planes, with one long per 64 positions of a row.
+    int ALIVE = 0;
+    int NEXT_ALIVE = 1;
+    int ACTIVE = 2; // The bit-planes of the ActiveSet
+    int TOUCHED = 3;
+    int CHANGED = 4;
+    int INTRINSIC = 5;
+    int NUM_BIT_PLANES = 6;
+
+    /**
+     * Returns a value of a plane of bytes.
+     * @param plane The plane (e.g., TYPES).
+     * @param index The index of the position.
+     * @return The value.
+     */
+    byte getByte(int plane, int index);
+
+    /**
+     * Sets a value of a plane of bytes.
+     * @param plane The plane (e.g., TYPES).
+     * @param index The index of the position.
+     * @param value The new value.
+     */
+    void setByte(int plane, int index, byte value);
+
+    /**
+     * Returns the age of the cell at the given index (the only plane of shorts).
+     * @param index The index of the position.
+     * @return The age.
+     */
+    short getAge(int index);
+
+    /**
+     * Sets the age of the cell at the given index.
+     * @param index The index of the position.
+     * @param value The new age.
+     */
+    void setAge(int index, short value);
+
+    /**
+     * Returns a long of a bit-plane.
+     * @param plane The bit-plane (e.g., ALIVE).
+     * @param word The index of the long.
+     * @return The bits of the long.
+     */
+    long getWord(int plane, int word);
+
+    /**
+     * Sets a long of a bit-plane.
+     * @param plane The bit-plane (e.g., ALIVE).
+     * @param word The index of the long.
+     * @param value The new bits of the long.
+     */
+    void setWord(int plane, int word, long value);
+}
@@ -0,0 +1,251 @@
+import java.util.Arrays;
+
+/**
+ * A copy of the state of a grid of cells at the end of one generation, for a view to read on its
+ * own thread while the simulation carries on. Once published (see SnapshotBuffer), a snapshot is not
+ * changed until the reader has moved on to a newer one, so the reader never sees a generation half-written.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class GridSnapshot implements CellGrid
+{
+    private static final CellType[] TYPES = CellType.values();
+    private static final CellColor[] COLORS = CellColor.values();
+
+    private final int depth, width;
+    private final byte[] types; // CellType ordinal of each position, or -1 if there is no cell
+    private final byte[] colors; // CellColor ordinal of each position, or -1 if the cell is dead
+    private final long[] counts; // See captureCounts
+    private int generation;
+
+    /**
+     * Create an empty snapshot of a grid of the given dimensions.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     */
+    public GridSnapshot(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.types = new byte[depth * width];
+        this.colors = new byte[depth * width];
+        this.counts = new long[3 * CellType.count() + 2];
+        Arrays.fill(colors, (byte) -1); // Every cell starts off dead
+    }
+
+    /**
+     * Copies the current state of a grid into this snapshot.
+     * @param grid The grid to copy. Must have the same dimensions as this snapshot.
+     * @param generation The generation that the grid is in.
+     */
+    public void capture(CellGrid grid, int generation)
+    {
+        if (grid.getDepth() != depth || grid.getWidth() != width)
+        {
+            throw new IllegalArgumentException("Grid of " + grid.getDepth() + "x" + grid.getWidth()
+                                               + " does not fit a snapshot of " + depth + "x" + width);
+        }
+        for (int row = 0; row < depth; row++)
+        {
+            for (int col = 0; col < width; col++)
+            {
+                int index = row * width + col;
+                CellType type = grid.getCellType(row, col);
+                types[index] = (type == null) ? -1 : (byte) type.ordinal();
+                colors[index] = grid.isAlive(row, col) ? (byte) grid.getColor(row, col).ordinal() : -1;
+            }
+        }
+        captureCounts(grid, counts);
+        this.generation = generation;
+    }
+
+    /**
+     * Returns the counts of a grid: its population, births and deaths of each type (in that order,
+     * indexed by CellType ordinal), followed by the number of infected cells and the hash of the grid.
+     * @param grid The grid to count.
+     * @return The counts of the grid.
+     */
+    static long[] captureCounts(CellGrid grid)
+    {
+        long[] counts = new long[3 * CellType.count() + 2];
+        captureCounts(grid, counts);
+        return counts;
+    }
+
+    /**
+     * Copies the counts of a grid (see captureCounts) into an array.
+     */
+    private static void captureCounts(CellGrid grid, long[] counts)
+    {
+        int numTypes = TYPES.length;
+        for (CellType type : TYPES)
+        {
+            counts[type.ordinal()] = grid.getPopulation(type);
+            counts[numTypes + type.ordinal()] = grid.getBirths(type);
+            counts[2 * numTypes + type.ordinal()] = grid.getDeaths(type);
+        }
+        counts[3 * numTypes] = grid.getNumInfected();
+        counts[3 * numTypes + 1] = grid.getStateHash();
+    }
+
+    /**
+     * Copies the state of this snapshot into a frame of a history (see RewindBuffer): the CellType
+     * ordinal of each position, followed by the CellColor ordinal of each position.
+     * @param frame The frame, of 2 * depth * width bytes.
+     * @return A copy of the counts of this snapshot, as returned by captureCounts.
+     */
+    long[] copyTo(byte[] frame)
+    {
+        System.arraycopy(types, 0, frame, 0, types.length);
+        System.arraycopy(colors, 0, frame, types.length, colors.length);
+        return counts.clone();
+    }
+
+    /**
+     * Sets the state of this snapshot to a generation rebuilt from a history (see RewindBuffer).
+     * @param frame The frame of the generation, as filled in by copyTo.
+     * @param counts The counts of the generation, as returned by captureCounts.
+     * @param generation The generation.
+     */
+    void restore(byte[] frame, long[] counts, int generation)
+    {
+        System.arraycopy(frame, 0, this.types, 0, this.types.length);
+        System.arraycopy(frame, this.types.length, this.colors, 0, this.colors.length);
+        System.arraycopy(counts, 0, this.counts, 0, this.counts.length);
+        this.generation = generation;
+    }
+
+    /**
+     * Returns the color of the cell at the given index (row * width + col) as it is shown, i.e., white
+     * if it was dead, for a view comparing the snapshot with the last one it showed (see FieldCanvas).
+     * @param index The index of the position.
+     * @return The CellColor ordinal that the cell is shown in.
+     */
+    int getShownColor(int index)
+    {
+        return Math.max(colors[index], 0);
+    }
+
+    /**
+     * Return the generation that this snapshot was taken in.
+     * @return The generation of the snapshot.
+     */
+    public int getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Return the depth of the grid.
+     * @return The depth of the grid.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Return the width of the grid.
+     * @return The width of the grid.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Returns the type of the cell at the given position when the snapshot was taken.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return The type of the cell, or null if there was no cell at the position.
+     */
+    public CellType getCellType(int row, int col)
+    {
+        int code = types[row * width + col];
+        return (code < 0) ? null : TYPES[code];
+    }
+
+    /**
+     * Returns a boolean indicating whether the cell at the given position was alive when the snapshot was taken.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return true if there was a living cell at the position.
+     */
+    public boolean isAlive(int row, int col)
+    {
+        return colors[row * width + col] >= 0;
+    }
+
+    /**
+     * Returns a boolean indicating whether the cell at the given position was alive and infected when the
+     * snapshot was taken, which is shown by its color (see NonImmuneCell.INFECTED_COLOR).
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return true if there was a living, infected cell at the position.
+     */
+    public boolean isInfected(int row, int col)
+    {
+        return colors[row * width + col] == NonImmuneCell.INFECTED_COLOR.ordinal();
+    }
+
+    /**
+     * Returns the color of the cell at the given position when the snapshot was taken.
+     * @param row The row of the position.
+     * @param col The column of the position.
+     * @return The color of the cell, or white if it was dead.
+     */
+    public CellColor getColor(int row, int col)
+    {
+        int code = colors[row * width + col];
+        return (code < 0) ? CellColor.WHITE : COLORS[code];
+    }
+
+    /**
+     * Returns the number of living cells of the given type when the snapshot was taken.
+     * @param type The type of cell.
+     * @return The number of living cells of the type.
+     */
+    public int getPopulation(CellType type)
+    {
+        return (int) counts[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of cells of the given type born before the snapshot was taken.
+     * @param type The type of cell.
+     * @return The number of births.
+     */
+    public long getBirths(CellType type)
+    {
+        return counts[TYPES.length + type.ordinal()];
+    }
+
+    /**
+     * Returns the number of cells of the given type that died before the snapshot was taken.
+     * @param type The type of cell.
+     * @return The number of deaths.
+     */
+    public long getDeaths(CellType type)
+    {
+        return counts[2 * TYPES.length + type.ordinal()];
+    }
+
+    /**
+     * Returns the number of living, infected cells when the snapshot was taken.
+     * @return The number of living, infected cells.
+     */
+    public int getNumInfected()
+    {
+        return (int) counts[3 * TYPES.length];
+    }
+
+    /**
+     * Returns the hash of the living cells when the snapshot was taken.
+     * @return The hash of the grid.
+     */
+    public long getStateHash()
+    {
+        return counts[3 * TYPES.length + 1];
+    }
+}
@@ -1,5 +1,7 @@
-import javafx.scene.paint.Color; 
 import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.random.RandomGenerator;
 
 /**
  * The HealthCell class is an abstract class that extends Cell and represents cells in a simulation with health. 
@@ -18,13 +20,15 @@ public abstract class HealthCell extends Cell
      *
      * @param row The row index of the field that this cell will be placed in.
      * @param col The column index of the field that this cell will be placed in.
+     * @param type The type of this cell.
      * @param color The color of this cell.
      * @param aliveProbability The probability that this cell will be alive when being created.
      * @param initialHealth The initial health of this cell.
+     * @param rand The simulation's random number generator for cells.
      */
-    public HealthCell(int row, int col, Color color, double aliveProbability, int initialHealth)
+    public HealthCell(int row, int col, CellType type, CellColor color, double aliveProbability, int initialHealth, RandomGenerator rand)
     {
-        super(row, col, color, aliveProbability);
+        super(row, col, type, color, aliveProbability, rand);
         this.health = initialHealth;
     }
 
@@ -52,7 +56,9 @@ public abstract class HealthCell extends Cell
     {   
         if (this.health < healthLimit)
         {
+            boolean wasAlive = isAlive();
             this.health ++;
+            updatePopulation(wasAlive);
         }
     }
 
@@ -62,6 +68,7 @@ public abstract class HealthCell extends Cell
      */
     protected void takeDamage(int damage)
     {   
+        boolean wasAlive = isAlive();
         this.health -= damage;
 
         // Cap health at minimum of 0
@@ -69,6 +76,7 @@ public abstract class HealthCell extends Cell
         {
             this.health = 0;
         }
+        updatePopulation(wasAlive);
     }
 
     /**
@@ -79,4 +87,18 @@ public abstract class HealthCell extends Cell
     {
         return (super.isAlive() == true && this.health > 0);
     }
+
+    @Override
+    protected void writeState(Checkpoint.Output out, ToIntFunction<Cell> indexOf)
+    {
+        super.writeState(out, indexOf);
+        out.putByte(this.health);
+    }
+
+    @Override
+    protected void readState(Checkpoint.Input in, IntFunction<Cell> cellAt)
+    {
+        super.readState(in, cellAt);
+        this.health = in.get();
+    }
 }
@@ -0,0 +1,61 @@
+/**
+ * Keeps the state of an ArrayField in arrays on the Java heap. This is the fastest storage, as long
+ * as the field fits into the heap.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class HeapFieldStorage implements FieldStorage
+{
+    private final byte[][] bytes; // [plane][index]
+    private final short[] age;
+    private final long[][] words; // [plane][word]
+
+    /**
+     * Create zeroed storage for the given number of positions.
+     * @param size The number of positions.
+     * @param numWords The number of longs in each bit-plane.
+     */
+    public HeapFieldStorage(int size, int numWords)
+    {
+        bytes = new byte[NUM_BYTE_PLANES][size];
+        age = new short[size];
+        words = new long[NUM_BIT_PLANES][numWords];
+    }
+
+    @Override
+    public byte getByte(int plane, int index)
+    {
+        return bytes[plane][index];
+    }
+
+    @Override
+    public void setByte(int plane, int index, byte value)
+    {
+        bytes[plane][index] = value;
+    }
+
+    @Override
+    public short getAge(int index)
+    {
+        return age[index];
+    }
+
+    @Override
+    public void setAge(int index, short value)
+    {
+        age[index] = value;
+    }
+
+    @Override
+    public long getWord(int plane, int word)
+    {
+        return words[plane][word];
+    }
+
+    @Override
+    public void setWord(int plane, int word, long value)
+    {
+        words[plane][word] = value;
+    }
+}
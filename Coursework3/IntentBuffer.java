@@ -0,0 +1,98 @@
+/**
+ * A growable list of "intents": effects that a cell has on one of its neighbours during a generation
+ * (reviving, exterminating, infecting or cleansing it). Cells only change their own state while acting,
+ * and the intents are applied to their targets once every cell has acted, so that the result does not
+ * depend on the order in which the cells act.
+ *
+ * Each intent is packed into a single long: the target index in the top 32 bits, then the kind of intent,
+ * then a small value (e.g., the damage of the disease being spread).
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class IntentBuffer
+{
+    public static final int REVIVE = 0; // Set a dead neighbour to be alive in the next generation
+    public static final int EXTERMINATE = 1; // Take away all of a neighbour's health
+    public static final int INFECT = 2; // Infect a neighbour with a disease (value = damage)
+    public static final int CLEANSE = 3; // Cleanse a neighbour from disease
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] intents;
+    private int size;
+
+    /**
+     * Create an empty IntentBuffer.
+     */
+    public IntentBuffer()
+    {
+        this.intents = new long[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Adds an intent to the end of the buffer.
+     * @param kind The kind of intent (REVIVE, EXTERMINATE, INFECT or CLEANSE).
+     * @param target The index of the position that the intent targets.
+     * @param value The value of the intent (0 if the kind of intent has no value).
+     */
+    public void add(int kind, int target, int value)
+    {
+        if (size == intents.length)
+        {
+            long[] larger = new long[intents.length * 2];
+            System.arraycopy(intents, 0, larger, 0, size);
+            intents = larger;
+        }
+        intents[size] = ((long) target << 32) | ((kind & 0xFF) << 16) | (value & 0xFFFF);
+        size ++;
+    }
+
+    /**
+     * Returns the number of intents in the buffer.
+     * @return The number of intents in the buffer.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the kind of the intent at the given position in the buffer.
+     * @param i The position of the intent in the buffer.
+     * @return The kind of the intent.
+     */
+    public int getKind(int i)
+    {
+        return (int) (intents[i] >>> 16) & 0xFF;
+    }
+
+    /**
+     * Returns the index of the position targeted by the intent at the given position in the buffer.
+     * @param i The position of the intent in the buffer.
+     * @return The target of the intent.
+     */
+    public int getTarget(int i)
+    {
+        return (int) (intents[i] >>> 32);
+    }
+
+    /**
+     * Returns the value of the intent at the given position in the buffer.
+     * @param i The position of the intent in the buffer.
+     * @return The value of the intent.
+     */
+    public int getValue(int i)
+    {
+        return (int) intents[i] & 0xFFFF;
+    }
+
+    /**
+     * Empties the buffer, keeping its capacity.
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+}
@@ -0,0 +1,171 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps the state of an ArrayField in a memory-mapped file, outside of the Java heap. The operating
+ * system pages the file in and out as it is used, so the field can be larger than the heap (or even
+ * than the physical memory), and the garbage collector never has to scan it.
+ *
+ * A single MappedByteBuffer can only map 2 GB, so the file is mapped in chunks of 1 GB. The planes
+ * are laid out one after the other, each starting on a multiple of 8 bytes, so no value is ever split
+ * between two chunks.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class MappedFieldStorage implements FieldStorage
+{
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private final Path file;
+    private final long[] byteOffsets; // The offset of each plane of bytes in the file
+    private final long ageOffset;
+    private final long[] wordOffsets; // The offset of each bit-plane in the file
+    private final long length;
+    private final MappedByteBuffer[] chunks;
+
+    /**
+     * Maps the given file, which is zeroed first and grown to the length needed.
+     * @param file The file to map.
+     * @param size The number of positions.
+     * @param numWords The number of longs in each bit-plane.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    private MappedFieldStorage(Path file, int size, int numWords) throws IOException
+    {
+        this.file = file;
+        long offset = 0;
+        byteOffsets = new long[NUM_BYTE_PLANES];
+        for (int plane = 0; plane < NUM_BYTE_PLANES; plane++)
+        {
+            byteOffsets[plane] = offset;
+            offset = align(offset + size);
+        }
+        ageOffset = offset;
+        offset = align(offset + 2L * size);
+        wordOffsets = new long[NUM_BIT_PLANES];
+        for (int plane = 0; plane < NUM_BIT_PLANES; plane++)
+        {
+            wordOffsets[plane] = offset;
+            offset += 8L * numWords;
+        }
+        length = offset;
+
+        chunks = new MappedByteBuffer[(int) ((length + CHUNK_MASK) >>> CHUNK_BITS)];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            for (int i = 0; i < chunks.length; i++)
+            {
+                long start = (long) i << CHUNK_BITS;
+                // Mapping past the end of the file grows it, with zeros.
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(length - start, CHUNK_MASK + 1));
+                chunks[i].order(ByteOrder.nativeOrder());
+            }
+        }
+    }
+
+    /**
+     * Creates zeroed storage in the given file, replacing its contents. The file holds the field as it
+     * is run, but not the rest of the simulation, which is resumed from a checkpoint instead (see Checkpoint).
+     * @param file The file to store the field in.
+     * @param size The number of positions.
+     * @param numWords The number of longs in each bit-plane.
+     * @return The storage.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public static MappedFieldStorage create(Path file, int size, int numWords) throws IOException
+    {
+        return new MappedFieldStorage(file, size, numWords);
+    }
+
+    /**
+     * Creates zeroed storage in a new temporary file, which is deleted when the JVM exits.
+     * @param size The number of positions.
+     * @param numWords The number of longs in each bit-plane.
+     * @return The storage.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public static MappedFieldStorage createTemporary(int size, int numWords) throws IOException
+    {
+        Path file = Files.createTempFile("field", ".bin");
+        file.toFile().deleteOnExit();
+        return create(file, size, numWords);
+    }
+
+    /**
+     * Returns the offset of a value rounded up to a multiple of 8 bytes.
+     */
+    private static long align(long offset)
+    {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Writes any changes to the field back to the file.
+     */
+    public void force()
+    {
+        for (MappedByteBuffer chunk : chunks)
+        {
+            chunk.force();
+        }
+    }
+
+    /**
+     * Returns the file that the field is stored in.
+     * @return The file.
+     */
+    public Path getFile()
+    {
+        return file;
+    }
+
+    @Override
+    public byte getByte(int plane, int index)
+    {
+        long offset = byteOffsets[plane] + index;
+        return chunks[(int) (offset >>> CHUNK_BITS)].get((int) (offset & CHUNK_MASK));
+    }
+
+    @Override
+    public void setByte(int plane, int index, byte value)
+    {
+        long offset = byteOffsets[plane] + index;
+        chunks[(int) (offset >>> CHUNK_BITS)].put((int) (offset & CHUNK_MASK), value);
+    }
+
+    @Override
+    public short getAge(int index)
+    {
+        long offset = ageOffset + 2L * index;
+        return chunks[(int) (offset >>> CHUNK_BITS)].getShort((int) (offset & CHUNK_MASK));
+    }
+
+    @Override
+    public void setAge(int index, short value)
+    {
+        long offset = ageOffset + 2L * index;
+        chunks[(int) (offset >>> CHUNK_BITS)].putShort((int) (offset & CHUNK_MASK), value);
+    }
+
+    @Override
+    public long getWord(int plane, int word)
+    {
+        long offset = wordOffsets[plane] + 8L * word;
+        return chunks[(int) (offset >>> CHUNK_BITS)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    @Override
+    public void setWord(int plane, int word, long value)
+    {
+        long offset = wordOffsets[plane] + 8L * word;
+        chunks[(int) (offset >>> CHUNK_BITS)].putLong((int) (offset & CHUNK_MASK), value);
+    }
+}
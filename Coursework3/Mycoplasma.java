@@ -1,5 +1,5 @@
-import javafx.scene.paint.Color; 
 import java.util.List;
+import java.util.random.RandomGenerator;
 
 /**
  * Simplest form of life.
@@ -13,17 +13,28 @@ import java.util.List;
 
 public class Mycoplasma extends Cell
 {
-    private static final Color COLOR = Color.ORANGE; // Color of all Mycoplasma objects
-    private static final double ALIVE_PROB = 0.995;
+    static final CellColor COLOR = CellColor.ORANGE; // CellColor of all Mycoplasma objects
+    static final double ALIVE_PROB = 0.995;
 
     /**
      * Create a new Mycoplasma.
      *
      * @param row The row index of the field that this cell will be placed in.
      * @param col The column index of the field that this cell will be placed in.
+     * @param rand The simulation's random number generator for cells.
      */
-    public Mycoplasma(int row, int col) {
-        super(row, col, Mycoplasma.COLOR, Mycoplasma.ALIVE_PROB);
+    public Mycoplasma(int row, int col, RandomGenerator rand) {
+        super(row, col, CellType.MYCOPLASMA, Mycoplasma.COLOR, Mycoplasma.ALIVE_PROB, rand);
+    }
+
+    @Override
+    /**
+     * Returns the type of this cell.
+     * @return CellType.MYCOPLASMA
+     */
+    public CellType getType()
+    {
+        return CellType.MYCOPLASMA;
     }
 
     
@@ -52,7 +63,7 @@ public class Mycoplasma extends Cell
     public void act() {
 
         // Find number of living neighbours.
-        int numNeighbours = getLivingNeighbours().size();
+        int numNeighbours = getNumLivingNeighbours();
 
         // Rule set:
 
@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+/**
+ * The neighbourhood counts of a row of an ArrayField: for every position, the number of living
+ * neighbours (in the 3x3 neighbourhood, excluding the position itself), the number of living,
+ * infected neighbours, and the number of living neighbours of each of a few chosen cell types.
+ *
+ * The counts are computed in a bulk pass instead of by visiting the 8 neighbours of every position.
+ * Each row is turned into 0/1 indicator rows (one per count), which are summed over a sliding window
+ * of 3 columns; the counts of a row are then the sum of the windowed rows above, at and below it,
+ * minus the position itself. These steps are done by a CountKernel, many cells at a time if the
+ * Vector API is available.
+ *
+ * Only the counts of one row are kept at a time, with the indicators and windowed sums of the 3 rows
+ * around it, so the memory used grows with the width of the field but not its depth. Computing the
+ * rows in order reuses the windowed sums of the rows before. Each thread needs its own counts.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class NeighbourhoodCounts
+{
+    private static final int LIVING = 0; // The counts of living neighbours
+    private static final int INFECTED = 1; // The counts of living, infected neighbours
+    private static final int FIRST_TYPE = 2; // The counts of living neighbours of the chosen types
+
+    private final int depth, width;
+    private final int[] typePlanes; // The counts of each CellType (by ordinal), or -1 if it is not counted
+    private final int numPlanes;
+    private final CountKernel kernel;
+
+    private final byte[][][] indicators; // [slot][plane][col + 1]: 1 if the cell counts towards the plane (padded, see CountKernel)
+    private final byte[][][] sums; // [slot][plane][col]: the indicators summed over columns col - 1 to col + 1
+    private final int[] slotRows; // The row held in each slot
+    private final byte[][] counts; // [plane][col]: the counts of the row computed last
+
+    /**
+     * Create the counts of the rows of a field of the given dimensions.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param types The cell types to count the living neighbours of, besides the total and the infected ones.
+     */
+    public NeighbourhoodCounts(int depth, int width, CellType... types)
+    {
+        this(depth, width, CountKernel.create(), types);
+    }
+
+    /**
+     * Create the counts of the rows of a field of the given dimensions, computed with the given kernel.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param kernel The kernel to compute the counts with.
+     * @param types The cell types to count the living neighbours of, besides the total and the infected ones.
+     */
+    public NeighbourhoodCounts(int depth, int width, CountKernel kernel, CellType... types)
+    {
+        this.kernel = kernel;
+        this.depth = depth;
+        this.width = width;
+        this.typePlanes = new int[CellType.count()];
+        Arrays.fill(typePlanes, -1);
+        for (int i = 0; i < types.length; i++)
+        {
+            typePlanes[types[i].ordinal()] = FIRST_TYPE + i;
+        }
+        this.numPlanes = FIRST_TYPE + types.length;
+        this.indicators = new byte[3][numPlanes][width + 2];
+        this.sums = new byte[3][numPlanes][width];
+        this.slotRows = new int[3];
+        this.counts = new byte[numPlanes][width];
+        clear();
+    }
+
+    /**
+     * Forgets the rows loaded, e.g., because the field has changed since. Must be called before the
+     * first row of every generation is computed.
+     */
+    public void clear()
+    {
+        Arrays.fill(slotRows, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Computes the counts of a row from the current state of the field, replacing those of the row
+     * computed before.
+     * @param field The field to count the neighbours in.
+     * @param row The row to compute.
+     */
+    public void computeRow(ArrayField field, int row)
+    {
+        int above = load(field, row - 1);
+        int middle = load(field, row);
+        int below = load(field, row + 1);
+        for (int plane = 0; plane < numPlanes; plane++)
+        {
+            kernel.combine(sums[above][plane], sums[middle][plane], sums[below][plane],
+                           indicators[middle][plane], counts[plane], 0, width);
+        }
+    }
+
+    /**
+     * Returns the kernel that computes the counts.
+     * @return The kernel.
+     */
+    public CountKernel getKernel()
+    {
+        return kernel;
+    }
+
+    /**
+     * Returns the number of living neighbours of the position in the given column of the row computed last.
+     * @param col The column of the position.
+     * @return The number of living neighbours.
+     */
+    public int getLiving(int col)
+    {
+        return counts[LIVING][col];
+    }
+
+    /**
+     * Returns the number of living neighbours infected with a disease of the position in the given
+     * column of the row computed last.
+     * @param col The column of the position.
+     * @return The number of living, infected neighbours.
+     */
+    public int getInfected(int col)
+    {
+        return counts[INFECTED][col];
+    }
+
+    /**
+     * Returns the number of living neighbours of the given type of the position in the given column
+     * of the row computed last.
+     * @param type The type of cell, which must be one of the types given to the constructor.
+     * @param col The column of the position.
+     * @return The number of living neighbours of the type.
+     */
+    public int getLiving(CellType type, int col)
+    {
+        int plane = typePlanes[type.ordinal()];
+        if (plane < 0)
+        {
+            throw new IllegalArgumentException(type.getName() + " cells are not counted.");
+        }
+        return counts[plane][col];
+    }
+
+    /**
+     * Loads the indicators and windowed sums of a row into its slot, unless they are already there.
+     * Rows outside the field are all zeros.
+     * @return The slot of the row.
+     */
+    private int load(ArrayField field, int row)
+    {
+        int slot = Math.floorMod(row, 3);
+        if (slotRows[slot] == row)
+        {
+            return slot;
+        }
+        slotRows[slot] = row;
+
+        byte[][] rowIndicators = indicators[slot];
+        if (row < 0 || row >= depth)
+        {
+            for (int plane = 0; plane < numPlanes; plane++)
+            {
+                Arrays.fill(rowIndicators[plane], (byte) 0);
+                Arrays.fill(sums[slot][plane], (byte) 0);
+            }
+            return slot;
+        }
+
+        for (int plane = 0; plane < numPlanes; plane++)
+        {
+            Arrays.fill(rowIndicators[plane], (byte) 0);
+        }
+        int start = row * width;
+        for (int col = 0; col < width; col++)
+        {
+            if (!field.isAlive(row, col))
+            {
+                continue;
+            }
+            rowIndicators[LIVING][col + 1] = 1;
+            int typeCode = field.getTypeCode(start + col);
+            CellType type = CellType.fromCode(typeCode);
+            if (type.isNonImmune() && field.getDisease(start + col) > 0)
+            {
+                rowIndicators[INFECTED][col + 1] = 1;
+            }
+            int plane = typePlanes[typeCode];
+            if (plane >= 0)
+            {
+                rowIndicators[plane][col + 1] = 1;
+            }
+        }
+
+        for (int plane = 0; plane < numPlanes; plane++)
+        {
+            kernel.windowSums(rowIndicators[plane], sums[slot][plane], width);
+        }
+        return slot;
+    }
+}
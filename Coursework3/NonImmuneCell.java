@@ -1,5 +1,7 @@
 import java.util.List;
-import javafx.scene.paint.Color; 
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.random.RandomGenerator;
 
 /**
  * The NonImmuneCell class is an abstract class representing cells in a simulation that have health and can be infected with a disease. 
@@ -11,7 +13,7 @@ import javafx.scene.paint.Color;
 
 public abstract class NonImmuneCell extends HealthCell
 {
-    private static final Color INFECTED_COLOR = Color.YELLOW; // Color for cells in the "diseased" state.
+    static final CellColor INFECTED_COLOR = CellColor.YELLOW; // CellColor for cells in the "diseased" state.
     private Disease disease; // The disease that this cell is infected with. Null if it isn't inflicted with one.
 
     /**
@@ -19,13 +21,15 @@ public abstract class NonImmuneCell extends HealthCell
      *
      * @param row The row index of the field that this cell will be placed in.
      * @param col The column index of the field that this cell will be placed in.
+     * @param type The type of this cell.
      * @param color The color of this cell.
      * @param aliveProbability The probability that this cell will be alive when being created.
      * @param initialHealth The initial health of this cell.
+     * @param rand The simulation's random number generator for cells.
      */
-    public NonImmuneCell(int row, int col, Color color, double aliveProbability, int initialHealth)
+    public NonImmuneCell(int row, int col, CellType type, CellColor color, double aliveProbability, int initialHealth, RandomGenerator rand)
     {
-        super(row, col, color, aliveProbability, initialHealth);
+        super(row, col, type, color, aliveProbability, initialHealth, rand);
         this.disease = null;
     }
 
@@ -80,18 +84,22 @@ public abstract class NonImmuneCell extends HealthCell
      */
     private void becomeInfected()
     {   
-        // Get all of the living neighbours that are a NonImmuneCell and infected with a disease.
-        List<NonImmuneCell> infectedNeighbours = this.getLivingNeighbours()
-                                                    .stream()
-                                                    .filter(cell -> (cell instanceof NonImmuneCell)) // Is a NonImmuneCell
-                                                    .map(cell -> (NonImmuneCell) cell) // Cast to NonImmuneCell
-                                                    .filter(cell -> (cell.isInfected())) // Is infected
-                                                    .toList(); // Convert to List<NonImmuneCell>
-        
         // If any of this cell's neighbours are infected with a disease, the disease should spread to this cell.
-        if (infectedNeighbours.size() > 0)
+        if (getNumInfectedNeighbours() == 0)
         {
-            this.setDisease(infectedNeighbours.get(0).getDisease()); // Just choose the first cell's disease
+            return;
+        }
+
+        // Just choose the first infected living neighbour's disease (only NonImmuneCell cells can be infected).
+        List<Cell> neighbours = getAllNeighbours();
+        for (int i = 0; i < neighbours.size(); i++)
+        {
+            Cell cell = neighbours.get(i);
+            if (cell.isAlive() && cell.isInfected())
+            {
+                this.setDisease(((NonImmuneCell) cell).getDisease());
+                return;
+            }
         }
 
     }
@@ -127,4 +135,19 @@ public abstract class NonImmuneCell extends HealthCell
             this.becomeInfected();
         }
     }
+
+    @Override
+    protected void writeState(Checkpoint.Output out, ToIntFunction<Cell> indexOf)
+    {
+        super.writeState(out, indexOf);
+        out.putByte(isInfected() ? this.disease.getDamage() : 0); // The damage includes any bonus damage
+    }
+
+    @Override
+    protected void readState(Checkpoint.Input in, IntFunction<Cell> cellAt)
+    {
+        super.readState(in, cellAt);
+        int damage = in.get();
+        this.disease = (damage > 0) ? new Disease(damage - Disease.BASE_DMG) : null;
+    }
 }
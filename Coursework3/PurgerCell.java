@@ -1,6 +1,5 @@
 import java.util.List;
-import java.util.Random;
-import javafx.scene.paint.Color; 
+import java.util.random.RandomGenerator;
 
 /**
  * The PurgerCell class represents a cell in a simulation with the ability to eliminate threats, extending from NonImmuneCell.
@@ -11,21 +10,32 @@ import javafx.scene.paint.Color;
 
 public class PurgerCell extends NonImmuneCell
 {
-    private static final Color COLOR = Color.BLACK;
-    private static final int DEATH_THRESHOLD = 5;
-    private static final double ALIVE_PROB = 0.8;
-    private static final int INITIAL_HEALTH = 5;
-    private static final int MAX_HEALTH = 10;
+    static final CellColor COLOR = CellColor.BLACK;
+    static final int DEATH_THRESHOLD = 5; // Default (see Rule)
+    static final double ALIVE_PROB = 0.8;
+    static final int INITIAL_HEALTH = 5;
+    static final int MAX_HEALTH = 10; // Default (see Rule)
     
     /**
      * Create a new PurgerCell.
      *
      * @param row The row index of the field that this cell will be placed in.
      * @param col The column index of the field that this cell will be placed in.
+     * @param rand The simulation's random number generator for cells.
      */
-    public PurgerCell(int row, int col)
+    public PurgerCell(int row, int col, RandomGenerator rand)
     {
-        super(row, col, PurgerCell.COLOR, PurgerCell.ALIVE_PROB, PurgerCell.INITIAL_HEALTH);
+        super(row, col, CellType.PURGER, PurgerCell.COLOR, PurgerCell.ALIVE_PROB, PurgerCell.INITIAL_HEALTH, rand);
+    }
+
+    @Override
+    /**
+     * Returns the type of this cell.
+     * @return CellType.PURGER
+     */
+    public CellType getType()
+    {
+        return CellType.PURGER;
     }  
     
     @Override
@@ -35,7 +45,7 @@ public class PurgerCell extends NonImmuneCell
      */
     protected int getDeathThreshold()
     {  
-        int deathThreshold = PurgerCell.DEATH_THRESHOLD;
+        int deathThreshold = getRules().get(Rule.PURGER_DEATH_THRESHOLD);
         return deathThreshold;
     }
 
@@ -53,19 +63,25 @@ public class PurgerCell extends NonImmuneCell
     private void exterminateThreats()
     {   
         // Kill all threats
-        for (Object cell: getLivingNeighbours())
+        List<Cell> neighbours = getAllNeighbours();
+        for (int i = 0; i < neighbours.size(); i++)
         {   
+            Cell cell = neighbours.get(i);
+            if (!cell.isAlive())
+            {
+                continue;
+            }
             if (cell instanceof DiseaseCell)
             {
                 DiseaseCell threat = (DiseaseCell) cell;
                 threat.takeDamage(threat.getHealth());
-                super.increaseHealth(PurgerCell.MAX_HEALTH); // Increase resistance to Disease (in the form of additional health).
+                super.increaseHealth(getRules().get(Rule.PURGER_MAX_HEALTH)); // Increase resistance to Disease (in the form of additional health).
             }
             else if (cell instanceof ChaosCell)
             {
                 ChaosCell threat = (ChaosCell) cell;
                 threat.takeDamage(threat.getHealth());
-                super.increaseHealth(PurgerCell.MAX_HEALTH); // Reward for killing ChaosCell cells (for maintaining stability in the environment).
+                super.increaseHealth(getRules().get(Rule.PURGER_MAX_HEALTH)); // Reward for killing ChaosCell cells (for maintaining stability in the environment).
 
             }
         }
@@ -77,7 +93,7 @@ public class PurgerCell extends NonImmuneCell
      */
     protected void performAliveBehaviour()
     {
-        int numNeighbours = getLivingNeighbours().size();
+        int numNeighbours = getNumLivingNeighbours();
 
         // Assign next state, dies if exceeding the death threshold.
         super.assignNextState(numNeighbours, this.getDeathThreshold()); 
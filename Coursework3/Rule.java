@@ -0,0 +1,80 @@
+/**
+ * Enumerates the rule constants of the cell types that can be changed for each simulation (see
+ * RuleSet). The default value of each rule is the constant of the cell type it is read from.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public enum Rule
+{
+    DISEASE_DEATH_THRESHOLD(DiseaseCell.DEATH_THRESHOLD, 0, 9),
+    DISEASE_MAXIMUM_AGE(DiseaseCell.MAXIMUM_AGE, 0, Short.MAX_VALUE - 1), // Ages are stored as shorts by ArrayField
+    DISEASE_MAXIMUM_NUM_CELLS(DiseaseCell.MAXIMUM_NUM_CELLS, 0, Integer.MAX_VALUE),
+    PURGER_DEATH_THRESHOLD(PurgerCell.DEATH_THRESHOLD, 0, 9),
+    PURGER_MAX_HEALTH(PurgerCell.MAX_HEALTH, 1, Byte.MAX_VALUE), // Health is stored as a byte by ArrayField
+    CHAOS_DEATH_THRESHOLD(ChaosCell.DEATH_THRESHOLD, 0, 9),
+    CLEANSING_DEATH_THRESHOLD(CleansingCell.DEATH_THRESHOLD, 0, 9),
+    CHAMELEON_DEATH_THRESHOLD(ChameleonCell.DEATH_THRESHOLD, 0, 9),
+    CHAMELEON_REVIVAL_NEIGHBOURS(ChameleonCell.NUM_REVIVAL_CELLS_REQUIRED, 0, 9),
+    EVOLVING_MATURE_AGE(EvolvingCell.MATURE_AGE, 0, Short.MAX_VALUE),
+    EVOLVING_ELDERLY_AGE(EvolvingCell.ELDERLY_AGE, 0, Short.MAX_VALUE),
+    EVOLVING_YOUNG_DEATH_THRESHOLD(EvolvingCell.DEATH_THRESHOLDS[0], 0, 9),
+    EVOLVING_MATURE_DEATH_THRESHOLD(EvolvingCell.DEATH_THRESHOLDS[1], 0, 9),
+    EVOLVING_ELDERLY_DEATH_THRESHOLD(EvolvingCell.DEATH_THRESHOLDS[2], 0, 9);
+
+    private static final Rule[] VALUES = values(); // Cached, as values() copies the array on every call
+
+    private final int defaultValue;
+    private final int minValue, maxValue;
+
+    /**
+     * Create a rule.
+     * @param defaultValue The value of the rule unless it is changed.
+     * @param minValue The smallest value the rule can have.
+     * @param maxValue The largest value the rule can have.
+     */
+    private Rule(int defaultValue, int minValue, int maxValue)
+    {
+        this.defaultValue = defaultValue;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+    }
+
+    /**
+     * Returns the number of rules.
+     * @return The number of rules.
+     */
+    public static int count()
+    {
+        return VALUES.length;
+    }
+
+    /**
+     * Returns the rule with the given code (ordinal).
+     * @param code The code of the rule.
+     * @return The rule with the given code.
+     */
+    public static Rule fromCode(int code)
+    {
+        return VALUES[code];
+    }
+
+    /**
+     * Returns the value of this rule unless it is changed.
+     * @return The default value.
+     */
+    public int getDefaultValue()
+    {
+        return defaultValue;
+    }
+
+    /**
+     * Returns a boolean indicating whether this rule can have the given value.
+     * @param value The value.
+     * @return true if the value is within the range of the rule.
+     */
+    public boolean isValid(int value)
+    {
+        return minValue <= value && value <= maxValue;
+    }
+}
@@ -0,0 +1,157 @@
+import java.util.Arrays;
+
+/**
+ * The values of the rules (see Rule) that one simulation is run with, so that simulations with
+ * different rules can run side by side in the same JVM (see EnsembleRunner). Every simulation takes
+ * its own copy of the rules it is given, so changing a RuleSet does not affect a running simulation.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class RuleSet
+{
+    private final int[] values; // Indexed by Rule ordinal
+
+    /**
+     * Create a set of rules with the default value of every rule.
+     */
+    public RuleSet()
+    {
+        this.values = new int[Rule.count()];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = Rule.fromCode(i).getDefaultValue();
+        }
+    }
+
+    /**
+     * Create a copy of a set of rules.
+     * @param other The rules to copy.
+     */
+    public RuleSet(RuleSet other)
+    {
+        this.values = other.values.clone();
+    }
+
+    /**
+     * Returns the value of a rule.
+     * @param rule The rule.
+     * @return The value of the rule.
+     */
+    public int get(Rule rule)
+    {
+        return values[rule.ordinal()];
+    }
+
+    /**
+     * Sets the value of a rule.
+     * @param rule The rule.
+     * @param value The new value of the rule.
+     * @return This set of rules, so that calls can be chained.
+     */
+    public RuleSet set(Rule rule, int value)
+    {
+        if (!rule.isValid(value))
+        {
+            throw new IllegalArgumentException("Invalid value for " + rule + ": " + value);
+        }
+        values[rule.ordinal()] = value;
+        return this;
+    }
+
+    /**
+     * Returns the maturity level of an EvolvingCell that has lived for the given number of generations.
+     * @param generationsLived The number of generations the cell has lived.
+     * @return 0 for a young cell, 1 for a mature cell, and 2 for an elderly cell.
+     */
+    public int getMaturityLevel(int generationsLived)
+    {
+        if (generationsLived < get(Rule.EVOLVING_MATURE_AGE))
+        {
+            return 0;
+        }
+        return (generationsLived < get(Rule.EVOLVING_ELDERLY_AGE)) ? 1 : 2;
+    }
+
+    /**
+     * Returns the death threshold of an EvolvingCell of the given maturity level (before any disease).
+     * @param maturityLevel The maturity level of the cell (see getMaturityLevel).
+     * @return The death threshold.
+     */
+    public int getEvolvingDeathThreshold(int maturityLevel)
+    {
+        switch (maturityLevel)
+        {
+            case 0:
+                return get(Rule.EVOLVING_YOUNG_DEATH_THRESHOLD);
+            case 1:
+                return get(Rule.EVOLVING_MATURE_DEATH_THRESHOLD);
+            default:
+                return get(Rule.EVOLVING_ELDERLY_DEATH_THRESHOLD);
+        }
+    }
+
+    /**
+     * Writes the value of every rule to a checkpoint (see Checkpoint).
+     * @param out The checkpoint being written.
+     */
+    public void writeState(Checkpoint.Output out)
+    {
+        out.putInt(values.length);
+        for (int value : values)
+        {
+            out.putInt(value);
+        }
+    }
+
+    /**
+     * Reads a set of rules from a checkpoint, as written by writeState.
+     * @param in The checkpoint being read.
+     * @return The rules.
+     */
+    public static RuleSet readState(Checkpoint.Input in)
+    {
+        int numRules = in.getInt();
+        if (numRules != Rule.count())
+        {
+            throw new IllegalArgumentException("Checkpoint has " + numRules + " rules, expected " + Rule.count());
+        }
+        RuleSet rules = new RuleSet();
+        for (int i = 0; i < numRules; i++)
+        {
+            rules.set(Rule.fromCode(i), in.getInt());
+        }
+        return rules;
+    }
+
+    /**
+     * Returns the rules that differ from their default values, e.g., "CHAOS_DEATH_THRESHOLD=4".
+     * @return The changed rules, separated by spaces, or "defaults" if none have been changed.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < values.length; i++)
+        {
+            Rule rule = Rule.fromCode(i);
+            if (values[i] != rule.getDefaultValue())
+            {
+                builder.append(builder.length() > 0 ? " " : "").append(rule).append('=').append(values[i]);
+            }
+        }
+        return (builder.length() > 0) ? builder.toString() : "defaults";
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        return (other instanceof RuleSet) && Arrays.equals(values, ((RuleSet) other).values);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(values);
+    }
+}
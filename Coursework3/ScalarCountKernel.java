@@ -0,0 +1,36 @@
+/**
+ * The CountKernel operations one cell at a time, which works on every JVM.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class ScalarCountKernel implements CountKernel
+{
+    @Override
+    public void windowSums(byte[] indicators, byte[] sums, int width)
+    {
+        // A running sum: add the column entering the window, and subtract the one leaving it.
+        int sum = indicators[0] + indicators[1];
+        for (int col = 0; col < width; col++)
+        {
+            sum += indicators[col + 2];
+            sums[col] = (byte) sum;
+            sum -= indicators[col];
+        }
+    }
+
+    @Override
+    public void combine(byte[] above, byte[] middle, byte[] below, byte[] self, byte[] counts, int start, int width)
+    {
+        for (int col = 0; col < width; col++)
+        {
+            counts[start + col] = (byte) (above[col] + middle[col] + below[col] - self[col + 1]);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "scalar";
+    }
+}
@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A script of edits (see FieldEdit) to make to a simulation when it reaches given generations, e.g.,
+ * to drop a colony of ChaosCell cells into the middle of the field at generation 100, or to start an
+ * epidemic. The scenario submits the edits of each generation to an EditQueue, in the same way as
+ * the mouse painting of the view, and they are applied before the next generation is simulated.
+ *
+ * A scenario file has one event per line:
+ *   generation place TYPE row col [depth width]
+ *   generation infect row col [depth width]
+ *   generation clear row col [depth width]
+ * where TYPE is the name of a CellType, and the rectangle edited is 1x1 unless its size is given.
+ * Blank lines, and lines starting with #, are ignored.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class Scenario
+{
+    private final List<Event> events; // In the order of their generations
+    private int next; // The first event that has not been submitted yet
+
+    /**
+     * Create an empty scenario.
+     */
+    public Scenario()
+    {
+        this.events = new ArrayList<>();
+    }
+
+    /**
+     * Reads a scenario from a file.
+     * @param file The scenario file.
+     * @return The scenario.
+     * @throws IOException If the file could not be read, or is not a valid scenario.
+     */
+    public static Scenario load(Path file) throws IOException
+    {
+        Scenario scenario = new Scenario();
+        List<String> lines = Files.readAllLines(file);
+        for (int i = 0; i < lines.size(); i++)
+        {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#"))
+            {
+                continue;
+            }
+            try
+            {
+                scenario.add(parseEvent(line.split("\\s+")));
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IOException(file + ":" + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        return scenario;
+    }
+
+    /**
+     * Parses the fields of one line of a scenario file.
+     */
+    private static Event parseEvent(String[] fields)
+    {
+        if (fields.length < 2)
+        {
+            throw new IllegalArgumentException("Expected a generation and an edit");
+        }
+        int generation = Integer.parseInt(fields[0]);
+        FieldEdit.Kind kind = FieldEdit.Kind.valueOf(fields[1].toUpperCase());
+        int next = 2;
+        CellType type = null;
+        if (kind == FieldEdit.Kind.PLACE)
+        {
+            if (fields.length < 3)
+            {
+                throw new IllegalArgumentException("Expected the type of the cells to place");
+            }
+            type = CellType.valueOf(fields[next++].toUpperCase());
+        }
+        if (fields.length != next + 2 && fields.length != next + 4)
+        {
+            throw new IllegalArgumentException("Expected row col [depth width]");
+        }
+        int row = Integer.parseInt(fields[next]);
+        int col = Integer.parseInt(fields[next + 1]);
+        int depth = (fields.length > next + 2) ? Integer.parseInt(fields[next + 2]) : 1;
+        int width = (fields.length > next + 2) ? Integer.parseInt(fields[next + 3]) : 1;
+        return new Event(generation, new FieldEdit(kind, type, row, col, depth, width));
+    }
+
+    /**
+     * Adds an event to the scenario.
+     * @param generation The generation after which the edit is made (0 to make it before the first generation).
+     * @param edit The edit.
+     */
+    public void add(int generation, FieldEdit edit)
+    {
+        add(new Event(generation, edit));
+    }
+
+    /**
+     * Adds an event, keeping the events in the order of their generations (and of when they were added).
+     */
+    private void add(Event event)
+    {
+        // Insert it after every event of the same or an earlier generation. Events are usually added in
+        // order (e.g., from a file), in which case that is the end of the list and nothing has to move.
+        int low = 0;
+        int high = events.size();
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (events.get(middle).generation <= event.generation)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        events.add(low, event);
+        if (low < next)
+        {
+            next ++; // Among the events already submitted, so it is not submitted either
+        }
+    }
+
+    /**
+     * Submits the edits of every event up to the given generation that have not been submitted yet.
+     * @param generation The generation that the simulation has reached.
+     * @param queue The queue to submit the edits to.
+     * @return The number of edits submitted.
+     */
+    public int submitDue(int generation, EditQueue queue)
+    {
+        int numSubmitted = 0;
+        while (next < events.size() && events.get(next).generation <= generation)
+        {
+            queue.submit(events.get(next).edit);
+            next ++;
+            numSubmitted ++;
+        }
+        return numSubmitted;
+    }
+
+    /**
+     * Skips the events before the given generation without submitting them, e.g., when a simulation is
+     * resumed from a checkpoint written after they were made.
+     * @param generation The generation that the simulation has reached.
+     */
+    public void skipBefore(int generation)
+    {
+        while (next < events.size() && events.get(next).generation < generation)
+        {
+            next ++;
+        }
+    }
+
+    /**
+     * Goes back to the start of the scenario, so that every event is submitted again, e.g., when the
+     * simulation is reset to its first generation.
+     */
+    public void rewind()
+    {
+        next = 0;
+    }
+
+    /**
+     * Returns the number of events of the scenario.
+     * @return The number of events.
+     */
+    public int size()
+    {
+        return events.size();
+    }
+
+    /**
+     * An edit to make after a given generation.
+     */
+    private static class Event
+    {
+        private final int generation;
+        private final FieldEdit edit;
+
+        private Event(int generation, FieldEdit edit)
+        {
+            this.generation = generation;
+            this.edit = edit;
+        }
+    }
+}
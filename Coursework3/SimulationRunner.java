@@ -0,0 +1,305 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a simulation on its own thread, either as fast as possible or at a target number of
+ * generations per second, publishing a snapshot of every generation to a SnapshotBuffer.
+ * The simulation is only touched by the runner's thread while it is running, so a view can
+ * display the snapshots on its own thread without ever reading the simulation itself.
+ *
+ * Other threads change the simulation by submitting edits (see FieldEdit), which the runner's thread
+ * applies between generations (see EditQueue), without either of them taking a lock. While the
+ * runner is not running, edits are applied straight away by the thread that submits them instead.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class SimulationRunner
+{
+    private final Simulator simulator;
+    private final SnapshotBuffer buffer;
+    private Thread thread;
+    private volatile boolean running;
+    private CheckpointWriter checkpointWriter; // Null if no checkpoints are written
+    private RewindBuffer rewindBuffer; // Null if no history is kept
+    private StatsWriter statsWriter; // Null if no statistics are written
+    private ClusterAnalyzer clusterAnalyzer; // Null if no clusters are analysed
+    private final EditQueue edits;
+    private Scenario scenario; // Null if no edits are scripted
+
+    /**
+     * Create a runner for the given simulation.
+     * @param simulator The simulation to run.
+     */
+    public SimulationRunner(Simulator simulator)
+    {
+        this.simulator = simulator;
+        CellGrid grid = simulator.getGrid();
+        this.buffer = new SnapshotBuffer(grid.getDepth(), grid.getWidth());
+        this.edits = new EditQueue();
+    }
+
+    /**
+     * Return the buffer that the snapshots of the simulation are published to.
+     * @return The buffer of snapshots.
+     */
+    public SnapshotBuffer getBuffer()
+    {
+        return buffer;
+    }
+
+    /**
+     * Sets the writer of checkpoints of the simulation, which is given every generation simulated.
+     * Must not be called while the runner is running.
+     * @param checkpointWriter The checkpoint writer, or null to stop writing checkpoints.
+     */
+    public void setCheckpointWriter(CheckpointWriter checkpointWriter)
+    {
+        this.checkpointWriter = checkpointWriter;
+    }
+
+    /**
+     * Sets the history that every generation published is recorded in. Must not be called while the runner is running.
+     * @param rewindBuffer The history, or null to stop keeping one.
+     */
+    public void setRewindBuffer(RewindBuffer rewindBuffer)
+    {
+        this.rewindBuffer = rewindBuffer;
+    }
+
+    /**
+     * Sets the writer of the statistics of every generation published. Must not be called while the runner is running.
+     * @param statsWriter The statistics writer, or null to stop writing statistics.
+     */
+    public void setStatsWriter(StatsWriter statsWriter)
+    {
+        this.statsWriter = statsWriter;
+    }
+
+    /**
+     * Sets the analyzer of the clusters of the generations published, whose results are added to the
+     * statistics. Must not be called while the runner is running.
+     * @param clusterAnalyzer The cluster analyzer, or null to stop analysing clusters.
+     */
+    public void setClusterAnalyzer(ClusterAnalyzer clusterAnalyzer)
+    {
+        this.clusterAnalyzer = clusterAnalyzer;
+    }
+
+    /**
+     * Sets the scenario whose edits are made as the simulation reaches their generations. Events before
+     * the current generation are skipped. Must not be called while the runner is running.
+     * @param scenario The scenario, or null to stop making scripted edits.
+     */
+    public void setScenario(Scenario scenario)
+    {
+        this.scenario = scenario;
+        if (scenario != null)
+        {
+            scenario.skipBefore(simulator.getGeneration());
+        }
+    }
+
+    /**
+     * Submits an edit to the simulation, which is made before the next generation is simulated, or
+     * straight away if the runner is not running (and a snapshot of it published). May be called from any thread.
+     * @param edit The edit.
+     */
+    public void submit(FieldEdit edit)
+    {
+        edits.submit(edit);
+        if (!running)
+        {
+            applyEditsWhileStopped();
+        }
+    }
+
+    /**
+     * Applies the edits submitted while the runner's thread is not running, and publishes a snapshot of
+     * them. The history and statistics are not given the edited generation, as its number has not changed.
+     */
+    private synchronized void applyEditsWhileStopped()
+    {
+        if (running)
+        {
+            return; // Started again, so the runner's thread applies them
+        }
+        if (thread != null)
+        {
+            try
+            {
+                thread.join(); // It has run its last generation, and is applying the edits submitted before it stopped
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            thread = null;
+        }
+        applyEdits();
+    }
+
+    /**
+     * Applies the edits submitted so far, and publishes a snapshot of them if there were any.
+     */
+    private void applyEdits()
+    {
+        if (edits.applyTo(simulator) > 0)
+        {
+            buffer.publish(simulator.getGrid(), simulator.getGeneration());
+        }
+    }
+
+    /**
+     * Stops running the simulation and resets it to a starting position, rewinding the scenario (if
+     * any), and publishes the new first generation. Holds the runner's lock throughout, so edits
+     * submitted by another thread (e.g., mouse painting) are applied either before the reset or after it.
+     */
+    public synchronized void reset()
+    {
+        stop();
+        simulator.reset();
+        if (scenario != null)
+        {
+            scenario.rewind();
+        }
+        publishGeneration();
+    }
+
+    /**
+     * Publishes a snapshot of the current generation, and records it in the history and the
+     * statistics (if they are kept), with the clusters of the last generation analysed (if any).
+     * Must not be called while the runner is running. Holds the runner's lock, like the edits applied
+     * while it is not running.
+     */
+    public synchronized void publish()
+    {
+        publishGeneration();
+    }
+
+    /**
+     * Publishes a snapshot of the current generation (see publish). Called by the runner's thread after
+     * every generation, without the lock, which stop holds while waiting for that thread.
+     */
+    private void publishGeneration()
+    {
+        GridSnapshot snapshot = buffer.publish(simulator.getGrid(), simulator.getGeneration());
+        if (rewindBuffer != null)
+        {
+            rewindBuffer.record(snapshot);
+        }
+        ClusterStats clusters = null;
+        if (clusterAnalyzer != null)
+        {
+            clusters = clusterAnalyzer.takeResult(false);
+            clusterAnalyzer.afterGeneration(simulator.getGrid(), simulator.getGeneration());
+        }
+        if (statsWriter != null)
+        {
+            statsWriter.afterGeneration(simulator, clusters);
+        }
+    }
+
+    /**
+     * Starts running the simulation on a new thread.
+     * @param numGenerations The number of generations to run for (0 to run until stopped).
+     * @param generationsPerSecond The target number of generations per second (0 to run as fast as possible).
+     */
+    public synchronized void start(int numGenerations, double generationsPerSecond)
+    {
+        stop();
+        running = true;
+        thread = new Thread(() -> run(numGenerations, generationsPerSecond), "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops running the simulation, waiting for the generation being simulated to finish. The runner's
+     * thread is not interrupted, as that would also abort a checkpoint being captured (whose file
+     * channel is closed by an interrupt), and the generation would never be published.
+     */
+    public synchronized void stop()
+    {
+        running = false;
+        if (thread == null)
+        {
+            return;
+        }
+        LockSupport.unpark(thread); // Wake it up if it is waiting for its next generation
+        try
+        {
+            thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * Returns a boolean indicating whether the simulation is being run.
+     * @return true if the runner's thread is still running generations.
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Waits until the given time (of System.nanoTime), or until the runner is stopped.
+     */
+    private void awaitTime(long time)
+    {
+        long waitNanos = time - System.nanoTime();
+        while (running && waitNanos > 0)
+        {
+            LockSupport.parkNanos(this, waitNanos); // May return early, e.g., when stop unparks this thread
+            waitNanos = time - System.nanoTime();
+        }
+    }
+
+    /**
+     * Runs the generations, publishing a snapshot of each one. A generation that is late
+     * (e.g., because one took too long) starts straight away, until the runner has caught up.
+     */
+    private void run(int numGenerations, double generationsPerSecond)
+    {
+        long nanosPerGeneration = (generationsPerSecond > 0) ? (long) (1e9 / generationsPerSecond) : 0;
+        long nextGenerationTime = System.nanoTime();
+        for (int gen = 1; running && (numGenerations == 0 || gen <= numGenerations); gen++)
+        {
+            if (nanosPerGeneration > 0)
+            {
+                nextGenerationTime += nanosPerGeneration;
+                awaitTime(nextGenerationTime);
+                if (!running)
+                {
+                    break;
+                }
+            }
+            if (scenario != null)
+            {
+                scenario.submitDue(simulator.getGeneration(), edits);
+            }
+            edits.applyTo(simulator);
+            simulator.simOneGeneration();
+            if (checkpointWriter != null)
+            {
+                try
+                {
+                    checkpointWriter.afterGeneration(simulator);
+                }
+                catch (RuntimeException e)
+                {
+                    // The simulation carries on without it, and the next checkpoint is tried as usual.
+                    System.err.println("Checkpoint of generation " + simulator.getGeneration() + " failed: " + e);
+                }
+            }
+            publishGeneration();
+        }
+        running = false;
+        applyEdits(); // Any submitted since the last generation, which would otherwise wait until the runner is started again
+    }
+}
@@ -1,10 +1,12 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
-import javafx.scene.paint.Color; 
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * A Life (Game of Life) simulator, first described by British mathematician
@@ -18,11 +20,24 @@ public class Simulator {
 
     public static final int GRID_WIDTH = 50; //100;
     public static final int GRID_HEIGHT = 40; //80; 
+    // The ids of the independent random streams derived from the seed (see SplitMixRandom).
+    private static final long NEIGHBOUR_STREAM = 0;
+    private static final long POPULATE_STREAM = 1;
+    private static final long CELL_STREAM = 2;
+    private EngineMode mode;
+    private RuleSet rules; // This simulation's own copy of the rules it was created with
     private List<Cell> cells;
     private Field field;
+    private ArrayField arrayField;
+    private ArrayEngine arrayEngine;
     private int generation;
     private CellCreator cellCreator;
-    private Random rand;
+    private SplitMixRandom neighbourRand;
+    private SplitMixRandom cellRand;
+    private SplitMixRandom populateRand;
+    private long seed;
+    private Checkpoint.Output hashOutput; // Created when getCellStateHash is first called
+    private Checkpoint.HashChannel hashChannel;
 
     /**
      * Construct a simulation field with default size.
@@ -37,11 +52,117 @@ public class Simulator {
      * @param width Width of the field. Must be greater than zero.
      */
     public Simulator(int depth, int width) {
-        cells = new ArrayList<>();
-        rand = new Random();
-        field = new Field(rand, depth, width);
-        cellCreator = new CellCreator(rand);
-        reset();
+        this(depth, width, EngineMode.OBJECT);
+    }
+
+    /**
+     * Create a simulation field with the given size, run by the given engine.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param mode How the field is stored and run.
+     */
+    public Simulator(int depth, int width, EngineMode mode) {
+        this(depth, width, mode, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a simulation field with the given size, run by the given engine.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param mode How the field is stored and run.
+     * @param numThreads The number of threads to run each generation on with EngineMode.PARALLEL or EngineMode.MAPPED.
+     */
+    public Simulator(int depth, int width, EngineMode mode, int numThreads) {
+        this(depth, width, mode, numThreads, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Create a simulation field with the given size, run by the given engine, with every random
+     * decision derived from the given seed. The same seed always gives the same simulation.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param mode How the field is stored and run.
+     * @param numThreads The number of threads to run each generation on with EngineMode.PARALLEL or EngineMode.MAPPED.
+     * @param seed The seed of the simulation.
+     */
+    public Simulator(int depth, int width, EngineMode mode, int numThreads, long seed) {
+        this(depth, width, mode, numThreads, seed, new RuleSet());
+    }
+
+    /**
+     * Create a simulation field with the given size, run by the given engine, with the given rules and
+     * every random decision derived from the given seed. Simulations do not share any state, so any
+     * number of them (with different rules) can be run at the same time.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param mode How the field is stored and run.
+     * @param numThreads The number of threads to run each generation on with EngineMode.PARALLEL or EngineMode.MAPPED.
+     * @param seed The seed of the simulation.
+     * @param rules The rules of the simulation, which are copied.
+     */
+    public Simulator(int depth, int width, EngineMode mode, int numThreads, long seed, RuleSet rules) {
+        this(depth, width, mode, numThreads, seed, new RuleSet(rules), null, true);
+    }
+
+    /**
+     * Create a simulation field with the given size, run by EngineMode.MAPPED with the field kept in
+     * the given file, with the given rules and every random decision derived from the given seed.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param mappedFile The file to keep the field in, whose contents are replaced.
+     * @param numThreads The number of threads to run each generation on.
+     * @param seed The seed of the simulation.
+     * @param rules The rules of the simulation, which are copied.
+     */
+    public Simulator(int depth, int width, Path mappedFile, int numThreads, long seed, RuleSet rules) {
+        this(depth, width, EngineMode.MAPPED, numThreads, seed, new RuleSet(rules), mappedFile, true);
+    }
+
+    /**
+     * Create a simulation field with the given size, run by the given engine, with every random
+     * decision derived from the given seed.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param mode How the field is stored and run.
+     * @param numThreads The number of threads to run each generation on with EngineMode.PARALLEL or EngineMode.MAPPED.
+     * @param seed The seed of the simulation.
+     * @param rules The rules of the simulation, owned by this simulation.
+     * @param mappedFile The file to keep the field in with EngineMode.MAPPED, or null for a temporary file.
+     * @param populate Whether to populate the field (false when its state is read from a checkpoint instead).
+     */
+    private Simulator(int depth, int width, EngineMode mode, int numThreads, long seed, RuleSet rules, Path mappedFile,
+                      boolean populate) {
+        this.mode = mode;
+        this.seed = seed;
+        this.rules = rules;
+        if (mode == EngineMode.MAPPED) {
+            int size = ArrayField.getSize(depth, width);
+            int numWords = ArrayField.getNumWords(depth, width);
+            try {
+                arrayField = new ArrayField(depth, width, (mappedFile == null) ? MappedFieldStorage.createTemporary(size, numWords)
+                                                          : MappedFieldStorage.create(mappedFile, size, numWords), rules);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Could not map " + ((mappedFile == null) ? "a file" : mappedFile) + " for the field", e);
+            }
+            arrayEngine = new ArrayEngine(arrayField, seed, numThreads);
+        }
+        else if (mode == EngineMode.ARRAY || mode == EngineMode.PARALLEL) {
+            arrayField = new ArrayField(depth, width, new HeapFieldStorage(ArrayField.getSize(depth, width),
+                                                                           ArrayField.getNumWords(depth, width)), rules);
+            arrayEngine = new ArrayEngine(arrayField, seed, (mode == EngineMode.PARALLEL) ? numThreads : 1);
+        }
+        else {
+            cells = new ArrayList<>();
+            neighbourRand = SplitMixRandom.forStream(seed, NEIGHBOUR_STREAM);
+            cellRand = SplitMixRandom.forStream(seed, CELL_STREAM);
+            populateRand = SplitMixRandom.forStream(seed, POPULATE_STREAM);
+            field = new Field(neighbourRand, depth, width, rules);
+            cellCreator = new CellCreator(cellRand, CellRegistry.createDefault(), rules);
+        }
+        if (populate) {
+            reset();
+        }
     }
 
     /**
@@ -50,7 +171,12 @@ public class Simulator {
      */
     public void simOneGeneration() {
         generation++;
+        if (arrayEngine != null) {
+            arrayEngine.step();
+            return;
+        }
         for (Cell cell : cells) {
+          cell.countNeighbours();
           cell.act();
           cell.updateState();
         }
@@ -62,6 +188,10 @@ public class Simulator {
      */
     public void reset() {
         generation = 0;
+        if (arrayEngine != null) {
+            arrayEngine.populate();
+            return;
+        }
         cells.clear();
         cellCreator.reset();
         populate();
@@ -72,28 +202,232 @@ public class Simulator {
      */
     private void populate() {
       field.clear();
-    
-      int idx = 0;
-      Location[] locations = new Location[field.getDepth() * field.getWidth()];
-      for (int row = 0; row < field.getDepth(); row++) {
-        for (int col = 0; col < field.getWidth(); col++) {
-          locations[idx] = new Location(row, col);
-          idx ++;
-        }
+      int size = field.getDepth() * field.getWidth();
+
+      // Shuffle the positions (Fisher-Yates), so that the DiseaseCell cells are placed at random.
+      int[] order = new int[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = i;
+      }
+      for (int i = size - 1; i > 0; i--) {
+        int j = populateRand.nextInt(i + 1);
+        int temp = order[i];
+        order[i] = order[j];
+        order[j] = temp;
       }
 
-      Collections.shuffle(Arrays.asList(locations));
-      for (Location loc: locations)
+      // The cells act in the shuffled order, so the DiseaseCell cells act first.
+      Cell[] created = cellCreator.createCells(field.getDepth(), field.getWidth(), order);
+      for (int index : order)
       {
-        int row = loc.getRow();
-        int col = loc.getCol();
-        Cell cell = cellCreator.generateRandomCell(row, col); // Generate a cell of a random type
+        Cell cell = created[index];
         cells.add(cell);
-        field.place(cell, row, col); // Place cell onto the field
+        field.place(cell, index / field.getWidth(), index % field.getWidth()); // Place cell onto the field
       }
       field.updateCellNeighbours(); // Update cell neighbours
     }
 
+    /**
+     * Makes changes to the field from outside of the simulation (see FieldEdit), in the given order.
+     * Must be called between generations, by the thread running the simulation (see EditQueue).
+     * A cell placed by an edit takes the place of the old cell in the order that the cells act.
+     * @param edits The edits to make.
+     */
+    public void applyEdits(List<FieldEdit> edits) {
+        if (arrayEngine != null) {
+            for (FieldEdit edit : edits) {
+                arrayEngine.applyEdit(edit);
+            }
+            return;
+        }
+
+        // The cells replaced by new ones, and their positions, so the new cells act in their place.
+        Map<Cell, Integer> replaced = new IdentityHashMap<>();
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        for (FieldEdit edit : edits) {
+            for (int row = edit.getFromRow(depth); row < edit.getToRow(depth); row++) {
+                for (int col = edit.getFromCol(width); col < edit.getToCol(width); col++) {
+                    Cell cell = field.getObjectAt(row, col);
+                    switch (edit.getKind()) {
+                        case PLACE:
+                            replaced.putIfAbsent(cell, row * width + col);
+                            // The new cell shares the random number generator of the chunk of rows it is in.
+                            Cell created = cellCreator.getRegistry().create(edit.getType(), row, col, cell.getRandom());
+                            created.setNextState(true);
+                            created.updateState(); // Alive whatever it drew, before it is counted by the field
+                            field.place(created, row, col);
+                            break;
+                        case INFECT:
+                            if (cell.isAlive() && cell instanceof NonImmuneCell && !cell.isInfected()) {
+                                ((NonImmuneCell) cell).setDisease(new Disease(0));
+                                cell.setColor(NonImmuneCell.INFECTED_COLOR);
+                            }
+                            break;
+                        default:
+                            if (cell instanceof NonImmuneCell) {
+                                ((NonImmuneCell) cell).setDisease(null);
+                            }
+                            if (cell.isAlive()) {
+                                cell.setDead();
+                            }
+                            cell.setDeadColor();
+                            break;
+                    }
+                }
+            }
+        }
+
+        if (!replaced.isEmpty()) {
+            for (int i = 0; i < cells.size(); i++) {
+                Integer index = replaced.get(cells.get(i));
+                if (index != null) {
+                    cells.set(i, field.getObjectAt(index / width, index % width));
+                }
+            }
+            // A replaced cell may have been infected by a neighbouring DiseaseCell, which must forget it.
+            for (Map.Entry<Cell, Integer> entry : replaced.entrySet()) {
+                int index = entry.getValue();
+                for (Cell neighbour : field.getAllNeighbours(new Location(index / width, index % width))) {
+                    if (neighbour instanceof DiseaseCell) {
+                        ((DiseaseCell) neighbour).forgetInfected(entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the full state of the simulation to a checkpoint (see Checkpoint).
+     * @param out The checkpoint being written.
+     */
+    void writeState(Checkpoint.Output out) {
+        CellGrid grid = getGrid();
+        int width = grid.getWidth();
+        out.putByte(mode.ordinal());
+        out.putInt(grid.getDepth());
+        out.putInt(width);
+        out.putLong(seed);
+        rules.writeState(out);
+        out.putInt(generation);
+        if (arrayEngine != null) {
+            arrayEngine.writeState(out);
+            arrayField.writeState(out);
+            return;
+        }
+
+        out.putLong(neighbourRand.getState());
+        out.putLong(cellRand.getState());
+        out.putLong(populateRand.getState());
+        field.writeNeighbourOrders(out);
+
+        // The cells share one random number generator per chunk of rows (see CellCreator.createCells).
+        for (int row = 0; row < grid.getDepth(); row++) {
+            if (row == 0 || CellCreator.getChunk(row) != CellCreator.getChunk(row - 1)) {
+                out.putLong(((SplitMixRandom) field.getObjectAt(row, 0).getRandom()).getState());
+            }
+        }
+
+        // The type and position of every cell in the order they act, then the state of each.
+        out.putInt(cells.size());
+        for (Cell cell : cells) {
+            out.putInt(cell.getFieldIndex());
+            out.putByte(cell.getType().ordinal());
+        }
+        for (Cell cell : cells) {
+            cell.writeState(out, Cell::getFieldIndex);
+        }
+    }
+
+    /**
+     * Returns a hash of the state of every cell: its type and whether it is alive (as hashed by
+     * CellGrid.getStateHash), along with the state that the grid does not hash, such as its health,
+     * age, infection and color. This is the state that is written to a checkpoint, without the
+     * generation and the random number generators. Unlike CellGrid.getStateHash, it visits every cell.
+     * @return The hash of the state of the cells.
+     */
+    public long getCellStateHash() {
+        if (hashOutput == null) {
+            hashOutput = new Checkpoint.Output();
+            hashChannel = new Checkpoint.HashChannel();
+        }
+        hashChannel.reset();
+        hashOutput.begin(hashChannel);
+        if (arrayEngine != null) {
+            arrayField.writeState(hashOutput);
+        }
+        else {
+            CellGrid grid = getGrid();
+            int size = grid.getDepth() * grid.getWidth();
+            for (int index = 0; index < size; index++) {
+                Cell cell = field.getObjectAt(index / grid.getWidth(), index % grid.getWidth());
+                hashOutput.putByte(cell.getType().ordinal());
+                cell.writeState(hashOutput, Cell::getFieldIndex);
+            }
+        }
+        hashOutput.flush();
+        return hashChannel.getHash();
+    }
+
+    /**
+     * Reads a simulation from a checkpoint, as written by writeState.
+     * @param in The checkpoint being read.
+     * @param numThreads The number of threads to run each generation on with EngineMode.PARALLEL or EngineMode.MAPPED.
+     * @param mappedFile The file to keep the field in with EngineMode.MAPPED, or null for a temporary file.
+     * @return The simulation.
+     */
+    static Simulator readState(Checkpoint.Input in, int numThreads, Path mappedFile) {
+        EngineMode mode = EngineMode.values()[in.get()];
+        int depth = in.getInt();
+        int width = in.getInt();
+        long seed = in.getLong();
+        RuleSet rules = RuleSet.readState(in);
+        Simulator simulator = new Simulator(depth, width, mode, numThreads, seed, rules, mappedFile, false);
+        simulator.generation = in.getInt();
+        if (simulator.arrayEngine != null) {
+            simulator.arrayEngine.readState(in);
+            simulator.arrayField.readState(in);
+            return simulator;
+        }
+
+        simulator.neighbourRand.setState(in.getLong());
+        simulator.cellRand.setState(in.getLong());
+        simulator.populateRand.setState(in.getLong());
+        simulator.field.readNeighbourOrders(in);
+        SplitMixRandom[] chunkRands = new SplitMixRandom[CellCreator.getNumChunks(depth)];
+        long[] chunkStates = new long[chunkRands.length];
+        for (int chunk = 0; chunk < chunkRands.length; chunk++) {
+            chunkRands[chunk] = new SplitMixRandom(0);
+            chunkStates[chunk] = in.getLong();
+        }
+
+        // Create every cell first, as the state of a DiseaseCell refers to the cells it has infected.
+        Cell[] created = new Cell[depth * width];
+        int numCells = in.getInt();
+        int[] order = new int[numCells];
+        CellRegistry registry = simulator.cellCreator.getRegistry();
+        for (int i = 0; i < numCells; i++) {
+            int index = in.getInt();
+            CellType type = CellType.fromCode(in.get());
+            order[i] = index;
+            int row = index / width;
+            created[index] = registry.create(type, row, index % width, chunkRands[CellCreator.getChunk(row)]);
+        }
+        for (int index : order) {
+            created[index].readState(in, i -> created[i]);
+        }
+        for (int chunk = 0; chunk < chunkRands.length; chunk++) {
+            chunkRands[chunk].setState(chunkStates[chunk]); // Undo the draws made while creating the cells
+        }
+
+        for (int index : order) {
+            Cell cell = created[index];
+            simulator.cells.add(cell);
+            simulator.field.place(cell, index / width, index % width);
+        }
+        return simulator;
+    }
+
     /**
      * Pause for a given time.
      * @param millisec  The time to pause for, in milliseconds
@@ -109,12 +443,44 @@ public class Simulator {
     
     /**
      * Return the shared Field object.
-     * @return The shared Field object.
+     * @return The shared Field object, or null if the simulation is not run with EngineMode.OBJECT.
      */
     public Field getField() {
         return field;
     }
 
+    /**
+     * Return the grid of cells being simulated, whichever engine is running it.
+     * @return The Field or ArrayField being simulated.
+     */
+    public CellGrid getGrid() {
+        return (arrayEngine != null) ? arrayField : field;
+    }
+
+    /**
+     * Return the seed that every random decision of the simulation is derived from.
+     * @return The seed of the simulation.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Return the rules that this simulation is run with.
+     * @return A copy of the rules of the simulation.
+     */
+    public RuleSet getRules() {
+        return new RuleSet(rules);
+    }
+
+    /**
+     * Return the engine mode that this simulation is run with.
+     * @return The engine mode.
+     */
+    public EngineMode getMode() {
+        return mode;
+    }
+
     /**
      * Return the current generation (number).
      * @return The current generation (number).
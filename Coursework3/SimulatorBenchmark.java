@@ -0,0 +1,272 @@
+import com.sun.management.ThreadMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Micro-benchmarks of the hot paths of the simulation, at a range of grid sizes.
+ * For every benchmark, the operation is repeated (untimed) to warm up the JIT compiler, and then
+ * timed over several measurement rounds. The time and the number of bytes allocated per call (by the
+ * benchmarking thread, so not by the worker threads of EngineMode.PARALLEL) are reported, along with
+ * the number of garbage collections and the time they took.
+ *
+ * Usage: java SimulatorBenchmark [filter] [depthxwidth ...]
+ * e.g. "java SimulatorBenchmark simOneGeneration 50x40 1000x1000" only runs the benchmarks whose
+ * names contain "simOneGeneration", on 50x40 and 1000x1000 grids. Use "all" to run every benchmark.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class SimulatorBenchmark
+{
+    private static final int[][] DEFAULT_SIZES = {{40, 50}, {200, 200}, {1000, 1000}, {4000, 4000}};
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+    private static final int MEASUREMENT_ROUNDS = 5;
+    private static final long ROUND_NANOS = 1_000_000_000L;
+
+    private static volatile long sink; // Results are added to this so that the JIT cannot eliminate the work
+
+    private final ThreadMXBean threadBean;
+    private final String filter;
+
+    /**
+     * Create a benchmark runner.
+     * @param filter Only benchmarks whose names contain this are run ("all" runs every benchmark).
+     */
+    public SimulatorBenchmark(String filter)
+    {
+        this.threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.threadBean.setThreadAllocatedMemoryEnabled(true);
+        this.filter = filter;
+    }
+
+    /**
+     * Runs every benchmark at the given grid size.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     */
+    public void runAll(int depth, int width)
+    {
+        System.out.printf("%n== %dx%d ==%n", depth, width);
+        int numCells = depth * width;
+        try
+        {
+            Field field = new Field(SplitMixRandom.forStream(42, 0), depth, width);
+            CellCreator cellCreator = new CellCreator(SplitMixRandom.forStream(42, 1));
+            List<Cell> cells = new ArrayList<>();
+            for (int row = 0; row < depth; row++)
+            {
+                for (int col = 0; col < width; col++)
+                {
+                    Cell cell = cellCreator.generateRandomCell(row, col);
+                    field.place(cell, row, col);
+                    cells.add(cell);
+                }
+            }
+            field.updateCellNeighbours();
+
+            Location[] locations = new Location[numCells];
+            for (int i = 0; i < numCells; i++)
+            {
+                locations[i] = new Location(i / width, i % width);
+            }
+
+            run("Field.adjacentLocations", numCells, () -> {
+                long total = 0;
+                for (Location location : locations)
+                {
+                    total += field.adjacentLocations(location).size();
+                }
+                return total;
+            });
+            run("Field.getAllNeighbours", numCells, () -> {
+                long total = 0;
+                for (Location location : locations)
+                {
+                    total += field.getAllNeighbours(location).size();
+                }
+                return total;
+            });
+            run("Field.updateCellNeighbours", 1, () -> {
+                field.updateCellNeighbours();
+                return 0;
+            });
+            run("Cell.getLivingNeighbours", numCells, () -> {
+                long total = 0;
+                for (Cell cell : cells)
+                {
+                    total += cell.getLivingNeighbours().size();
+                }
+                return total;
+            });
+            run("Cell.countNeighbours", numCells, () -> {
+                long total = 0;
+                for (Cell cell : cells)
+                {
+                    cell.countNeighbours();
+                    total += cell.getNumLivingNeighbours();
+                }
+                return total;
+            });
+            run("CellCreator.generateRandomCell", numCells, () -> {
+                long total = 0;
+                cellCreator.reset();
+                for (int i = 0; i < numCells; i++)
+                {
+                    total += cellCreator.generateRandomCell(i / width, i % width).getType().ordinal();
+                }
+                return total;
+            });
+
+            ArrayField arrayField = new ArrayField(depth, width);
+            new ArrayEngine(arrayField, 42).populate();
+            for (CountKernel kernel : new CountKernel[] {new ScalarCountKernel(), CountKernel.create()})
+            {
+                NeighbourhoodCounts counts = new NeighbourhoodCounts(depth, width, kernel, CellType.CHAMELEON);
+                run("NeighbourhoodCounts.computeRow[" + kernel + "]", numCells, () -> {
+                    long total = 0;
+                    counts.clear();
+                    for (int row = 0; row < depth; row++)
+                    {
+                        counts.computeRow(arrayField, row);
+                        total += counts.getLiving(width - 1);
+                    }
+                    return total;
+                });
+            }
+
+            // Free the cells before creating the simulations.
+            cells.clear();
+            for (EngineMode mode : EngineMode.values())
+            {
+                Simulator simulator = new Simulator(depth, width, mode, Runtime.getRuntime().availableProcessors(), 42);
+                run("Simulator.simOneGeneration[" + mode + "]", 1, () -> {
+                    simulator.simOneGeneration();
+                    return simulator.getGeneration();
+                });
+            }
+        }
+        catch (OutOfMemoryError e)
+        {
+            System.out.println("Skipped the remaining benchmarks: out of memory (increase the heap with -Xmx)");
+        }
+    }
+
+    /**
+     * Warms up and then measures a single benchmark, if it is selected by the filter.
+     * @param name The name of the benchmark.
+     * @param callsPerOp The number of calls of the benchmarked method made by one run of the operation.
+     * @param operation The operation to benchmark, returning a value that depends on the work it did.
+     */
+    private void run(String name, int callsPerOp, Operation operation)
+    {
+        if (!filter.equals("all") && !name.contains(filter))
+        {
+            return;
+        }
+
+        // Warm up
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd)
+        {
+            sink += operation.run();
+        }
+
+        // Measure
+        long threadId = Thread.currentThread().getId();
+        double[] nanosPerCall = new double[MEASUREMENT_ROUNDS];
+        long totalCalls = 0;
+        long totalBytes = 0;
+        long gcCountBefore = getGcCount();
+        long gcTimeBefore = getGcTime();
+        for (int round = 0; round < MEASUREMENT_ROUNDS; round++)
+        {
+            long ops = 0;
+            long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            long elapsed;
+            do
+            {
+                sink += operation.run();
+                ops ++;
+                elapsed = System.nanoTime() - start;
+            }
+            while (elapsed < ROUND_NANOS);
+            totalBytes += threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+            totalCalls += ops * callsPerOp;
+            nanosPerCall[round] = (double) elapsed / (ops * callsPerOp);
+        }
+
+        double mean = 0;
+        for (double value : nanosPerCall)
+        {
+            mean += value / MEASUREMENT_ROUNDS;
+        }
+        double variance = 0;
+        for (double value : nanosPerCall)
+        {
+            variance += (value - mean) * (value - mean) / MEASUREMENT_ROUNDS;
+        }
+
+        System.out.printf("%-45s %14.1f ns/call (+- %.1f) %12.1f B/call  gc: %d collections, %d ms%n",
+                          name, mean, Math.sqrt(variance), (double) totalBytes / totalCalls,
+                          getGcCount() - gcCountBefore, getGcTime() - gcTimeBefore);
+    }
+
+    /**
+     * Returns the total number of garbage collections so far.
+     */
+    private static long getGcCount()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            count += Math.max(bean.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the total time spent on garbage collection so far, in milliseconds.
+     */
+    private static long getGcTime()
+    {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            time += Math.max(bean.getCollectionTime(), 0);
+        }
+        return time;
+    }
+
+    /**
+     * An operation to benchmark.
+     */
+    @FunctionalInterface
+    private interface Operation
+    {
+        long run();
+    }
+
+    public static void main(String[] args)
+    {
+        String filter = (args.length > 0) ? args[0] : "all";
+        List<int[]> sizes = new ArrayList<>();
+        for (int i = 1; i < args.length; i++)
+        {
+            String[] dimensions = args[i].toLowerCase().split("x");
+            sizes.add(new int[] {Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1])});
+        }
+        if (sizes.isEmpty())
+        {
+            sizes.addAll(List.of(DEFAULT_SIZES));
+        }
+
+        SimulatorBenchmark benchmark = new SimulatorBenchmark(filter);
+        for (int[] size : sizes)
+        {
+            benchmark.runAll(size[0], size[1]);
+        }
+    }
+}
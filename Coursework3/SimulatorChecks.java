@@ -0,0 +1,391 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks of the parts of the simulation that are easiest to get subtly wrong, each of which runs
+ * small simulations and compares the results of two ways of getting to the same state, e.g., a
+ * simulation resumed from a checkpoint with the simulation it was captured from.
+ *
+ * Usage: java SimulatorChecks [filter]
+ * Only the checks whose names contain the filter are run (all of them if it is not given). The name
+ * of every check is printed with "ok" or the reason it failed, and the exit status is 1 if any failed.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class SimulatorChecks
+{
+    private final String filter;
+    private int numFailed;
+
+    /**
+     * Create a runner of the checks.
+     * @param filter Only checks whose names contain this are run.
+     */
+    public SimulatorChecks(String filter)
+    {
+        this.filter = filter;
+    }
+
+    /**
+     * Runs every check (that matches the filter).
+     * @return The number of checks that failed.
+     */
+    public int runAll()
+    {
+        run("placeOverInfected", this::checkPlaceOverInfected);
+        run("stopWhileCheckpointing", this::checkStopWhileCheckpointing);
+        for (EngineMode mode : EngineMode.values())
+        {
+            run("checkpointRoundTrip" + mode, () -> checkCheckpointRoundTrip(mode));
+        }
+        run("rewindSeek", this::checkRewindSeek);
+        run("clustersSmall", () -> checkClusters(7, 9, 1));
+        run("clustersThin", () -> checkClusters(1, 40, 1));
+        run("clustersAcrossTiles", () -> checkClusters(150, 300, 2));
+        return numFailed;
+    }
+
+    /**
+     * Runs one check, if its name matches the filter, and reports the result.
+     */
+    private void run(String name, Runnable check)
+    {
+        if (!name.contains(filter))
+        {
+            return;
+        }
+        try
+        {
+            check.run();
+            System.out.println(name + ": ok");
+        }
+        catch (RuntimeException | AssertionError e)
+        {
+            numFailed ++;
+            System.out.println(name + ": FAILED " + e);
+        }
+    }
+
+    /**
+     * Fails the check being run if a condition does not hold.
+     */
+    private static void expect(boolean condition, String message)
+    {
+        if (!condition)
+        {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * Painting new cells over infected cells (with EngineMode.OBJECT) replaces cells that are still in
+     * the lists of the DiseaseCell cells that infected them. The simulation must still be hashed, and
+     * checkpointed and resumed, after that.
+     */
+    private void checkPlaceOverInfected()
+    {
+        Simulator simulator = new Simulator(40, 40, EngineMode.OBJECT, 1, 3);
+        List<FieldEdit> edits = new ArrayList<>();
+        for (int generation = 0; generation < 50 && edits.isEmpty(); generation++)
+        {
+            simulator.simOneGeneration();
+            CellGrid grid = simulator.getGrid();
+            for (int row = 0; row < grid.getDepth(); row++)
+            {
+                for (int col = 0; col < grid.getWidth(); col++)
+                {
+                    if (grid.isInfected(row, col))
+                    {
+                        edits.add(new FieldEdit(FieldEdit.Kind.PLACE, CellType.MYCOPLASMA, row, col, 1, 1));
+                    }
+                }
+            }
+        }
+        expect(!edits.isEmpty(), "no cell was infected");
+        simulator.applyEdits(edits);
+
+        long hash = simulator.getCellStateHash();
+        Simulator resumed = roundTrip(simulator);
+        expect(resumed.getCellStateHash() == hash, "the resumed simulation has a different state");
+        for (int i = 0; i < 10; i++)
+        {
+            simulator.simOneGeneration();
+            resumed.simOneGeneration();
+        }
+        expect(resumed.getCellStateHash() == simulator.getCellStateHash(), "the resumed simulation went a different way");
+    }
+
+    /**
+     * A simulation loaded from a checkpoint must have the same state as the simulation it was captured
+     * from, and go on to simulate the same generations.
+     */
+    private void checkCheckpointRoundTrip(EngineMode mode)
+    {
+        Simulator simulator = new Simulator(100, 100, mode, 2, 11);
+        for (int i = 0; i < 30; i++)
+        {
+            simulator.simOneGeneration();
+        }
+        Simulator resumed = roundTrip(simulator);
+        expect(resumed.getGeneration() == simulator.getGeneration(), "the resumed simulation is in another generation");
+        expect(resumed.getCellStateHash() == simulator.getCellStateHash(), "the resumed simulation has a different state");
+        for (int i = 0; i < 20; i++)
+        {
+            simulator.simOneGeneration();
+            resumed.simOneGeneration();
+            expect(resumed.getCellStateHash() == simulator.getCellStateHash(),
+                   "the resumed simulation went a different way in generation " + simulator.getGeneration());
+        }
+    }
+
+    /**
+     * Every generation held by a RewindBuffer must be rebuilt exactly as it was recorded, including
+     * across a reset of the simulation (which starts a new keyframe) and after the oldest generations
+     * have been forgotten.
+     */
+    private void checkRewindSeek()
+    {
+        int depth = 90, width = 110;
+        Simulator simulator = new Simulator(depth, width, EngineMode.ARRAY, 1, 13);
+        SnapshotBuffer buffer = new SnapshotBuffer(depth, width);
+        RewindBuffer history = new RewindBuffer(depth, width, 100, 10);
+        List<byte[]> frames = new ArrayList<>();
+        List<long[]> counts = new ArrayList<>();
+        List<Integer> generations = new ArrayList<>();
+        for (int i = 0; i < 160; i++)
+        {
+            if (i == 75)
+            {
+                simulator.reset();
+            }
+            else if (i > 0)
+            {
+                simulator.simOneGeneration();
+            }
+            GridSnapshot snapshot = buffer.publish(simulator.getGrid(), simulator.getGeneration());
+            history.record(snapshot);
+            byte[] frame = new byte[2 * depth * width];
+            counts.add(snapshot.copyTo(frame));
+            frames.add(frame);
+            generations.add(snapshot.getGeneration());
+        }
+
+        // After the reset the generations start again from 0, so only those recorded since are held.
+        expect(history.getNewestGeneration() == simulator.getGeneration(), "the newest generation is not held");
+        GridSnapshot rebuilt = new GridSnapshot(depth, width);
+        byte[] frame = new byte[2 * depth * width];
+        int numChecked = 0;
+        for (int i = 75; i < frames.size(); i++)
+        {
+            int generation = generations.get(i);
+            if (generation < history.getOldestGeneration())
+            {
+                continue;
+            }
+            expect(history.seek(generation, rebuilt), "generation " + generation + " could not be rebuilt");
+            expect(rebuilt.getGeneration() == generation, "generation " + generation + " was rebuilt as " + rebuilt.getGeneration());
+            expect(Arrays.equals(rebuilt.copyTo(frame), counts.get(i)), "the counts of generation " + generation + " differ");
+            expect(Arrays.equals(frame, frames.get(i)), "the cells of generation " + generation + " differ");
+            numChecked ++;
+        }
+        expect(numChecked > 50, "only " + numChecked + " generations were held");
+        expect(!history.seek(history.getNewestGeneration() + 1, rebuilt), "a generation never recorded was rebuilt");
+    }
+
+    /**
+     * The clusters found by a ClusterAnalyzer must be those found by flood filling the grid, for grids
+     * smaller than a tile and for grids whose clusters cross the borders between tiles.
+     */
+    private void checkClusters(int depth, int width, int numThreads)
+    {
+        Simulator simulator = new Simulator(depth, width, EngineMode.ARRAY, 1, 17);
+        try (ClusterAnalyzer analyzer = new ClusterAnalyzer(depth, width, 1, numThreads))
+        {
+            for (int i = 0; i < 40; i++)
+            {
+                simulator.simOneGeneration();
+                if (i % 8 != 0)
+                {
+                    continue;
+                }
+                ClusterStats found = analyzer.analyse(simulator.getGrid(), simulator.getGeneration());
+                ClusterStats expected = floodFillClusters(simulator.getGrid(), simulator.getGeneration());
+                for (CellType type : kindsOfCluster())
+                {
+                    String kind = (type == null) ? "infected" : type.getName();
+                    expect(found.getNumClusters(type) == expected.getNumClusters(type),
+                           found.getNumClusters(type) + " " + kind + " clusters, not " + expected.getNumClusters(type));
+                    expect(found.getLargestCluster(type) == expected.getLargestCluster(type),
+                           "the largest " + kind + " cluster has " + found.getLargestCluster(type) + " cells, not "
+                           + expected.getLargestCluster(type));
+                    for (int bin = 0; bin < ClusterStats.NUM_SIZE_BINS; bin++)
+                    {
+                        expect(found.getNumClusters(type, bin) == expected.getNumClusters(type, bin),
+                               "the " + kind + " clusters of " + ClusterStats.getBinName(bin) + " cells differ");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns each cell type, and null for the clusters of infected cells.
+     */
+    private static List<CellType> kindsOfCluster()
+    {
+        List<CellType> kinds = new ArrayList<>(Arrays.asList(CellType.values()));
+        kinds.add(null);
+        return kinds;
+    }
+
+    /**
+     * Finds the clusters of a grid by flood filling each one from its first cell.
+     */
+    private static ClusterStats floodFillClusters(CellGrid grid, int generation)
+    {
+        int depth = grid.getDepth();
+        int width = grid.getWidth();
+        ClusterStats stats = new ClusterStats(generation);
+        for (CellType type : kindsOfCluster())
+        {
+            boolean[] visited = new boolean[depth * width];
+            int[] stack = new int[depth * width];
+            for (int first = 0; first < depth * width; first++)
+            {
+                if (visited[first] || !isInCluster(grid, type, first / width, first % width))
+                {
+                    continue;
+                }
+                int size = 0;
+                int top = 0;
+                stack[top++] = first;
+                visited[first] = true;
+                while (top > 0)
+                {
+                    int index = stack[--top];
+                    size ++;
+                    for (int row = index / width - 1; row <= index / width + 1; row++)
+                    {
+                        for (int col = index % width - 1; col <= index % width + 1; col++)
+                        {
+                            if (row >= 0 && row < depth && col >= 0 && col < width && !visited[row * width + col]
+                                && isInCluster(grid, type, row, col))
+                            {
+                                visited[row * width + col] = true;
+                                stack[top++] = row * width + col;
+                            }
+                        }
+                    }
+                }
+                stats.addCluster(type, size);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns a boolean indicating whether the cell at a position is in a cluster of the given kind.
+     * @param type The type of cell, or null for the clusters of infected cells.
+     */
+    private static boolean isInCluster(CellGrid grid, CellType type, int row, int col)
+    {
+        if (!grid.isAlive(row, col))
+        {
+            return false;
+        }
+        return (type == null) ? grid.isInfected(row, col) : grid.getCellType(row, col) == type;
+    }
+
+    /**
+     * Stopping a SimulationRunner that writes a checkpoint every generation, at whatever point it has got
+     * to, must leave its thread to publish the last generation simulated, rather than abort the checkpoint.
+     */
+    private void checkStopWhileCheckpointing()
+    {
+        Simulator simulator = new Simulator(200, 200, EngineMode.ARRAY, 1, 5);
+        SimulationRunner runner = new SimulationRunner(simulator);
+        try
+        {
+            Path file = Files.createTempFile("checkpoint", ".bin");
+            try (CheckpointWriter writer = new CheckpointWriter(file, 1))
+            {
+                runner.setCheckpointWriter(writer);
+                for (int i = 0; i < 20; i++)
+                {
+                    runner.start(0, 0);
+                    Thread.sleep(1 + i % 7);
+                    runner.stop();
+                    GridSnapshot latest = runner.getBuffer().takeLatest();
+                    expect(latest != null && latest.getGeneration() == simulator.getGeneration(),
+                           "generation " + simulator.getGeneration() + " was not published");
+                }
+                writer.write(simulator);
+                writer.awaitPending();
+                expect(Checkpoint.load(file, 1).getCellStateHash() == simulator.getCellStateHash(),
+                       "the last checkpoint has a different state");
+            }
+            finally
+            {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".tmp"));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        catch (InterruptedException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes a checkpoint of a simulation to a temporary file and loads it again.
+     */
+    private static Simulator roundTrip(Simulator simulator)
+    {
+        try
+        {
+            Path file = Files.createTempFile("checkpoint", ".bin");
+            try
+            {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+                {
+                    Checkpoint.capture(simulator, new Checkpoint.Output(), channel);
+                }
+                return Checkpoint.load(file, 2);
+            }
+            finally
+            {
+                Files.delete(file);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Runs the checks.
+     * @param args The filter of the checks to run (optional).
+     */
+    public static void main(String[] args)
+    {
+        int numFailed = new SimulatorChecks((args.length > 0) ? args[0] : "").runAll();
+        if (numFailed > 0)
+        {
+            System.out.println(numFailed + " check(s) failed");
+            System.exit(1);
+        }
+    }
+}
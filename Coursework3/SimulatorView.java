@@ -1,3 +1,4 @@
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.scene.control.Label;
@@ -7,12 +8,30 @@ import javafx.scene.layout.HBox;
 import javafx.scene.paint.Color; 
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
 
 /**
  * A graphical view of the simulation grid. The view displays a rectangle for
  * each location. Colors for each type of life form can be defined using the
  * setColor method.
  *
+ * Started with --checkpoint=file, a checkpoint of the simulation is written to the file every
+ * 1000 generations (or every --checkpoint-every=n generations), and when the application exits.
+ * If the file already exists, the simulation resumes from it. Started with --stats=file, the
+ * statistics of every generation are written to the file (see StatsWriter), with the clusters
+ * of every k generations if started with --clusters=k (see ClusterAnalyzer). Started with
+ * --scenario=file, the edits of the scenario are made as the simulation reaches their generations
+ * (see Scenario).
+ *
+ * Cells can be painted into the running simulation with the primary mouse button, with a brush
+ * chosen with the keyboard: 1 to 7 place living cells of each CellType, I infects cells, and C
+ * kills them. The edits are made between generations (see SimulationRunner.submit).
+ *
  * @author David J. Barnes, Michael Kölling & Jeffery Raphael
  * @version 2024.02.03
  */
@@ -22,6 +41,11 @@ public class SimulatorView extends Application {
     public static final int WIN_WIDTH = 850; //650;
     public static final int WIN_HEIGHT = 850; //650;  
 
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+    private static final int REWIND_CAPACITY = 2000; // The number of past generations that can be shown again
+    private static final int REWIND_KEYFRAME_INTERVAL = 50;
+    private static final int BRUSH_RADIUS = 1; // The cells painted around the one under the mouse, in each direction
+
     private final String GENERATION_PREFIX = "Generation: ";
     private final String POPULATION_PREFIX = "Population: ";
 
@@ -29,6 +53,16 @@ public class SimulatorView extends Application {
 
     private FieldCanvas fieldCanvas;
     private Simulator simulator;
+    private SimulationRunner runner;
+    private AnimationTimer renderer;
+    private CheckpointWriter checkpointWriter; // Null if no checkpoints are written
+    private StatsWriter statsWriter; // Null if no statistics are written
+    private ClusterAnalyzer clusterAnalyzer; // Null if no clusters are analysed
+    private RewindBuffer rewindBuffer;
+    private GridSnapshot rewindSnapshot; // A past generation rebuilt from the rewind buffer
+    private int shownGeneration;
+    private FieldEdit.Kind brushKind = FieldEdit.Kind.PLACE;
+    private CellType brushType = CellType.MYCOPLASMA; // The type of the cells placed by the brush
 
     /**
      * Create a view of the given width and height.
@@ -38,8 +72,10 @@ public class SimulatorView extends Application {
     public void start(Stage stage) {
         
         fieldCanvas = new FieldCanvas(WIN_WIDTH - 50, WIN_HEIGHT - 50);
-        simulator = new Simulator();
-        fieldCanvas.setScale(Simulator.GRID_HEIGHT, Simulator.GRID_WIDTH); 
+        Map<String, String> options = getParameters().getNamed();
+        Path checkpoint = options.containsKey("checkpoint") ? Paths.get(options.get("checkpoint")) : null;
+        simulator = createSimulator(checkpoint);
+        fieldCanvas.setScale(simulator.getGrid().getDepth(), simulator.getGrid().getWidth()); 
 
         Group root = new Group();
         
@@ -63,13 +99,106 @@ public class SimulatorView extends Application {
         root.getChildren().add(bPane);
         Scene scene = new Scene(root, WIN_WIDTH, WIN_HEIGHT); 
         
+        scene.setOnKeyPressed(event -> selectBrush(event.getText()));
         stage.setScene(scene);          
         stage.setTitle("Life Simulation");
-        updateCanvas(simulator.getGeneration());
+
+        // The simulation runs on its own thread, and the latest generation is drawn on every frame.
+        runner = new SimulationRunner(simulator);
+        int depth = simulator.getGrid().getDepth();
+        int width = simulator.getGrid().getWidth();
+        rewindBuffer = new RewindBuffer(depth, width, REWIND_CAPACITY, REWIND_KEYFRAME_INTERVAL);
+        rewindSnapshot = new GridSnapshot(depth, width);
+        runner.setRewindBuffer(rewindBuffer);
+        if (checkpoint != null) {
+            int interval = Integer.parseInt(options.getOrDefault("checkpoint-every", "" + DEFAULT_CHECKPOINT_INTERVAL));
+            checkpointWriter = new CheckpointWriter(checkpoint, interval);
+            runner.setCheckpointWriter(checkpointWriter);
+        }
+        if (options.containsKey("stats")) {
+            Path statsFile = Paths.get(options.get("stats"));
+            int clusterInterval = Integer.parseInt(options.getOrDefault("clusters", "0"));
+            try {
+                statsWriter = new StatsWriter(statsFile, clusterInterval > 0);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Could not create " + statsFile, e);
+            }
+            runner.setStatsWriter(statsWriter);
+            if (clusterInterval > 0) {
+                clusterAnalyzer = new ClusterAnalyzer(depth, width, clusterInterval,
+                                                      Runtime.getRuntime().availableProcessors());
+                runner.setClusterAnalyzer(clusterAnalyzer);
+            }
+        }
+        if (options.containsKey("scenario")) {
+            Path scenarioFile = Paths.get(options.get("scenario"));
+            try {
+                runner.setScenario(Scenario.load(scenarioFile));
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Could not read " + scenarioFile, e);
+            }
+        }
+        fieldCanvas.setCellPainter((row, col, numRows, numCols) ->
+            runner.submit(new FieldEdit(brushKind, brushType, row - BRUSH_RADIUS, col - BRUSH_RADIUS,
+                                        numRows + 2 * BRUSH_RADIUS, numCols + 2 * BRUSH_RADIUS)));
+        renderer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                GridSnapshot snapshot = runner.getBuffer().takeLatest();
+                if (snapshot != null) {
+                    updateCanvas(snapshot);
+                }
+            }
+        };
+        runner.publish();
+        renderer.start();
         
         stage.show();     
     }
 
+    /**
+     * Create the simulation, resuming from the given checkpoint file if it exists.
+     * @param checkpoint The checkpoint file, or null to start a new simulation.
+     * @return The simulation.
+     */
+    private Simulator createSimulator(Path checkpoint) {
+        if (checkpoint == null || !Files.exists(checkpoint)) {
+            return new Simulator();
+        }
+        try {
+            return Checkpoint.load(checkpoint, Runtime.getRuntime().availableProcessors());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not resume from " + checkpoint, e);
+        }
+    }
+
+    /**
+     * Chooses what the mouse paints from the key pressed: the digits 1 to 7 place cells of each
+     * CellType (in order), I infects cells and C kills them. Other keys are ignored.
+     * @param text The character typed by the key.
+     */
+    private void selectBrush(String text) {
+        CellType[] types = CellType.values();
+        char key = (text.length() == 1) ? Character.toLowerCase(text.charAt(0)) : 0;
+        if (key >= '1' && key < '1' + types.length) {
+            brushKind = FieldEdit.Kind.PLACE;
+            brushType = types[key - '1'];
+        }
+        else if (key == 'i') {
+            brushKind = FieldEdit.Kind.INFECT;
+        }
+        else if (key == 'c') {
+            brushKind = FieldEdit.Kind.CLEAR;
+        }
+        else {
+            return;
+        }
+        setInfoText("Brush: " + ((brushKind == FieldEdit.Kind.PLACE) ? brushType.getName() : brushKind.toString().toLowerCase()));
+    }
+
     /**
      * Display a short information label at the top of the window.
      * @param text The information label to display.
@@ -79,41 +208,100 @@ public class SimulatorView extends Application {
     }
 
     /**
-     * Show the current status of the field.
-     * @param generation The current generation.
+     * Show the status of the field in a snapshot of a generation.
+     * @param snapshot The snapshot of the generation to show.
      */
-    private void updateCanvas(int generation) {
-        genLabel.setText(GENERATION_PREFIX + generation);
+    private void updateCanvas(GridSnapshot snapshot) {
+        shownGeneration = snapshot.getGeneration();
+        genLabel.setText(GENERATION_PREFIX + snapshot.getGeneration());
         String populationDetails;
-        populationDetails = fieldCanvas.update(simulator.getField());
+        populationDetails = fieldCanvas.update(snapshot);
         population.setText(POPULATION_PREFIX + populationDetails);
     }
 
     /**
      * Run the simulation from its current state for the given number of
-     * generations.
+     * generations, at one generation per second.
      * @param numGenerations The number of generations to run for.
      */
     public void simulate(int numGenerations) {
-        new Thread(() -> {
-           
-            for (int gen = 1; gen <= numGenerations; gen++) {
-                simulator.simOneGeneration();    
-                simulator.delay(1000);
-                Platform.runLater(() -> {
-                    updateCanvas(simulator.getGeneration());
-                });
-            }
-            
-        }).start();
+        runner.start(numGenerations, 1);
+    }
+
+    /**
+     * Run the simulation from its current state until stopped, at the given
+     * number of generations per second. Generations simulated faster than the
+     * display refreshes are not drawn.
+     * @param generationsPerSecond The target number of generations per second (0 to run as fast as possible).
+     */
+    public void run(double generationsPerSecond) {
+        runner.start(0, generationsPerSecond);
+    }
+
+    /**
+     * Stop running the simulation and show a past generation again, rebuilt from the history of recent
+     * generations. Running the simulation again carries on from its latest generation. May be called from
+     * any thread: the generation is shown on the JavaFX thread, which is the only reader of the runner's
+     * SnapshotBuffer.
+     * @param generation The generation to show.
+     */
+    public void showGeneration(int generation) {
+        runner.stop();
+        Platform.runLater(() -> showPastGeneration(generation));
+    }
+
+    /**
+     * Stop running the simulation and step back (or forward) through the recent generations.
+     * May be called from any thread (see showGeneration).
+     * @param numGenerations The number of generations to go back from the one shown (negative to go forward).
+     */
+    public void rewind(int numGenerations) {
+        runner.stop();
+        // The generation shown is only read on the JavaFX thread, as that is the thread that changes it.
+        Platform.runLater(() -> showPastGeneration(shownGeneration - numGenerations));
+    }
+
+    /**
+     * Show a past generation, rebuilt from the history. Must be called on the JavaFX thread, with the
+     * simulation stopped.
+     * @param generation The generation to show.
+     */
+    private void showPastGeneration(int generation) {
+        runner.getBuffer().takeLatest(); // So that the last generation published does not replace it on the next frame
+        if (rewindBuffer.seek(generation, rewindSnapshot)) {
+            setInfoText("  ");
+            updateCanvas(rewindSnapshot);
+        }
+        else {
+            setInfoText("Generation " + generation + " is not in the history (" + rewindBuffer.getOldestGeneration()
+                        + " to " + rewindBuffer.getNewestGeneration() + ")");
+        }
+    }
+
+    /**
+     * Stop running the simulation. Also called by JavaFX when the application exits, in which case a
+     * last checkpoint is written (if checkpoints are being written), and the statistics file is closed.
+     */
+    @Override
+    public void stop() {
+        runner.stop();
+        if (checkpointWriter != null) {
+            checkpointWriter.write(simulator);
+            checkpointWriter.awaitPending();
+        }
+        if (statsWriter != null) {
+            statsWriter.close();
+        }
+        if (clusterAnalyzer != null) {
+            clusterAnalyzer.close();
+        }
     }
 
     /**
      * Reset the simulation to a starting position.
      */
     public void reset() {
-        simulator.reset();
-        updateCanvas(simulator.getGeneration());
+        runner.reset();
     }
     
     public static void main(String args[]){           
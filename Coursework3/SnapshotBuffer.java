@@ -0,0 +1,93 @@
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free buffer of GridSnapshot objects, between one thread running the simulation (the writer)
+ * and one thread displaying it (the reader).
+ *
+ * The writer fills a back snapshot that only it can see, then publishes it. The reader swaps the
+ * latest published snapshot in as its front snapshot, which it can read for as long as it likes.
+ * If the writer publishes again before the reader has taken the previous snapshot, the previous one
+ * is dropped and reused, so the reader only ever sees the latest generation and the writer never
+ * waits for the reader to finish displaying a frame.
+ *
+ * There are three snapshots: the reader's front, the writer's back, and one that is either published
+ * or free (released by the reader when it swapped in a new front).
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class SnapshotBuffer
+{
+    private final AtomicReference<GridSnapshot> published; // The latest snapshot not yet taken by the reader
+    private final AtomicReference<GridSnapshot> free; // The previous front snapshot, released by the reader
+    private GridSnapshot back; // Only used by the writer
+    private GridSnapshot front; // Only used by the reader
+    private long numDropped; // Only used by the writer
+
+    /**
+     * Create a buffer for snapshots of a grid of the given dimensions.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     */
+    public SnapshotBuffer(int depth, int width)
+    {
+        this.published = new AtomicReference<>();
+        this.free = new AtomicReference<>(new GridSnapshot(depth, width));
+        this.back = new GridSnapshot(depth, width);
+        this.front = new GridSnapshot(depth, width);
+    }
+
+    /**
+     * Copies the current state of a grid and publishes it to the reader. Only called by the writer.
+     * @param grid The grid to copy.
+     * @param generation The generation that the grid is in.
+     * @return The snapshot published. The writer may read it (but not change it) until it next calls
+     *         this method, as no snapshot is captured into again before then.
+     */
+    public GridSnapshot publish(CellGrid grid, int generation)
+    {
+        GridSnapshot snapshot = back;
+        snapshot.capture(grid, generation);
+        GridSnapshot dropped = published.getAndSet(snapshot);
+        if (dropped != null)
+        {
+            // The reader never saw the previous snapshot, so it can be reused.
+            numDropped ++;
+            back = dropped;
+            return snapshot;
+        }
+
+        // The reader has taken the previous snapshot, and releases its old front straight after.
+        while ((back = free.getAndSet(null)) == null)
+        {
+            Thread.onSpinWait();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Makes the latest published snapshot the reader's front snapshot. Only called by the reader.
+     * The front snapshot does not change until the next call of this method.
+     * @return The new front snapshot, or null if nothing has been published since the last call.
+     */
+    public GridSnapshot takeLatest()
+    {
+        GridSnapshot latest = published.getAndSet(null);
+        if (latest == null)
+        {
+            return null;
+        }
+        free.set(front);
+        front = latest;
+        return front;
+    }
+
+    /**
+     * Returns the number of snapshots that were replaced before the reader took them. Only called by the writer.
+     * @return The number of dropped snapshots.
+     */
+    public long getNumDropped()
+    {
+        return numDropped;
+    }
+}
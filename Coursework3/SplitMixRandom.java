@@ -0,0 +1,131 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * A small, fast, seedable random number generator (SplitMix64), used for every random decision in
+ * the simulation so that a whole run can be reproduced from a single seed.
+ *
+ * Independent streams are derived from a seed and a stream id (e.g., one stream for shuffling the
+ * neighbours, another for creating cells), so that adding draws to one stream never changes the
+ * draws of another. The generator keeps its state in a plain long with no synchronisation, so each
+ * stream should only be used by one thread at a time.
+ *
+ * For work that is split between threads, the static hash methods give "counter-based" random
+ * numbers instead: a random value computed purely from the seed and a few counters (e.g., the
+ * generation and the index of a cell). These have no state at all, so the values drawn for a cell
+ * do not depend on which thread draws them or in what order.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class SplitMixRandom implements RandomGenerator
+{
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    /**
+     * Create a generator with the given seed.
+     * @param seed The seed of the generator.
+     */
+    public SplitMixRandom(long seed)
+    {
+        this.state = seed;
+    }
+
+    /**
+     * Create the generator of an independent stream derived from a seed.
+     * @param seed The seed that all streams of a simulation are derived from.
+     * @param streamId The id of the stream.
+     * @return A new generator for the stream.
+     */
+    public static SplitMixRandom forStream(long seed, long streamId)
+    {
+        return new SplitMixRandom(hash(seed, streamId));
+    }
+
+    /**
+     * Returns the next random long from this generator.
+     * @return A random long.
+     */
+    @Override
+    public long nextLong()
+    {
+        state += GOLDEN_GAMMA;
+        return mix64(state);
+    }
+
+    /**
+     * Returns the current state of this generator, e.g., to save it.
+     * @return The state of this generator.
+     */
+    public long getState()
+    {
+        return state;
+    }
+
+    /**
+     * Restores a state previously returned by getState.
+     * @param state The state to restore.
+     */
+    public void setState(long state)
+    {
+        this.state = state;
+    }
+
+    /**
+     * Returns a random long computed from a seed and a counter.
+     * @param seed The seed.
+     * @param a The counter.
+     * @return A random long, which is always the same for the same arguments.
+     */
+    public static long hash(long seed, long a)
+    {
+        return mix64(seed + GOLDEN_GAMMA * (mix64(a) + 1));
+    }
+
+    /**
+     * Returns a random long computed from a seed and three counters.
+     * @param seed The seed.
+     * @param a The first counter.
+     * @param b The second counter.
+     * @param c The third counter.
+     * @return A random long, which is always the same for the same arguments.
+     */
+    public static long hash(long seed, long a, long b, long c)
+    {
+        return hash(hash(hash(seed, a), b), c);
+    }
+
+    /**
+     * Turns a random long (e.g., from hash) into a random int from 0 (inclusive) to bound (exclusive).
+     * @param random The random long.
+     * @param bound The upper bound (exclusive). Must be positive.
+     * @return A random int in the range.
+     */
+    public static int toInt(long random, int bound)
+    {
+        return (int) (((random >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * Turns a random long (e.g., from hash) into a random double from 0 (inclusive) to 1 (exclusive).
+     * @param random The random long.
+     * @return A random double in the range.
+     */
+    public static double toDouble(long random)
+    {
+        return (random >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * The finalising function of SplitMix64, which scrambles the bits of a long.
+     * @param z The long to scramble.
+     * @return The scrambled long.
+     */
+    private static long mix64(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
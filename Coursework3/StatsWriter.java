@@ -0,0 +1,503 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the statistics of every generation of a simulation to a file, without ever making the
+ * simulation wait for the disk. For each generation, the population, births and deaths of each cell
+ * type and the number of infected cells are written. Optionally, the connected clusters found by a
+ * ClusterAnalyzer are also written: the generation they were found in (-1 in the rows of generations
+ * without new clusters, as the clusters are found in the background and given to the row of the
+ * first generation recorded after they are found), then for each cell type, and for infected cells,
+ * the number of clusters, the size of the largest one, and the histogram of their sizes (see ClusterStats).
+ *
+ * The simulation's thread only counts the generation (see CellGrid) and copies the counts into a
+ * bounded ring of preallocated records, which a background thread drains into large batches written
+ * with a FileChannel. The ring is lock-free, with one thread adding records and one taking them.
+ * If the writer falls so far behind that the ring is full, the generation is dropped (and counted,
+ * see getNumDropped) instead of making the simulation wait.
+ *
+ * The file is either CSV, with a header row, or a compact binary columnar file: a header (the int
+ * MAGIC, VERSION and number of columns, then the name of each column as a short length followed
+ * by its UTF-8 bytes), followed by blocks of up to BLOCK_ROWS generations, each an int number of
+ * generations followed by the int values of each column of those generations in turn.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class StatsWriter implements AutoCloseable
+{
+    public static final int MAGIC = 0x4C535441; // "LSTA"
+    public static final int VERSION = 1;
+    public static final int BLOCK_ROWS = 1024;
+
+    private static final int DEFAULT_CAPACITY = 4096; // Generations held in the ring
+    private static final int BATCH_BYTES = 1 << 16;
+    private static final int MAX_CSV_VALUE_BYTES = 12; // A comma and an int
+    private static final long IDLE_NANOS = 1_000_000; // How long the writer sleeps when the ring is empty
+    private static final long FLUSH_NANOS = 100_000_000; // How long the writer holds on to a partial batch
+
+    /**
+     * The file formats that the statistics can be written in.
+     */
+    public enum Format
+    {
+        CSV, BINARY;
+
+        /**
+         * Chooses the format of a file from its name: binary if it ends in ".bin", otherwise CSV.
+         * @param file The file.
+         * @return The format of the file.
+         */
+        public static Format of(Path file)
+        {
+            return file.getFileName().toString().endsWith(".bin") ? BINARY : CSV;
+        }
+    }
+
+    private static final CellType[] TYPES = CellType.values();
+    private static final int INFECTED_COLUMN = 1 + 3 * TYPES.length;
+    private static final int NUM_BASE_COLUMNS = INFECTED_COLUMN + 1; // The columns written without clusters
+    private static final int CLUSTER_COLUMNS_PER_KIND = 2 + ClusterStats.NUM_SIZE_BINS;
+
+    private final Path file;
+    private final Format format;
+    private final FileChannel channel;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile IOException failure; // Why the writer stopped, if it failed
+
+    // The ring: record i is held in values[(i & mask) * numColumns] onwards.
+    private final int numColumns;
+    private final int mask;
+    private final int[] values;
+    private final AtomicLong head = new AtomicLong(); // The next record to write (only advanced by the writer)
+    private final AtomicLong tail = new AtomicLong(); // The next record to add (only advanced by the simulation)
+
+    // Only used by the simulation's thread.
+    private final long[] lastBirths, lastDeaths; // The totals of the last generation counted
+    private int lastGeneration = -1;
+    private long numDropped;
+
+    // Only used by the writer's thread.
+    private final ByteBuffer batch;
+
+    /**
+     * Create a writer of statistics to the given file, in the format chosen by its name (see Format.of).
+     * @param file The file to write to, which is replaced if it exists.
+     * @throws IOException If the file could not be created.
+     */
+    public StatsWriter(Path file) throws IOException
+    {
+        this(file, false);
+    }
+
+    /**
+     * Create a writer of statistics to the given file, in the format chosen by its name (see Format.of).
+     * @param file The file to write to, which is replaced if it exists.
+     * @param withClusters Whether to write the columns of the clusters (see ClusterStats).
+     * @throws IOException If the file could not be created.
+     */
+    public StatsWriter(Path file, boolean withClusters) throws IOException
+    {
+        this(file, Format.of(file), DEFAULT_CAPACITY, withClusters);
+    }
+
+    /**
+     * Create a writer of statistics to the given file.
+     * @param file The file to write to, which is replaced if it exists.
+     * @param format The format to write in.
+     * @param capacity The number of generations that can wait to be written (rounded up to a power of 2).
+     * @throws IOException If the file could not be created.
+     */
+    public StatsWriter(Path file, Format format, int capacity) throws IOException
+    {
+        this(file, format, capacity, false);
+    }
+
+    /**
+     * Create a writer of statistics to the given file.
+     * @param file The file to write to, which is replaced if it exists.
+     * @param format The format to write in.
+     * @param capacity The number of generations that can wait to be written (rounded up to a power of 2).
+     * @param withClusters Whether to write the columns of the clusters (see ClusterStats).
+     * @throws IOException If the file could not be created.
+     */
+    public StatsWriter(Path file, Format format, int capacity, boolean withClusters) throws IOException
+    {
+        if (capacity < 1 || capacity > (1 << 30))
+        {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        this.file = file;
+        this.format = format;
+        this.numColumns = NUM_BASE_COLUMNS + (withClusters ? 1 + (TYPES.length + 1) * CLUSTER_COLUMNS_PER_KIND : 0);
+        int ringSize = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.mask = ringSize - 1;
+        this.values = new int[ringSize * numColumns];
+        this.lastBirths = new long[TYPES.length];
+        this.lastDeaths = new long[TYPES.length];
+        this.batch = ByteBuffer.allocateDirect(Math.max(BATCH_BYTES, 4 + BLOCK_ROWS * numColumns * 4));
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+        putHeader();
+        this.thread = new Thread(this::drain, "stats writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the name of each column written, in order.
+     * @return The names of the columns.
+     */
+    public String[] getColumnNames()
+    {
+        String[] names = new String[numColumns];
+        names[0] = "generation";
+        for (CellType type : TYPES)
+        {
+            names[1 + type.ordinal()] = type.getName();
+            names[1 + TYPES.length + type.ordinal()] = type.getName() + " births";
+            names[1 + 2 * TYPES.length + type.ordinal()] = type.getName() + " deaths";
+        }
+        names[INFECTED_COLUMN] = "infected";
+        if (numColumns > NUM_BASE_COLUMNS)
+        {
+            names[NUM_BASE_COLUMNS] = "clusters generation";
+            for (int kind = 0; kind <= TYPES.length; kind++)
+            {
+                String name = (kind < TYPES.length) ? TYPES[kind].getName() : "infected";
+                int start = getClusterColumn(kind);
+                names[start] = name + " clusters";
+                names[start + 1] = name + " largest cluster";
+                for (int bin = 0; bin < ClusterStats.NUM_SIZE_BINS; bin++)
+                {
+                    names[start + 2 + bin] = name + " clusters of " + ClusterStats.getBinName(bin);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the first column of the clusters of a cell type (or of infected cells).
+     * @param kind The CellType ordinal, or the number of types for infected cells.
+     */
+    private static int getClusterColumn(int kind)
+    {
+        return NUM_BASE_COLUMNS + 1 + kind * CLUSTER_COLUMNS_PER_KIND;
+    }
+
+    /**
+     * Counts the current generation of a simulation, to be written. To be called after every generation.
+     * @param simulator The simulation.
+     * @throws UncheckedIOException If the writer has failed to write to the file.
+     */
+    public void afterGeneration(Simulator simulator)
+    {
+        afterGeneration(simulator, null);
+    }
+
+    /**
+     * Counts the current generation of a simulation, to be written with the given clusters. To be called after every generation.
+     * @param simulator The simulation.
+     * @param clusters The clusters found since the last generation recorded, or null if none were.
+     * @throws UncheckedIOException If the writer has failed to write to the file.
+     */
+    public void afterGeneration(Simulator simulator, ClusterStats clusters)
+    {
+        record(simulator.getGrid(), simulator.getGeneration(), clusters);
+    }
+
+    /**
+     * Counts a generation of a grid, to be written. The births and deaths written are those since the
+     * last generation recorded, so the grid should be recorded after every generation; if the
+     * generation goes back (e.g., as the simulation has been reset), counting starts again.
+     * @param grid The grid.
+     * @param generation The generation that the grid is in.
+     * @throws UncheckedIOException If the writer has failed to write to the file.
+     */
+    public void record(CellGrid grid, int generation)
+    {
+        record(grid, generation, null);
+    }
+
+    /**
+     * Counts a generation of a grid, to be written with the given clusters (see record(CellGrid, int)).
+     * The clusters are only written if the writer was created with the columns of the clusters.
+     * @param grid The grid.
+     * @param generation The generation that the grid is in.
+     * @param clusters The clusters found since the last generation recorded, or null if none were.
+     * @throws UncheckedIOException If the writer has failed to write to the file.
+     */
+    public void record(CellGrid grid, int generation, ClusterStats clusters)
+    {
+        IOException cause = failure;
+        if (cause != null)
+        {
+            throw new UncheckedIOException("Could not write statistics to " + file, cause);
+        }
+        boolean isFirst = generation <= lastGeneration || lastGeneration < 0;
+        lastGeneration = generation;
+
+        long next = tail.get();
+        boolean isFull = next - head.get() > mask;
+        int start = (int) (next & mask) * numColumns;
+        if (!isFull)
+        {
+            values[start] = generation;
+            values[start + INFECTED_COLUMN] = grid.getNumInfected();
+            if (numColumns > NUM_BASE_COLUMNS)
+            {
+                putClusters(start, clusters);
+            }
+        }
+        for (CellType type : TYPES)
+        {
+            int i = type.ordinal();
+            long births = grid.getBirths(type);
+            long deaths = grid.getDeaths(type);
+            if (!isFull)
+            {
+                values[start + 1 + i] = grid.getPopulation(type);
+                values[start + 1 + TYPES.length + i] = isFirst ? 0 : (int) (births - lastBirths[i]);
+                values[start + 1 + 2 * TYPES.length + i] = isFirst ? 0 : (int) (deaths - lastDeaths[i]);
+            }
+            lastBirths[i] = births;
+            lastDeaths[i] = deaths;
+        }
+
+        if (isFull)
+        {
+            numDropped++;
+        }
+        else
+        {
+            tail.lazySet(next + 1); // Publishes the values written above to the writer
+        }
+    }
+
+    /**
+     * Copies the clusters into the columns of the clusters of a record of the ring.
+     */
+    private void putClusters(int start, ClusterStats clusters)
+    {
+        values[start + NUM_BASE_COLUMNS] = (clusters == null) ? -1 : clusters.getGeneration();
+        for (int kind = 0; kind <= TYPES.length; kind++)
+        {
+            CellType type = (kind < TYPES.length) ? TYPES[kind] : null;
+            int column = start + getClusterColumn(kind);
+            values[column] = (clusters == null) ? 0 : clusters.getNumClusters(type);
+            values[column + 1] = (clusters == null) ? 0 : clusters.getLargestCluster(type);
+            for (int bin = 0; bin < ClusterStats.NUM_SIZE_BINS; bin++)
+            {
+                values[column + 2 + bin] = (clusters == null) ? 0 : clusters.getNumClusters(type, bin);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of generations that were not written because the writer had fallen behind.
+     * @return The number of dropped generations.
+     */
+    public long getNumDropped()
+    {
+        return numDropped;
+    }
+
+    /**
+     * Return the file that the statistics are written to.
+     * @return The statistics file.
+     */
+    public Path getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Writes the generations recorded so far, stops the background thread and closes the file.
+     * @throws UncheckedIOException If the writer has failed to write to the file.
+     */
+    @Override
+    public void close()
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(thread);
+        boolean isInterrupted = false;
+        while (thread.isAlive())
+        {
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            failure = (failure == null) ? e : failure;
+        }
+        if (failure != null)
+        {
+            throw new UncheckedIOException("Could not write statistics to " + file, failure);
+        }
+    }
+
+    /**
+     * The loop of the background thread: takes records from the ring into the batch, and writes the
+     * batch when it is full, or when the ring has been empty for a while.
+     */
+    private void drain()
+    {
+        long lastFlush = System.nanoTime();
+        try
+        {
+            while (true)
+            {
+                boolean isClosing = closed; // Read first, so no record added before close is missed
+                int numRows = (int) Math.min(tail.get() - head.get(), BLOCK_ROWS);
+                if (numRows > 0)
+                {
+                    putRows(numRows);
+                    continue;
+                }
+                if (isClosing || System.nanoTime() - lastFlush > FLUSH_NANOS)
+                {
+                    flush();
+                    lastFlush = System.nanoTime();
+                }
+                if (isClosing)
+                {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+        }
+        catch (IOException e)
+        {
+            failure = e;
+        }
+    }
+
+    /**
+     * Moves the next records of the ring into the batch (writing the batch first if they do not fit).
+     */
+    private void putRows(int numRows) throws IOException
+    {
+        long first = head.get();
+        if (format == Format.BINARY)
+        {
+            if (batch.remaining() < 4 + numRows * numColumns * 4)
+            {
+                flush();
+            }
+            batch.putInt(numRows);
+            for (int column = 0; column < numColumns; column++)
+            {
+                for (long record = first; record < first + numRows; record++)
+                {
+                    batch.putInt(values[(int) (record & mask) * numColumns + column]);
+                }
+            }
+        }
+        else
+        {
+            for (long record = first; record < first + numRows; record++)
+            {
+                if (batch.remaining() < numColumns * MAX_CSV_VALUE_BYTES)
+                {
+                    flush();
+                }
+                int start = (int) (record & mask) * numColumns;
+                for (int column = 0; column < numColumns; column++)
+                {
+                    if (column > 0)
+                    {
+                        batch.put((byte) ',');
+                    }
+                    putDecimal(values[start + column]);
+                }
+                batch.put((byte) '\n');
+            }
+        }
+        head.lazySet(first + numRows); // Frees the records for the simulation to reuse
+    }
+
+    /**
+     * Puts an int into the batch as decimal ASCII digits, without creating a String.
+     */
+    private void putDecimal(int value)
+    {
+        long remaining = value;
+        if (remaining < 0)
+        {
+            batch.put((byte) '-');
+            remaining = -remaining;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= remaining)
+        {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10)
+        {
+            batch.put((byte) ('0' + remaining / divisor % 10));
+        }
+    }
+
+    /**
+     * Puts the header of the file into the batch.
+     */
+    private void putHeader() throws IOException
+    {
+        String[] names = getColumnNames();
+        if (format == Format.BINARY)
+        {
+            batch.putInt(MAGIC).putInt(VERSION).putInt(numColumns);
+            for (String name : names)
+            {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                batch.putShort((short) bytes.length).put(bytes);
+            }
+        }
+        else
+        {
+            batch.put(String.join(",", names).getBytes(StandardCharsets.UTF_8)).put((byte) '\n');
+        }
+        flush();
+    }
+
+    /**
+     * Writes the batch to the file, and empties it.
+     */
+    private void flush() throws IOException
+    {
+        batch.flip();
+        while (batch.hasRemaining())
+        {
+            channel.write(batch);
+        }
+        batch.clear();
+    }
+}
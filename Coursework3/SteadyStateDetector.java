@@ -0,0 +1,299 @@
+import java.util.Arrays;
+
+/**
+ * Detects when a simulation has stopped going anywhere, so that a long run can be stopped early.
+ * Given every generation in turn, it looks for:
+ *
+ * - a fixed point: every cell has been in the same state for several generations;
+ * - a cycle: every cell has repeated its states with a period of up to a maximum number of
+ *   generations, several times over;
+ * - stationarity: as some cell types act at random, the cells may never repeat exactly, but the
+ *   living cells repeat for many more generations, or the mean population of every type (and the
+ *   number of infected cells) stops changing from one window of generations to the next.
+ *
+ * Repeats are found by comparing the hash of the grid (see CellGrid.getStateHash) with the hashes of
+ * the last few generations, kept in a small ring, so each generation takes time proportional to the
+ * maximum period, not the size of the grid. As the hash and the population are kept up to date by the
+ * grid itself, only counting the infected cells of a Field visits every cell.
+ *
+ * The hash of the grid only covers the type and position of the living cells, so the living cells
+ * can repeat while the health, age or infection of the cells is still changing (and the simulation
+ * with it). While the living cells repeat, the hash of the full state of every cell is taken as well
+ * (see Simulator.getCellStateHash), and a fixed point or a cycle is only reported if that repeats,
+ * and no cell acts at random (see CellType.actsAtRandom), e.g., a dead ChaosCell, which may revive
+ * at any time. Otherwise, the living cells must repeat many more times, and that is only reported as
+ * stationarity.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class SteadyStateDetector
+{
+    private static final CellType[] TYPES = CellType.values();
+
+    private static final int DEFAULT_MAX_PERIOD = 16;
+    private static final int DEFAULT_NUM_REPEATS = 3;
+    private static final int DEFAULT_NUM_RANDOM_REPEATS = 100;
+    private static final int DEFAULT_WINDOW = 200;
+    private static final double DEFAULT_TOLERANCE = 0.02;
+
+    /**
+     * What the simulation has been found to do.
+     */
+    public enum State
+    {
+        RUNNING("running"),
+        FIXED_POINT("fixed point"),
+        CYCLE("cycle"),
+        STATIONARY("stationary");
+
+        private final String description;
+
+        State(String description)
+        {
+            this.description = description;
+        }
+
+        /**
+         * Returns a description of the state, e.g., for a report.
+         * @return The description.
+         */
+        public String getDescription()
+        {
+            return description;
+        }
+    }
+
+    private final int maxPeriod;
+    private final int numRepeats;
+    private final int numRandomRepeats;
+    private final int window;
+    private final double tolerance;
+
+    // Cycle detection.
+    private final long[] hashes; // The hashes of the last maxPeriod generations, by generation % maxPeriod
+    private final int[] matchRuns; // For each period (index 1 up to maxPeriod), how many generations in a row repeated it
+    private int numHashes; // The number of generations in the ring (up to maxPeriod)
+    private final long[] cellHashes; // The same for the hashes of the full state of the cells
+    private final boolean[] hasCellHash; // Whether each of cellHashes was taken (only while the living cells repeat)
+    private final int[] cellMatchRuns;
+
+    // Stationarity detection.
+    private final long[] windowSums; // The sums over the current window of each population, and the infected cells
+    private final double[] lastMeans; // The means over the last complete window
+    private int windowLength; // The number of generations in the current window
+    private int numWindows; // The number of complete windows
+    private int numStationary; // The number of windows in a row whose means were within the tolerance of the last
+
+    private int lastGeneration = -1;
+    private State state = State.RUNNING;
+    private int period;
+
+    /**
+     * Create a detector with the default settings: cycles of up to 16 generations, repeated 3 times
+     * (or 100 times if cells act at random), and means within 2% for 3 windows of 200 generations in a row.
+     */
+    public SteadyStateDetector()
+    {
+        this(DEFAULT_MAX_PERIOD, DEFAULT_NUM_REPEATS, DEFAULT_NUM_RANDOM_REPEATS, DEFAULT_WINDOW, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Create a detector.
+     * @param maxPeriod The longest cycle (in generations) to look for.
+     * @param numRepeats The number of times a cycle (or a fixed point, or a stationary window) must
+     *                   repeat before it is reported.
+     * @param numRandomRepeats The number of times the living cells must repeat to be reported as
+     *                         stationary, when the full state of the cells does not repeat or cells act at random.
+     * @param window The number of generations that the populations are averaged over.
+     * @param tolerance How much the mean populations may change from window to window, as a fraction
+     *                  of the larger mean (but always at least 1 cell), to be stationary.
+     */
+    public SteadyStateDetector(int maxPeriod, int numRepeats, int numRandomRepeats, int window, double tolerance)
+    {
+        if (maxPeriod < 1 || numRepeats < 1 || numRandomRepeats < numRepeats || window < 1 || !(tolerance >= 0))
+        {
+            throw new IllegalArgumentException("Invalid steady state settings: " + maxPeriod + ", " + numRepeats
+                                               + ", " + numRandomRepeats + ", " + window + ", " + tolerance);
+        }
+        this.maxPeriod = maxPeriod;
+        this.numRepeats = numRepeats;
+        this.numRandomRepeats = numRandomRepeats;
+        this.window = window;
+        this.tolerance = tolerance;
+        this.hashes = new long[maxPeriod];
+        this.matchRuns = new int[maxPeriod + 1];
+        this.cellHashes = new long[maxPeriod];
+        this.hasCellHash = new boolean[maxPeriod];
+        this.cellMatchRuns = new int[maxPeriod + 1];
+        this.windowSums = new long[TYPES.length + 1];
+        this.lastMeans = new double[TYPES.length + 1];
+    }
+
+    /**
+     * Forgets every generation seen so far.
+     */
+    public void reset()
+    {
+        Arrays.fill(matchRuns, 0);
+        Arrays.fill(hasCellHash, false);
+        Arrays.fill(cellMatchRuns, 0);
+        Arrays.fill(windowSums, 0);
+        numHashes = 0;
+        windowLength = 0;
+        numWindows = 0;
+        numStationary = 0;
+        lastGeneration = -1;
+        state = State.RUNNING;
+        period = 0;
+    }
+
+    /**
+     * Looks at the next generation of a simulation. Should be given every generation in turn; if a
+     * generation is skipped or goes back (e.g., as the simulation has been reset), it starts again.
+     * @param simulator The simulation.
+     * @return What the simulation has been found to do, up to and including this generation.
+     */
+    public State update(Simulator simulator)
+    {
+        CellGrid grid = simulator.getGrid();
+        int generation = simulator.getGeneration();
+        if (lastGeneration >= 0 && generation != lastGeneration + 1)
+        {
+            reset();
+        }
+        lastGeneration = generation;
+
+        boolean isRepeat = updateRuns(hashes, null, matchRuns, grid.getStateHash(), generation);
+        // Only visit every cell while the living cells repeat, and there is no cell acting at random.
+        boolean isCellHashTaken = isRepeat && !hasRandomCells(grid);
+        if (isCellHashTaken)
+        {
+            updateRuns(cellHashes, hasCellHash, cellMatchRuns, simulator.getCellStateHash(), generation);
+        }
+        else
+        {
+            Arrays.fill(cellMatchRuns, 0);
+        }
+        hasCellHash[Math.floorMod(generation, maxPeriod)] = isCellHashTaken;
+        numHashes = Math.min(numHashes + 1, maxPeriod);
+        updateMeans(grid);
+
+        period = shortestPeriod(cellMatchRuns, numRepeats);
+        if (period > 0)
+        {
+            state = (period == 1) ? State.FIXED_POINT : State.CYCLE;
+        }
+        else
+        {
+            boolean isStationary = shortestPeriod(matchRuns, numRandomRepeats) > 0 || numStationary >= numRepeats;
+            state = isStationary ? State.STATIONARY : State.RUNNING;
+        }
+        return state;
+    }
+
+    /**
+     * Compares the hash of a generation with those of the generations before, counting how many
+     * generations in a row have repeated each period, and adds it to the ring.
+     * @param ring The hashes of the last generations.
+     * @param isTaken Which hashes of the ring were taken, or null if they all were.
+     * @param runs The number of generations in a row that have repeated each period.
+     * @return true if the generation repeated at least one period.
+     */
+    private boolean updateRuns(long[] ring, boolean[] isTaken, int[] runs, long hash, int generation)
+    {
+        boolean isRepeat = false;
+        for (int k = 1; k <= maxPeriod; k++)
+        {
+            int previous = Math.floorMod(generation - k, maxPeriod);
+            boolean matches = k <= numHashes && ring[previous] == hash && (isTaken == null || isTaken[previous]);
+            runs[k] = matches ? runs[k] + 1 : 0;
+            isRepeat |= matches;
+        }
+        ring[Math.floorMod(generation, maxPeriod)] = hash;
+        return isRepeat;
+    }
+
+    /**
+     * Returns the shortest period that has repeated the given number of times in a row, or 0 if none has.
+     */
+    private int shortestPeriod(int[] runs, int repeats)
+    {
+        for (int k = 1; k <= maxPeriod; k++)
+        {
+            if (runs[k] >= repeats * k)
+            {
+                return k;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns a boolean indicating whether any cell of a grid acts at random (see CellType.actsAtRandom).
+     */
+    private static boolean hasRandomCells(CellGrid grid)
+    {
+        for (int row = 0; row < grid.getDepth(); row++)
+        {
+            for (int col = 0; col < grid.getWidth(); col++)
+            {
+                CellType type = grid.getCellType(row, col);
+                if (type != null && type.actsAtRandom(grid.isAlive(row, col)))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the populations of a generation to the current window, and compares its means with those
+     * of the last window once it is complete.
+     */
+    private void updateMeans(CellGrid grid)
+    {
+        for (CellType type : TYPES)
+        {
+            windowSums[type.ordinal()] += grid.getPopulation(type);
+        }
+        windowSums[TYPES.length] += grid.getNumInfected();
+        windowLength++;
+        if (windowLength < window)
+        {
+            return;
+        }
+
+        boolean isStationary = numWindows > 0;
+        for (int i = 0; i < windowSums.length; i++)
+        {
+            double mean = (double) windowSums[i] / window;
+            double allowed = Math.max(tolerance * Math.max(mean, lastMeans[i]), 1.0);
+            isStationary &= Math.abs(mean - lastMeans[i]) <= allowed;
+            lastMeans[i] = mean;
+            windowSums[i] = 0;
+        }
+        numStationary = isStationary ? numStationary + 1 : 0;
+        numWindows++;
+        windowLength = 0;
+    }
+
+    /**
+     * Returns what the simulation was found to do when the last generation was given.
+     * @return The state of the simulation.
+     */
+    public State getState()
+    {
+        return state;
+    }
+
+    /**
+     * Returns the period of the cycle found, in generations.
+     * @return The period of the cycle (1 for a fixed point), or 0 if no cycle has been found.
+     */
+    public int getPeriod()
+    {
+        return period;
+    }
+}
@@ -0,0 +1,335 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs a field in pieces: the field is split into a grid of tiles, each run by a TileWorker in its
+ * own process, and the coordinator steps them in lockstep. Workers connect to the coordinator, which
+ * assigns each a tile (in the order they connect) and tells it where the workers of the other tiles
+ * are; the workers then connect to the tiles next to theirs, and exchange their edges with them
+ * directly. In every generation, the coordinator tells every worker to step, and waits for all of
+ * them to report the population of their tile, which it adds up into that of the whole field.
+ *
+ * The tiles run exactly the same simulation as a single ArrayEngine with the same seed (see
+ * TileWorker), so the populations reported match those of BatchRunner with the ARRAY engine.
+ *
+ * Usage: java TileCoordinator [--port=n] [--external] depth width generations [seed] [tileRows tileCols]
+ * The workers (2x2 tiles by default) are started as processes on this machine, unless --external
+ * is given, in which case the coordinator waits for workers started by hand (java TileWorker host
+ * port, possibly on other machines) to connect on the given port.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class TileCoordinator implements AutoCloseable
+{
+    private static final int CONNECT_TIMEOUT_MILLIS = 60_000; // How long to wait for the workers started here
+
+    private final int depth, width;
+    private final int tileRows, tileCols;
+    private final long seed;
+    private final RuleSet rules;
+    private final ServerSocketChannel listener;
+    private final SocketChannel[] workers; // The worker of each tile, by tile id
+    private final ByteBuffer command;
+    private final ByteBuffer report;
+
+    private final int[] population; // The number of living cells of each type in the whole field
+    private int numInfected;
+    private long stateHash;
+    private int generation;
+
+    /**
+     * Create a coordinator of a field split into the given grid of tiles, which listens for workers.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param tileRows The number of rows of tiles.
+     * @param tileCols The number of columns of tiles.
+     * @param seed The seed of the simulation.
+     * @param rules The rules of the simulation.
+     * @param port The port to listen for workers on (0 for any free port).
+     * @throws IOException If the coordinator could not listen on the port.
+     */
+    public TileCoordinator(int depth, int width, int tileRows, int tileCols, long seed, RuleSet rules, int port) throws IOException
+    {
+        if (tileRows < 1 || tileCols < 1 || depth / tileRows < TileWorker.HALO || width / tileCols < TileWorker.HALO)
+        {
+            throw new IllegalArgumentException("Cannot split a field of " + depth + "x" + width + " into " + tileRows + "x"
+                                               + tileCols + " tiles of at least " + TileWorker.HALO + "x" + TileWorker.HALO);
+        }
+        ArrayField.getSize(depth, width);
+        this.depth = depth;
+        this.width = width;
+        this.tileRows = tileRows;
+        this.tileCols = tileCols;
+        this.seed = seed;
+        this.rules = new RuleSet(rules);
+        this.listener = ServerSocketChannel.open().bind(new InetSocketAddress(port));
+        this.workers = new SocketChannel[tileRows * tileCols];
+        this.command = ByteBuffer.allocate(4);
+        this.report = ByteBuffer.allocate(TileWorker.getReportSize());
+        this.population = new int[CellType.count()];
+    }
+
+    /**
+     * Returns the port that the coordinator listens for workers on.
+     * @return The port.
+     * @throws IOException If the port could not be found.
+     */
+    public int getPort() throws IOException
+    {
+        return ((InetSocketAddress) listener.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Waits for a worker to connect for every tile, sends each its configuration, and waits for all of
+     * them to report their populated tiles (generation 0).
+     * @param timeoutMillis How long to wait for each worker to connect (0 to wait for ever).
+     * @throws IOException If a worker failed to connect in time, or a connection failed.
+     */
+    public void connectWorkers(int timeoutMillis) throws IOException
+    {
+        listener.socket().setSoTimeout(timeoutMillis);
+        String[] hosts = new String[workers.length];
+        int[] ports = new int[workers.length];
+        ByteBuffer hello = ByteBuffer.allocate(4);
+        for (int tile = 0; tile < workers.length; tile++)
+        {
+            SocketChannel channel = listener.socket().accept().getChannel();
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            workers[tile] = channel;
+            TileWorker.read(channel, hello, 4);
+            hosts[tile] = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+            ports[tile] = hello.getInt();
+        }
+
+        // The configuration of each worker (see TileWorker.main), preceded by its length.
+        ByteBuffer peers = ByteBuffer.allocate(workers.length * 64);
+        for (int tile = 0; tile < workers.length; tile++)
+        {
+            byte[] host = hosts[tile].getBytes(StandardCharsets.UTF_8);
+            peers.putShort((short) host.length).put(host).putInt(ports[tile]);
+        }
+        peers.flip();
+        for (int tile = 0; tile < workers.length; tile++)
+        {
+            ByteBuffer config = ByteBuffer.allocate(4 + 6 * 4 + 8 + Rule.count() * 4 + peers.remaining());
+            config.putInt(config.capacity() - 4);
+            config.putInt(tile / tileCols).putInt(tile % tileCols).putInt(tileRows).putInt(tileCols);
+            config.putInt(depth).putInt(width).putLong(seed);
+            for (Rule rule : Rule.values())
+            {
+                config.putInt(rules.get(rule));
+            }
+            config.put(peers.duplicate());
+            config.flip();
+            TileWorker.write(workers[tile], config);
+        }
+        generation = 0;
+        readReports();
+    }
+
+    /**
+     * Runs every tile for a single generation, and waits for all of them to report.
+     * @throws IOException If a connection failed.
+     */
+    public void step() throws IOException
+    {
+        sendCommand(TileWorker.STEP);
+        generation ++;
+        readReports();
+    }
+
+    /**
+     * Sends a command to every worker.
+     */
+    private void sendCommand(int value) throws IOException
+    {
+        for (SocketChannel worker : workers)
+        {
+            command.clear();
+            command.putInt(value).flip();
+            TileWorker.write(worker, command);
+        }
+    }
+
+    /**
+     * Reads the report of every worker on the current generation, and adds them up.
+     */
+    private void readReports() throws IOException
+    {
+        Arrays.fill(population, 0);
+        numInfected = 0;
+        stateHash = 0;
+        for (SocketChannel worker : workers)
+        {
+            TileWorker.read(worker, report, report.capacity());
+            for (int i = 0; i < population.length; i++)
+            {
+                population[i] += report.getInt();
+            }
+            numInfected += report.getInt();
+            stateHash ^= report.getLong();
+        }
+    }
+
+    /**
+     * Return the current generation.
+     * @return The generation that the field is in.
+     */
+    public int getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Returns the number of living cells of the given type in the whole field.
+     * @param type The type of cell.
+     * @return The number of living cells of the type.
+     */
+    public int getPopulation(CellType type)
+    {
+        return population[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of living cells of each type in the whole field.
+     * @return The number of living cells of each type, indexed by CellType ordinal.
+     */
+    public int[] getPopulation()
+    {
+        return population.clone();
+    }
+
+    /**
+     * Returns the number of living cells infected with a disease in the whole field.
+     * @return The number of living, infected cells.
+     */
+    public int getNumInfected()
+    {
+        return numInfected;
+    }
+
+    /**
+     * Returns the hash of the living cells of the whole field, the same as CellGrid.getStateHash would
+     * return for the field run as a whole.
+     * @return The hash of the field.
+     */
+    public long getStateHash()
+    {
+        return stateHash;
+    }
+
+    /**
+     * Tells the workers to stop, and closes the connections to them.
+     * @throws IOException If a connection could not be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            for (SocketChannel worker : workers)
+            {
+                if (worker != null && worker.isOpen())
+                {
+                    command.clear();
+                    command.putInt(TileWorker.STOP).flip();
+                    TileWorker.write(worker, command);
+                    worker.close();
+                }
+            }
+        }
+        finally
+        {
+            listener.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int port = 0;
+        boolean external = false;
+        while (args.length > 0 && args[0].startsWith("--"))
+        {
+            if (args[0].startsWith("--port="))
+            {
+                port = Integer.parseInt(args[0].substring("--port=".length()));
+            }
+            else if (args[0].equals("--external"))
+            {
+                external = true;
+            }
+            else
+            {
+                System.err.println("Unknown option: " + args[0]);
+                System.exit(1);
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length < 3)
+        {
+            System.err.println("Usage: java TileCoordinator [--port=n] [--external] depth width generations [seed] [tileRows tileCols]");
+            System.exit(1);
+        }
+
+        int depth = Integer.parseInt(args[0]);
+        int width = Integer.parseInt(args[1]);
+        int numGenerations = Integer.parseInt(args[2]);
+        long seed = (args.length > 3) ? Long.parseLong(args[3]) : System.nanoTime();
+        int tileRows = (args.length > 5) ? Integer.parseInt(args[4]) : 2;
+        int tileCols = (args.length > 5) ? Integer.parseInt(args[5]) : 2;
+
+        List<Process> processes = new ArrayList<>();
+        try (TileCoordinator coordinator = new TileCoordinator(depth, width, tileRows, tileCols, seed, new RuleSet(), port))
+        {
+            System.out.println("Seed: " + seed);
+            if (external)
+            {
+                System.out.println("Waiting for " + tileRows * tileCols + " workers on port " + coordinator.getPort());
+            }
+            else
+            {
+                String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+                for (int i = 0; i < tileRows * tileCols; i++)
+                {
+                    processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "TileWorker",
+                                                     "localhost", String.valueOf(coordinator.getPort())).inheritIO().start());
+                }
+            }
+            coordinator.connectWorkers(external ? 0 : CONNECT_TIMEOUT_MILLIS);
+
+            FieldStats stats = new FieldStats();
+            System.out.println(coordinator.getGeneration() + ": " + stats.getPopulationDetails(coordinator.getPopulation()));
+            long elapsedNanos = 0;
+            for (int i = 0; i < numGenerations; i++)
+            {
+                long start = System.nanoTime();
+                coordinator.step();
+                elapsedNanos += System.nanoTime() - start;
+                System.out.println(coordinator.getGeneration() + ": " + stats.getPopulationDetails(coordinator.getPopulation()));
+            }
+
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("Simulated %d generations of %dx%d (%dx%d tiles) in %.3f s%n", numGenerations,
+                              depth, width, tileRows, tileCols, seconds);
+            System.out.printf("Generations/sec: %.2f%n", numGenerations / seconds);
+            System.out.printf("Cells/sec: %.0f%n", numGenerations * (double) depth * width / seconds);
+        }
+        finally
+        {
+            for (Process process : processes)
+            {
+                process.waitFor();
+            }
+        }
+    }
+}
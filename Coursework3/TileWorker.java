@@ -0,0 +1,377 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Runs one tile of a field that is run in pieces, each in its own process (possibly on another
+ * machine), in lockstep under a TileCoordinator. The field is split into a grid of tiles; each
+ * worker keeps its tile in an ArrayField, surrounded by a halo: a copy of the HALO rows and columns
+ * of the tiles next to it. Before every generation, each tile sends its edges to the tiles next to
+ * it over a socket, and receives theirs into its halo. The rows are exchanged first, then the
+ * columns (including the halo rows just received), so the corners reach the tiles diagonally next
+ * to each tile without a connection of their own.
+ *
+ * Cells affect their neighbours in the same generation through intents, which are applied in the
+ * order of the cells that recorded them (infections first, see ArrayEngine). So the cells of the first halo row and
+ * column act in every tile too, recording the intents they send into the tile in the right order,
+ * and they need the state of their own neighbours to do so: hence a halo of 2. The rest of the halo
+ * acts with neighbours missing, so its next state is wrong, but it is replaced before it is used.
+ * As the engine draws its random numbers for the index of each cell in the whole field (see
+ * ArrayEngine.setRegion), the tiles run exactly the same simulation as a single ArrayEngine would.
+ *
+ * The active set would not know about the cells changed by the halo exchange, so every cell of the
+ * tile acts in every generation, which gives the same results.
+ *
+ * Usage: java TileWorker host port
+ * where host and port are those of the coordinator.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class TileWorker implements AutoCloseable
+{
+    public static final int HALO = 2; // The rows and columns of the tiles next to a tile that it keeps a copy of
+
+    // The commands sent by the coordinator.
+    public static final int STOP = 0;
+    public static final int STEP = 1;
+
+    // The tiles next to a tile, which it exchanges its halo with.
+    private static final int NORTH = 0;
+    private static final int SOUTH = 1;
+    private static final int WEST = 2;
+    private static final int EAST = 3;
+
+    private final int tileId, tileCols;
+    private final int width; // The width of the whole field
+    private final int fromRow, toRow, fromCol, toCol; // The position of the tile in the whole field
+    private final int top, left; // The position in the whole field of the top left of the tile's halo
+    private final ArrayField field; // The tile and its halo
+    private final ArrayEngine engine;
+    private final SocketChannel[] neighbours; // The tile in each direction, or null at the edge of the field
+    private final ByteBuffer sendBuffer, receiveBuffer;
+    private final ByteBuffer report;
+
+    /**
+     * Create the worker of a tile, and populate the tile (and its halo) as the whole field would be.
+     * @param tileRow The row of the tile in the grid of tiles.
+     * @param tileCol The column of the tile in the grid of tiles.
+     * @param tileRows The number of rows of tiles.
+     * @param tileCols The number of columns of tiles.
+     * @param depth The depth of the whole field.
+     * @param width The width of the whole field.
+     * @param seed The seed of the simulation.
+     * @param rules The rules of the simulation.
+     */
+    public TileWorker(int tileRow, int tileCol, int tileRows, int tileCols, int depth, int width, long seed, RuleSet rules)
+    {
+        this.tileId = tileRow * tileCols + tileCol;
+        this.tileCols = tileCols;
+        this.width = width;
+        this.fromRow = getTileStart(depth, tileRows, tileRow);
+        this.toRow = getTileStart(depth, tileRows, tileRow + 1);
+        this.fromCol = getTileStart(width, tileCols, tileCol);
+        this.toCol = getTileStart(width, tileCols, tileCol + 1);
+        this.top = Math.max(fromRow - HALO, 0);
+        this.left = Math.max(fromCol - HALO, 0);
+        int bottom = Math.min(toRow + HALO, depth);
+        int right = Math.min(toCol + HALO, width);
+
+        this.field = new ArrayField(bottom - top, right - left, new HeapFieldStorage(ArrayField.getSize(bottom - top, right - left),
+                                    ArrayField.getNumWords(bottom - top, right - left)), rules);
+        this.engine = new ArrayEngine(field, seed);
+        engine.setRegion(top, left, depth, width);
+        engine.setActiveSetEnabled(false);
+        engine.populate();
+
+        this.neighbours = new SocketChannel[4];
+        int blockSize = Math.max(HALO * (toCol - fromCol), (bottom - top) * HALO) * ArrayField.CELL_BYTES;
+        this.sendBuffer = ByteBuffer.allocateDirect(blockSize);
+        this.receiveBuffer = ByteBuffer.allocateDirect(blockSize);
+        this.report = ByteBuffer.allocate(getReportSize());
+    }
+
+    /**
+     * Returns the first row (or column) of a tile: the rows of the field are split as equally as possible.
+     * @param size The depth (or width) of the whole field.
+     * @param numTiles The number of rows (or columns) of tiles.
+     * @param tile The row (or column) of the tile in the grid of tiles, or numTiles for the end of the field.
+     * @return The first row (or column) of the tile.
+     */
+    public static int getTileStart(int size, int numTiles, int tile)
+    {
+        return (int) ((long) size * tile / numTiles);
+    }
+
+    /**
+     * Returns the size of the report sent to the coordinator after every generation: the population of
+     * each type in the tile, the number of infected cells, and the hash of the tile (see CellGrid.getStateHash).
+     * @return The number of bytes in a report.
+     */
+    public static int getReportSize()
+    {
+        return 4 * (CellType.count() + 1) + 8;
+    }
+
+    /**
+     * Connects to the tiles next to this one. Each tile connects to the tiles to its north and west,
+     * and accepts the connections of those to its south and east, which send their tile ids first.
+     * @param hosts The host of the worker of each tile, by tile id.
+     * @param ports The port that the worker of each tile accepts connections on.
+     * @param listener The channel that this worker accepts connections on.
+     * @throws IOException If a connection failed.
+     */
+    public void connectNeighbours(String[] hosts, int[] ports, ServerSocketChannel listener) throws IOException
+    {
+        int tileRows = hosts.length / tileCols;
+        int tileRow = tileId / tileCols;
+        int tileCol = tileId % tileCols;
+        if (tileRow > 0)
+        {
+            neighbours[NORTH] = connect(hosts[tileId - tileCols], ports[tileId - tileCols]);
+        }
+        if (tileCol > 0)
+        {
+            neighbours[WEST] = connect(hosts[tileId - 1], ports[tileId - 1]);
+        }
+
+        int numAccepted = ((tileRow < tileRows - 1) ? 1 : 0) + ((tileCol < tileCols - 1) ? 1 : 0);
+        ByteBuffer id = ByteBuffer.allocate(4);
+        for (int i = 0; i < numAccepted; i++)
+        {
+            SocketChannel channel = listener.accept();
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            read(channel, id, 4);
+            neighbours[(id.getInt() == tileId + tileCols) ? SOUTH : EAST] = channel;
+        }
+    }
+
+    /**
+     * Connects to the worker of the tile to the north or west, and sends it the id of this tile.
+     */
+    private SocketChannel connect(String host, int port) throws IOException
+    {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        ByteBuffer id = ByteBuffer.allocate(4).putInt(tileId);
+        id.flip();
+        write(channel, id);
+        return channel;
+    }
+
+    /**
+     * Runs the tile for as long as the coordinator asks: reports the tile as populated, then steps it
+     * and reports it again on every STEP command, until the STOP command.
+     * @param coordinator The connection to the coordinator.
+     * @throws IOException If a connection failed.
+     */
+    public void run(SocketChannel coordinator) throws IOException
+    {
+        ByteBuffer command = ByteBuffer.allocate(4);
+        sendReport(coordinator);
+        while (true)
+        {
+            read(coordinator, command, 4);
+            if (command.getInt() != STEP)
+            {
+                return;
+            }
+            exchangeHalos();
+            engine.step();
+            sendReport(coordinator);
+        }
+    }
+
+    /**
+     * Replaces the halo with the current edges of the tiles next to this one.
+     */
+    private void exchangeHalos() throws IOException
+    {
+        int tileTop = fromRow - top;
+        int tileBottom = toRow - top;
+        int tileLeft = fromCol - left;
+        int tileRight = toCol - left;
+        exchange(NORTH, tileTop, tileTop + HALO, tileLeft, tileRight, -HALO, 0);
+        exchange(SOUTH, tileBottom - HALO, tileBottom, tileLeft, tileRight, HALO, 0);
+        exchange(WEST, 0, field.getDepth(), tileLeft, tileLeft + HALO, 0, -HALO);
+        exchange(EAST, 0, field.getDepth(), tileRight - HALO, tileRight, 0, HALO);
+    }
+
+    /**
+     * Sends a block of the tile to the tile in the given direction (if any), and receives the block of
+     * the halo that is the same block moved by the given offsets. Of the two tiles, the one to the
+     * north or west sends first, so neither waits for the other to read while it is writing.
+     */
+    private void exchange(int direction, int blockTop, int blockBottom, int blockLeft, int blockRight,
+                          int rowOffset, int colOffset) throws IOException
+    {
+        SocketChannel channel = neighbours[direction];
+        if (channel == null)
+        {
+            return;
+        }
+        int numBytes = (blockBottom - blockTop) * (blockRight - blockLeft) * ArrayField.CELL_BYTES;
+        boolean sendFirst = direction == SOUTH || direction == EAST;
+        sendBuffer.clear();
+        field.writeCells(blockTop, blockBottom, blockLeft, blockRight, sendBuffer);
+        sendBuffer.flip();
+        if (sendFirst)
+        {
+            write(channel, sendBuffer);
+        }
+        read(channel, receiveBuffer, numBytes);
+        field.readCells(blockTop + rowOffset, blockBottom + rowOffset, blockLeft + colOffset, blockRight + colOffset, receiveBuffer);
+        if (!sendFirst)
+        {
+            write(channel, sendBuffer);
+        }
+    }
+
+    /**
+     * Counts the living cells of each type in the tile (not its halo), and the infected ones, hashes
+     * them, and sends them to the coordinator.
+     */
+    private void sendReport(SocketChannel coordinator) throws IOException
+    {
+        int[] population = new int[CellType.count()];
+        int numInfected = 0;
+        long stateHash = 0;
+        for (int row = fromRow; row < toRow; row++)
+        {
+            for (int col = fromCol; col < toCol; col++)
+            {
+                int index = (row - top) * field.getWidth() + col - left;
+                if (!field.isAlive(row - top, col - left))
+                {
+                    continue;
+                }
+                int typeCode = field.getTypeCode(index);
+                population[typeCode] ++;
+                stateHash ^= CellGrid.zobristKey(row * width + col, CellType.fromCode(typeCode));
+                if (field.getDisease(index) > 0)
+                {
+                    numInfected ++;
+                }
+            }
+        }
+
+        report.clear();
+        for (int count : population)
+        {
+            report.putInt(count);
+        }
+        report.putInt(numInfected);
+        report.putLong(stateHash);
+        report.flip();
+        write(coordinator, report);
+    }
+
+    /**
+     * Closes the connections to the tiles next to this one.
+     * @throws IOException If a connection could not be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        for (SocketChannel channel : neighbours)
+        {
+            if (channel != null)
+            {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the given number of bytes from a channel into a buffer, which is then ready to be read from.
+     * @param channel The channel to read from.
+     * @param buffer The buffer to read into.
+     * @param numBytes The number of bytes to read.
+     * @throws IOException If the channel failed or was closed first.
+     */
+    public static void read(SocketChannel channel, ByteBuffer buffer, int numBytes) throws IOException
+    {
+        buffer.clear().limit(numBytes);
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer) < 0)
+            {
+                throw new EOFException("Connection closed by " + channel.getRemoteAddress());
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to a channel.
+     * @param channel The channel to write to.
+     * @param buffer The buffer to write.
+     * @throws IOException If the channel failed.
+     */
+    public static void write(SocketChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: java TileWorker host port");
+            System.exit(1);
+        }
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+
+        try (ServerSocketChannel listener = ServerSocketChannel.open().bind(new InetSocketAddress(0));
+             SocketChannel coordinator = SocketChannel.open(new InetSocketAddress(host, port)))
+        {
+            coordinator.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ByteBuffer hello = ByteBuffer.allocate(4).putInt(((InetSocketAddress) listener.getLocalAddress()).getPort());
+            hello.flip();
+            write(coordinator, hello);
+
+            // The configuration (see TileCoordinator): the tile, the field, and the workers of every tile.
+            ByteBuffer length = ByteBuffer.allocate(4);
+            read(coordinator, length, 4);
+            int numBytes = length.getInt();
+            ByteBuffer config = ByteBuffer.allocate(numBytes);
+            read(coordinator, config, numBytes);
+            int tileRow = config.getInt();
+            int tileCol = config.getInt();
+            int tileRows = config.getInt();
+            int tileCols = config.getInt();
+            int depth = config.getInt();
+            int width = config.getInt();
+            long seed = config.getLong();
+            RuleSet rules = new RuleSet();
+            for (Rule rule : Rule.values())
+            {
+                rules.set(rule, config.getInt());
+            }
+            String[] hosts = new String[tileRows * tileCols];
+            int[] ports = new int[hosts.length];
+            for (int i = 0; i < hosts.length; i++)
+            {
+                byte[] bytes = new byte[config.getShort()];
+                config.get(bytes);
+                hosts[i] = new String(bytes, StandardCharsets.UTF_8);
+                ports[i] = config.getInt();
+            }
+
+            try (TileWorker worker = new TileWorker(tileRow, tileCol, tileRows, tileCols, depth, width, seed, rules))
+            {
+                worker.connectNeighbours(hosts, ports, listener);
+                worker.run(coordinator);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The CountKernel operations on as many cells at a time as the widest SIMD registers of the CPU
+ * hold bytes (64 with AVX-512, 32 with AVX2), using the Vector API. The columns left over at the
+ * end of a row are done one at a time.
+ *
+ * The Vector API is an incubator module, so this class is kept out of the normal build, in the
+ * vector-api directory, and has to be compiled and run with the module added, e.g., from Coursework3:
+ *   javac --add-modules jdk.incubator.vector -d out *.java vector-api/VectorCountKernel.java
+ *   java --add-modules jdk.incubator.vector -cp out BatchRunner ...
+ * CountKernel.create() uses the ScalarCountKernel when this class (or the module) is not there.
+ *
+ * @author K22039642 Gee-Lyle Wong, k22015880 Vatsal Patel
+ */
+
+public class VectorCountKernel implements CountKernel
+{
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    @Override
+    public void windowSums(byte[] indicators, byte[] sums, int width)
+    {
+        int bound = SPECIES.loopBound(width);
+        int col = 0;
+        for (; col < bound; col += SPECIES.length())
+        {
+            ByteVector left = ByteVector.fromArray(SPECIES, indicators, col);
+            ByteVector centre = ByteVector.fromArray(SPECIES, indicators, col + 1);
+            ByteVector right = ByteVector.fromArray(SPECIES, indicators, col + 2);
+            left.add(centre).add(right).intoArray(sums, col);
+        }
+        for (; col < width; col++)
+        {
+            sums[col] = (byte) (indicators[col] + indicators[col + 1] + indicators[col + 2]);
+        }
+    }
+
+    @Override
+    public void combine(byte[] above, byte[] middle, byte[] below, byte[] self, byte[] counts, int start, int width)
+    {
+        int bound = SPECIES.loopBound(width);
+        int col = 0;
+        for (; col < bound; col += SPECIES.length())
+        {
+            ByteVector sum = ByteVector.fromArray(SPECIES, above, col)
+                                       .add(ByteVector.fromArray(SPECIES, middle, col))
+                                       .add(ByteVector.fromArray(SPECIES, below, col))
+                                       .sub(ByteVector.fromArray(SPECIES, self, col + 1));
+            sum.intoArray(counts, start + col);
+        }
+        for (; col < width; col++)
+        {
+            counts[start + col] = (byte) (above[col] + middle[col] + below[col] - self[col + 1]);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+}